@@ -2,10 +2,13 @@ package com.yatrasathi.admin;
 
 import com.yatrasathi.common.AuditService;
 import com.yatrasathi.common.Role;
-import com.yatrasathi.employee.Employee;
-import com.yatrasathi.employee.EmployeeRepository;
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.dashboard.DashboardCounters;
 import com.yatrasathi.payment.Payment;
 import com.yatrasathi.payment.PaymentRepository;
+import com.yatrasathi.security.TokenRevocationService;
+import com.yatrasathi.security.UserPrincipalCache;
+import com.yatrasathi.ticket.TicketIntakeService;
 import com.yatrasathi.ticket.TicketRequest;
 import com.yatrasathi.ticket.TicketRequestRepository;
 import com.yatrasathi.user.User;
@@ -17,6 +20,8 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -26,22 +31,35 @@ import java.util.Optional;
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminController {
 
-    private final EmployeeRepository employeeRepository;
     private final UserRepository userRepository;
     private final AuditService auditService;
     private final TicketRequestRepository ticketRequestRepository;
     private final PaymentRepository paymentRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenRevocationService tokenRevocationService;
+    private final TicketIntakeService ticketIntakeService;
+    private final DashboardCounters dashboardCounters;
+    private final List<StatsContributor> statsContributors;
 
-    public AdminController(EmployeeRepository employeeRepository, UserRepository userRepository, 
-                          AuditService auditService, TicketRequestRepository ticketRequestRepository, 
-                          PaymentRepository paymentRepository, PasswordEncoder passwordEncoder) {
-        this.employeeRepository = employeeRepository;
+    public AdminController(UserRepository userRepository, AuditService auditService, TicketRequestRepository ticketRequestRepository,
+                          PaymentRepository paymentRepository, PasswordEncoder passwordEncoder,
+                          UserPrincipalCache userPrincipalCache, TokenRevocationService tokenRevocationService,
+                          TicketIntakeService ticketIntakeService, DashboardCounters dashboardCounters,
+                          List<StatsContributor> statsContributors) {
         this.userRepository = userRepository;
         this.auditService = auditService;
         this.ticketRequestRepository = ticketRequestRepository;
         this.paymentRepository = paymentRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userPrincipalCache = userPrincipalCache;
+        this.tokenRevocationService = tokenRevocationService;
+        this.ticketIntakeService = ticketIntakeService;
+        this.dashboardCounters = dashboardCounters;
+        // Sorted once, so the metrics page lists sections in the same order on every call
+        this.statsContributors = statsContributors.stream()
+                .sorted(Comparator.comparing(StatsContributor::statsName))
+                .toList();
     }
     
     @GetMapping("/employees")
@@ -80,6 +98,7 @@ public class AdminController {
             user.setActive(true);
             
             User savedUser = userRepository.save(user);
+            dashboardCounters.usersAdded(1);
             auditService.log("system", "EMPLOYEE_CREATED", "Admin created employee: " + email);
             
             return ResponseEntity.ok(savedUser);
@@ -104,6 +123,10 @@ public class AdminController {
             User user = userOpt.get();
             user.setActive(active);
             userRepository.save(user);
+            userPrincipalCache.evict(user);
+            if (!active) {
+                tokenRevocationService.revokeUser(user.getId());
+            }
             
             auditService.log("system", "EMPLOYEE_STATUS_UPDATED", 
                 "Admin " + (active ? "activated" : "deactivated") + " employee: " + user.getEmail());
@@ -130,6 +153,8 @@ public class AdminController {
             User user = userOpt.get();
             user.setPasswordHash(passwordEncoder.encode(password));
             userRepository.save(user);
+            userPrincipalCache.evict(user);
+            tokenRevocationService.revokeUser(user.getId());
             
             auditService.log("system", "EMPLOYEE_PASSWORD_RESET", "Admin reset password for employee: " + user.getEmail());
             
@@ -141,7 +166,14 @@ public class AdminController {
 
     @DeleteMapping("/employees/{id}")
     public ResponseEntity<Void> deleteEmployee(@PathVariable Long id) {
+        Optional<User> existing = userRepository.findById(id);
+        existing.ifPresent(userPrincipalCache::evict);
         userRepository.deleteById(id);
+        // Counted only after the delete went through; a delete refused by foreign keys throws above
+        if (existing.isPresent()) {
+            dashboardCounters.usersAdded(-1);
+        }
+        tokenRevocationService.revokeUser(id);
         auditService.log("system", "DELETE_EMPLOYEE", "EmployeeId=" + id);
         return ResponseEntity.noContent().build();
     }
@@ -156,10 +188,31 @@ public class AdminController {
         User user = userRepository.findById(id).orElseThrow();
         user.setActive(active);
         userRepository.save(user);
+        userPrincipalCache.evict(user);
+        if (!active) {
+            tokenRevocationService.revokeUser(id);
+        }
         auditService.log("system", "SET_CUSTOMER_ACTIVE", "UserId=" + id + ", active=" + active);
         return ResponseEntity.ok().build();
     }
 
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        for (StatsContributor contributor : statsContributors) {
+            data.put(contributor.statsName(), contributor.stats());
+        }
+        return ResponseEntity.ok(data);
+    }
+
+    // Opens or closes the Tatkal intake window without a restart
+    @PutMapping("/tickets/intake")
+    public ResponseEntity<Map<String, Object>> setTicketIntake(@RequestParam boolean open) {
+        ticketIntakeService.setOpen(open);
+        auditService.log("system", open ? "TICKET_INTAKE_OPENED" : "TICKET_INTAKE_CLOSED", "Admin set Tatkal intake open=" + open);
+        return ResponseEntity.ok(ticketIntakeService.stats());
+    }
+
     @GetMapping(value = "/export/tickets.csv")
     public ResponseEntity<byte[]> exportTicketsCsv() {
         StringBuilder sb = new StringBuilder();
@@ -4,32 +4,37 @@ import com.yatrasathi.auth.dto.AuthDtos.AuthResponse;
 import com.yatrasathi.auth.dto.AuthDtos.LoginRequest;
 import com.yatrasathi.auth.dto.AuthDtos.SignupRequest;
 import com.yatrasathi.common.Role;
+import com.yatrasathi.dashboard.DashboardCounters;
 import com.yatrasathi.security.JwtService;
 import com.yatrasathi.user.User;
 import com.yatrasathi.user.UserRepository;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class AuthService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
-    private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
+    private final LoginExecutor loginExecutor;
+    private final DashboardCounters dashboardCounters;
+    // Compared against when the user does not exist, so unknown usernames cost the same as wrong passwords
+    private final String userNotFoundHash;
 
-    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthenticationManager authenticationManager, JwtService jwtService) {
+    public AuthService(UserRepository userRepository, PasswordEncoder passwordEncoder, JwtService jwtService, LoginExecutor loginExecutor,
+                       DashboardCounters dashboardCounters) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
-        this.authenticationManager = authenticationManager;
         this.jwtService = jwtService;
+        this.loginExecutor = loginExecutor;
+        this.dashboardCounters = dashboardCounters;
+        this.userNotFoundHash = passwordEncoder.encode("userNotFoundPassword");
     }
 
     @Transactional
@@ -45,6 +50,7 @@ public class AuthService {
         Role role = request.getRole() == null ? Role.CUSTOMER : request.getRole();
         user.setRole(role);
         userRepository.save(user);
+        dashboardCounters.usersAdded(1);
 
         Map<String, Object> claims = new HashMap<>();
         claims.put("role", role.name());
@@ -59,13 +65,21 @@ public class AuthService {
         return response;
     }
 
-    public AuthResponse login(LoginRequest request) {
-        try {
-            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword()));
-        } catch (AuthenticationException e) {
+    public CompletableFuture<AuthResponse> login(LoginRequest request) {
+        return loginExecutor.submit(() -> authenticate(request));
+    }
+
+    private AuthResponse authenticate(LoginRequest request) {
+        // One lookup serves both password verification and the token claims
+        User user = userRepository.findByEmail(request.getUsername())
+                .or(() -> userRepository.findByPhone(request.getUsername()))
+                .orElse(null);
+        long start = System.nanoTime();
+        boolean matches = passwordEncoder.matches(request.getPassword(), user != null ? user.getPasswordHash() : userNotFoundHash);
+        loginExecutor.recordHashTime(System.nanoTime() - start);
+        if (user == null || !matches || !user.isActive()) {
             throw new IllegalArgumentException("Invalid credentials");
         }
-        User user = userRepository.findByEmail(request.getUsername()).orElseGet(() -> userRepository.findByPhone(request.getUsername()).orElseThrow());
         Map<String, Object> claims = new HashMap<>();
         claims.put("role", user.getRole().name());
         claims.put("userId", user.getId());
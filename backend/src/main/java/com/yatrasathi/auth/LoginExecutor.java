@@ -0,0 +1,118 @@
+package com.yatrasathi.auth;
+
+import com.yatrasathi.common.StatsContributor;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Dedicated, bounded pool for password verification. BCrypt is deliberately slow, so during login storms
+ * it runs here instead of on Tomcat workers; once the queue is full further logins are refused with 429
+ * straight away rather than piling up and starving every other endpoint.
+ */
+@Component
+public class LoginExecutor implements StatsContributor {
+
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueWaitNanos;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder started = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder hashed = new LongAdder();
+    private final LongAdder queueWaitNanos = new LongAdder();
+    private final LongAdder hashNanos = new LongAdder();
+
+    public LoginExecutor(@Value("${auth.login.pool-size:0}") int poolSize,
+                         @Value("${auth.login.queue-capacity:256}") int queueCapacity,
+                         @Value("${auth.login.max-queue-wait-ms:2000}") long maxQueueWaitMs) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "login-hash-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.maxQueueWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMs);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        long enqueuedAt = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long waited = System.nanoTime() - enqueuedAt;
+                started.increment();
+                queueWaitNanos.add(waited);
+                if (waited > maxQueueWaitNanos) {
+                    // The client has most likely given up already; don't spend a hash on it
+                    expired.increment();
+                    result.completeExceptionally(tooBusy());
+                    return;
+                }
+                try {
+                    result.complete(task.get());
+                } catch (Throwable t) {
+                    result.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw tooBusy();
+        }
+        submitted.increment();
+        return result;
+    }
+
+    public void recordHashTime(long nanos) {
+        hashed.increment();
+        hashNanos.add(nanos);
+    }
+
+    @Override
+    public String statsName() {
+        return "loginExecutor";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long dequeued = started.sum();
+        long hashes = hashed.sum();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("poolSize", executor.getMaximumPoolSize());
+        data.put("active", executor.getActiveCount());
+        data.put("queued", executor.getQueue().size());
+        data.put("submitted", submitted.sum());
+        data.put("rejected", rejected.sum());
+        data.put("expiredInQueue", expired.sum());
+        data.put("avgQueueWaitMs", dequeued == 0 ? 0.0 : queueWaitNanos.sum() / 1e6 / dequeued);
+        data.put("avgHashMs", hashes == 0 ? 0.0 : hashNanos.sum() / 1e6 / hashes);
+        return data;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    private static ResponseStatusException tooBusy() {
+        return new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many concurrent logins, please retry shortly");
+    }
+}
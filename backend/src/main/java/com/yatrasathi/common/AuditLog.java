@@ -12,7 +12,10 @@ import java.time.LocalDateTime;
 @Table(name = "audit_logs")
 public class AuditLog {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "audit_log_ids")
+    @TableGenerator(name = "audit_log_ids", table = PooledIds.TABLE, pkColumnName = PooledIds.NAME_COLUMN,
+            valueColumnName = PooledIds.VALUE_COLUMN, pkColumnValue = PooledIds.AUDIT_LOGS,
+            allocationSize = PooledIds.ALLOCATION_SIZE)
     private Long id;
 
     @Column(nullable = false)
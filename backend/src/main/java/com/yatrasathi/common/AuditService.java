@@ -2,6 +2,8 @@ package com.yatrasathi.common;
 
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class AuditService {
     private final AuditLogRepository repository;
@@ -11,11 +13,20 @@ public class AuditService {
     }
 
     public void log(String actor, String action, String details) {
+        repository.save(entry(actor, action, details));
+    }
+
+    // Audit ids are pooled, so a list is written as JDBC batches inside the caller's transaction
+    public void logAll(List<AuditLog> entries) {
+        repository.saveAll(entries);
+    }
+
+    public static AuditLog entry(String actor, String action, String details) {
         AuditLog log = new AuditLog();
         log.setActor(actor == null ? "system" : actor);
         log.setAction(action);
         log.setDetails(details);
-        repository.save(log);
+        return log;
     }
 }
 
@@ -0,0 +1,29 @@
+package com.yatrasathi.common;
+
+import java.util.List;
+
+/**
+ * One page of a "changed since" feed, ordered by {@code (changeVersion, id)}. The client stores
+ * {@code nextSince}/{@code nextAfterId} and sends them back on its next sync; while {@code more} is true it
+ * should keep paging straight away, otherwise it is caught up to {@code nextSince} and {@code nextAfterId}
+ * is null.
+ */
+public class ChangeFeed<T> {
+    private final List<T> items;
+    private final long nextSince;
+    private final Long nextAfterId;
+    private final boolean more;
+
+    public ChangeFeed(List<T> items, long nextSince, Long nextAfterId, boolean more) {
+        this.items = items;
+        this.nextSince = nextSince;
+        this.nextAfterId = nextAfterId;
+        this.more = more;
+    }
+
+    // Getters
+    public List<T> getItems() { return items; }
+    public long getNextSince() { return nextSince; }
+    public Long getNextAfterId() { return nextAfterId; }
+    public boolean isMore() { return more; }
+}
@@ -0,0 +1,10 @@
+package com.yatrasathi.common;
+
+/**
+ * Rows that carry a change version from {@link ChangeVersions}, so clients can ask for what changed since a
+ * version they already have.
+ */
+public interface ChangeTracked {
+    Long getChangeVersion();
+    void setChangeVersion(Long changeVersion);
+}
@@ -0,0 +1,30 @@
+package com.yatrasathi.common;
+
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stamps a fresh change version on every insert and update of a {@link ChangeTracked} entity. Hibernate
+ * resolves entity listeners through Spring while building the EntityManagerFactory, so the sequence is
+ * looked up lazily (it needs JDBC, which may itself wait on that factory). Bulk JPQL and JDBC updates
+ * bypass the listener and set {@code change_version} themselves.
+ */
+@Component
+public class ChangeVersionListener {
+
+    private final ObjectProvider<ChangeVersions> changeVersions;
+
+    public ChangeVersionListener(ObjectProvider<ChangeVersions> changeVersions) {
+        this.changeVersions = changeVersions;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void stamp(Object entity) {
+        if (entity instanceof ChangeTracked tracked) {
+            tracked.setChangeVersion(changeVersions.getObject().next());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.yatrasathi.common;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out the monotonic change versions stamped on bookings, payments and users. Every write takes a fresh
+ * version, so "rows with a version above N" is exactly what changed after a client last synced at N.
+ *
+ * <p>Versions are allocated before their transaction commits, so they can become visible out of order.
+ * {@link #stable()} is the highest version below which every writer has finished (committed or rolled
+ * back); delta reads are capped there, which means a client never skips a row that commits late. The
+ * sequence lives in memory and is re-seeded from the tables on startup, so this assumes one writing
+ * instance. Seeding reads the entity tables, so it waits for the {@code EntityManagerFactory} (and with it
+ * the schema update).
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class ChangeVersions {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicLong last = new AtomicLong();
+    private final ConcurrentSkipListSet<Long> inFlight = new ConcurrentSkipListSet<>();
+
+    public ChangeVersions(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void seed() {
+        long max = 0;
+        for (String table : new String[]{"bookings", "payments", "users"}) {
+            // Rows written before change tracking existed count as version 0
+            jdbcTemplate.update("update " + table + " set change_version = 0 where change_version is null");
+            Long tableMax = jdbcTemplate.queryForObject("select coalesce(max(change_version), 0) from " + table, Long.class);
+            max = Math.max(max, tableMax == null ? 0 : tableMax);
+        }
+        last.set(max);
+    }
+
+    /**
+     * Allocates the version for a write in the current transaction. The version stays in flight, holding
+     * back {@link #stable()}, until that transaction completes.
+     */
+    public long next() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Change versions must be allocated inside a transaction");
+        }
+        // Allocate and register under the same lock so stable() never sees the gap in between
+        long version;
+        synchronized (inFlight) {
+            version = last.incrementAndGet();
+            inFlight.add(version);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                inFlight.remove(version);
+            }
+        });
+        return version;
+    }
+
+    /** Every change with a version up to and including this one is final and visible. */
+    public long stable() {
+        synchronized (inFlight) {
+            return inFlight.isEmpty() ? last.get() : inFlight.first() - 1;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.yatrasathi.common;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Shared settings for entities whose ids come from the {@code id_generators} table instead of an
+ * AUTO_INCREMENT column. Each instance reserves {@link #ALLOCATION_SIZE} ids per round trip, which is
+ * what lets Hibernate group inserts into JDBC batches (IDENTITY forces one statement per row).
+ *
+ * <p>Rows created before the switch still carry AUTO_INCREMENT values, so on startup every generator
+ * is moved past the highest existing id before anything is inserted. This reads the entity tables, so it
+ * waits for the {@code EntityManagerFactory} (and with it the schema update). Several instances may start
+ * at once: the generator row is only ever moved forward, in one conditional statement, so an instance that
+ * is already handing out ids is never pushed back into its own block.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class PooledIds {
+
+    public static final String TABLE = "id_generators";
+    public static final String NAME_COLUMN = "sequence_name";
+    public static final String VALUE_COLUMN = "next_val";
+    public static final int ALLOCATION_SIZE = 50;
+
+    public static final String BOOKINGS = "bookings";
+    public static final String AUDIT_LOGS = "audit_logs";
+    public static final String PASSENGERS = "passengers";
+
+    // generator name -> table and id column it hands out ids for
+    private static final List<String[]> GENERATORS = List.of(
+            new String[]{BOOKINGS, "bookings", "booking_id"},
+            new String[]{AUDIT_LOGS, "audit_logs", "id"},
+            new String[]{PASSENGERS, "passengers", "passenger_id"}
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PooledIds(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void align() {
+        for (String[] generator : GENERATORS) {
+            Long maxId = jdbcTemplate.queryForObject(
+                    "select coalesce(max(" + generator[2] + "), 0) from " + generator[1], Long.class);
+            // The pooled optimizer hands out the block just below the stored value, so leave a full block of room
+            long floor = (maxId == null ? 0 : maxId) + ALLOCATION_SIZE + 1;
+            if (raise(generator[0], floor) == 0 && !exists(generator[0])) {
+                try {
+                    jdbcTemplate.update("insert into " + TABLE + " (" + NAME_COLUMN + ", " + VALUE_COLUMN + ") values (?, ?)", generator[0], floor);
+                } catch (DuplicateKeyException e) {
+                    // Another instance created the row first; make sure it is past our floor too
+                    raise(generator[0], floor);
+                }
+            }
+        }
+    }
+
+    private int raise(String name, long floor) {
+        return jdbcTemplate.update("update " + TABLE + " set " + VALUE_COLUMN + " = ? where " + NAME_COLUMN + " = ? and " + VALUE_COLUMN + " < ?",
+                floor, name, floor);
+    }
+
+    private boolean exists(String name) {
+        Integer rows = jdbcTemplate.queryForObject("select count(*) from " + TABLE + " where " + NAME_COLUMN + " = ?", Integer.class, name);
+        return rows != null && rows > 0;
+    }
+}
@@ -0,0 +1,12 @@
+package com.yatrasathi.common;
+
+import java.util.Map;
+
+/**
+ * Components that report their own counters on the admin metrics page, under {@link #statsName()}. They are
+ * collected by type, so a new one shows up there without the admin controller knowing about it.
+ */
+public interface StatsContributor {
+    String statsName();
+    Map<String, Object> stats();
+}
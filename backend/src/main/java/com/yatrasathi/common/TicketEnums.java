@@ -1,7 +1,7 @@
 package com.yatrasathi.common;
 
 public class TicketEnums {
-    public enum TicketStatus { PENDING, APPROVED, TICKET_CREATED, CONFIRMED }
+    public enum TicketStatus { PENDING, APPROVED, TICKET_CREATED, CONFIRMED, CANCELLED }
     public enum TravelClass { SLEEPER, THREE_A, TWO_A, ONE_A, CHAIR_CAR, SECOND_SITTING }
     public enum BerthPreference { UPPER, MIDDLE, LOWER, SIDE_UPPER, SIDE_LOWER, NONE }
     public enum PaymentMode { UPI, CASH, CHEQUE, NET_BANKING }
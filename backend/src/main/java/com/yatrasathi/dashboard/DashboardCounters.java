@@ -0,0 +1,186 @@
+package com.yatrasathi.dashboard;
+
+import com.yatrasathi.common.AfterCommit;
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.common.TicketEnums.PaymentStatus;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.payment.PaymentRepository;
+import com.yatrasathi.ticket.TicketRequestRepository;
+import com.yatrasathi.user.UserRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live ticket and payment counts for the dashboards, so a summary call reads a handful of counters instead
+ * of counting or summing whole tables. Services report every create and status change here; updates made
+ * inside a transaction are applied only once it commits, so rolled back work never shows up.
+ *
+ * <p>Anything that bypasses the services (manual SQL, deletes, other instances) makes the counters drift,
+ * so they are periodically reset from COUNT / SUM queries.
+ */
+@Component
+public class DashboardCounters implements StatsContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardCounters.class);
+
+    private final TicketRequestRepository ticketRepo;
+    private final PaymentRepository paymentRepo;
+    private final UserRepository userRepo;
+
+    private final Map<TicketStatus, LongAdder> tickets = new EnumMap<>(TicketStatus.class);
+    private final Map<PaymentStatus, LongAdder> payments = new EnumMap<>(PaymentStatus.class);
+    // Amounts are kept in paise so they fit a LongAdder
+    private final Map<PaymentStatus, LongAdder> paymentPaise = new EnumMap<>(PaymentStatus.class);
+    private final LongAdder users = new LongAdder();
+
+    private volatile long lastDrift;
+    private volatile long reconciledAt;
+
+    public DashboardCounters(TicketRequestRepository ticketRepo, PaymentRepository paymentRepo, UserRepository userRepo) {
+        this.ticketRepo = ticketRepo;
+        this.paymentRepo = paymentRepo;
+        this.userRepo = userRepo;
+        for (TicketStatus status : TicketStatus.values()) {
+            tickets.put(status, new LongAdder());
+        }
+        for (PaymentStatus status : PaymentStatus.values()) {
+            payments.put(status, new LongAdder());
+            paymentPaise.put(status, new LongAdder());
+        }
+    }
+
+    @PostConstruct
+    void load() {
+        reconcile();
+    }
+
+    public void ticketsCreated(int count) {
+        AfterCommit.run(() -> tickets.get(TicketStatus.PENDING).add(count));
+    }
+
+    /** {@code from} is the set of source states the transition allowed; with more than one the split is unknown. */
+    public void ticketsMoved(Set<TicketStatus> from, TicketStatus to, int count) {
+        if (count == 0) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            if (from.size() == 1) {
+                tickets.get(from.iterator().next()).add(-count);
+            } else {
+                log.debug("Ambiguous source state for {} tickets moved to {}; left to the next reconcile", count, to);
+            }
+            tickets.get(to).add(count);
+        });
+    }
+
+    public void paymentAdded(PaymentStatus status, BigDecimal amount) {
+        long paise = toPaise(amount);
+        AfterCommit.run(() -> {
+            payments.get(status).increment();
+            paymentPaise.get(status).add(paise);
+        });
+    }
+
+    public void paymentMoved(PaymentStatus from, PaymentStatus to, BigDecimal amount) {
+        if (from == to) {
+            return;
+        }
+        long paise = toPaise(amount);
+        AfterCommit.run(() -> {
+            payments.get(from).decrement();
+            paymentPaise.get(from).add(-paise);
+            payments.get(to).increment();
+            paymentPaise.get(to).add(paise);
+        });
+    }
+
+    public void usersAdded(int count) {
+        AfterCommit.run(() -> users.add(count));
+    }
+
+    public long tickets(TicketStatus status) {
+        return tickets.get(status).sum();
+    }
+
+    public long users() {
+        return users.sum();
+    }
+
+    public BigDecimal paymentTotal() {
+        long paise = 0;
+        for (LongAdder adder : paymentPaise.values()) {
+            paise += adder.sum();
+        }
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    @Scheduled(fixedDelayString = "${dashboard.counters.reconcile-interval-ms:300000}", initialDelayString = "${dashboard.counters.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        long drift = 0;
+        Map<TicketStatus, Long> ticketCounts = new EnumMap<>(TicketStatus.class);
+        for (Object[] row : ticketRepo.countGroupedByStatus()) {
+            ticketCounts.put((TicketStatus) row[0], ((Number) row[1]).longValue());
+        }
+        for (TicketStatus status : TicketStatus.values()) {
+            drift += reset(tickets.get(status), ticketCounts.getOrDefault(status, 0L));
+        }
+
+        Map<PaymentStatus, Object[]> paymentRows = new EnumMap<>(PaymentStatus.class);
+        for (Object[] row : paymentRepo.countAndSumGroupedByStatus()) {
+            paymentRows.put((PaymentStatus) row[0], row);
+        }
+        for (PaymentStatus status : PaymentStatus.values()) {
+            Object[] row = paymentRows.get(status);
+            drift += reset(payments.get(status), row == null ? 0 : ((Number) row[1]).longValue());
+            reset(paymentPaise.get(status), row == null ? 0 : toPaise((BigDecimal) row[2]));
+        }
+        drift += reset(users, userRepo.count());
+
+        lastDrift = drift;
+        reconciledAt = System.currentTimeMillis();
+        if (drift != 0) {
+            log.info("Dashboard counters were off by {} and have been reconciled", drift);
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "dashboardCounters";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        Map<String, Long> ticketData = new LinkedHashMap<>();
+        tickets.forEach((status, adder) -> ticketData.put(status.name(), adder.sum()));
+        Map<String, Long> paymentData = new LinkedHashMap<>();
+        payments.forEach((status, adder) -> paymentData.put(status.name(), adder.sum()));
+        data.put("tickets", ticketData);
+        data.put("payments", paymentData);
+        data.put("users", users.sum());
+        data.put("lastDrift", lastDrift);
+        data.put("reconciledAt", reconciledAt);
+        return data;
+    }
+
+    // Updates racing the reset can be lost; the next reconcile picks them up
+    private static long reset(LongAdder adder, long actual) {
+        long drift = Math.abs(adder.sumThenReset() - actual);
+        adder.add(actual);
+        return drift;
+    }
+
+    private static long toPaise(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(2).longValue();
+    }
+}
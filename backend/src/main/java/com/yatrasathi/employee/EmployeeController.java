@@ -1,7 +1,12 @@
 package com.yatrasathi.employee;
 
+import com.yatrasathi.notification.QueueEvent;
+import com.yatrasathi.notification.QueueEventStream;
+import com.yatrasathi.security.CurrentUserId;
+import com.yatrasathi.ticket.TicketClaimService;
 import com.yatrasathi.ticket.TicketRequest;
 import com.yatrasathi.ticket.TicketRequestRepository;
+import com.yatrasathi.ticket.TicketSummary;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -15,16 +20,36 @@ public class EmployeeController {
 
     private final EmployeeRepository employeeRepository;
     private final TicketRequestRepository ticketRequestRepository;
+    private final TicketClaimService ticketClaimService;
+    private final QueueEventStream queueEvents;
 
-    public EmployeeController(EmployeeRepository employeeRepository, TicketRequestRepository ticketRequestRepository) {
+    public EmployeeController(EmployeeRepository employeeRepository, TicketRequestRepository ticketRequestRepository,
+                              TicketClaimService ticketClaimService, QueueEventStream queueEvents) {
         this.employeeRepository = employeeRepository;
         this.ticketRequestRepository = ticketRequestRepository;
+        this.ticketClaimService = ticketClaimService;
+        this.queueEvents = queueEvents;
+    }
+
+    // Leases the next n unassigned pending requests to the caller instead of everyone working off /api/tickets/pending
+    @PostMapping("/requests/claim")
+    public ResponseEntity<List<TicketSummary>> claimNext(@RequestParam(defaultValue = "1") int n, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(ticketClaimService.claimNext(userId, n));
+    }
+
+    @PostMapping("/requests/{requestId}/release")
+    public ResponseEntity<Void> release(@PathVariable Long requestId, @CurrentUserId Long userId) {
+        ticketClaimService.release(requestId, userId);
+        return ResponseEntity.noContent().build();
     }
 
     @GetMapping("/requests/assigned/{employeeId}")
-    public ResponseEntity<List<TicketRequest>> assigned(@PathVariable Long employeeId) {
-        Employee e = employeeRepository.findById(employeeId).orElseThrow();
-        return ResponseEntity.ok(ticketRequestRepository.findByEmployee(e.getUser()));
+    public ResponseEntity<List<TicketSummary>> assigned(@PathVariable Long employeeId) {
+        // employee_details shares its id with users (@MapsId), so the bookings can be queried directly
+        if (!employeeRepository.existsById(employeeId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(ticketRequestRepository.findSummariesByEmployeeId(employeeId));
     }
 
     @PostMapping("/requests/{requestId}/assign/{employeeId}")
@@ -32,7 +57,11 @@ public class EmployeeController {
         Employee e = employeeRepository.findById(employeeId).orElseThrow();
         TicketRequest tr = ticketRequestRepository.findById(requestId).orElseThrow();
         tr.setAssignedEmployee(e);
-        return ResponseEntity.ok(ticketRequestRepository.save(tr));
+        // A manual assignment is permanent, not a lease
+        tr.setLeaseExpiresAt(null);
+        TicketRequest saved = ticketRequestRepository.save(tr);
+        queueEvents.publish(QueueEvent.assigned(saved.getId(), saved.getCustomer().getId(), employeeId));
+        return ResponseEntity.ok(saved);
     }
 }
 
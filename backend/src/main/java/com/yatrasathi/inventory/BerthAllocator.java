@@ -0,0 +1,403 @@
+package com.yatrasathi.inventory;
+
+import com.yatrasathi.common.AfterCommit;
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.common.TicketEnums.BerthPreference;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Allots berths per trip from in-memory bitsets: each coach is a few {@code long} words with one bit per
+ * free berth, and {@link CoachLayout} supplies matching masks per berth type and per bay. Finding a free
+ * lower berth in a window of bays is an AND of two masks and a {@code numberOfTrailingZeros}.
+ *
+ * <p>A booking's passengers are placed together: the allocator looks for the coach and the narrowest run
+ * of bays that holds all of them while honouring as many berth preferences as possible, and only splits a
+ * group over coaches when no single coach has room. Allotments are taken under the trip's lock, so two
+ * bookings never get the same berth; they are undone if the caller's transaction rolls back. The bitsets
+ * are rebuilt on startup from {@code passengers.berth_allotted} of live bookings.
+ */
+@Service
+public class BerthAllocator implements StatsContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(BerthAllocator.class);
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final SeatInventory seatInventory;
+    private final int defaultCoaches;
+    private final ConcurrentHashMap<SeatKey, TripBerths> trips = new ConcurrentHashMap<>();
+
+    private final LongAdder allocations = new LongAdder();
+    private final LongAdder berthsAllotted = new LongAdder();
+    private final LongAdder preferencesRequested = new LongAdder();
+    private final LongAdder preferencesHonoured = new LongAdder();
+    private final LongAdder splitGroups = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+
+    public BerthAllocator(NamedParameterJdbcTemplate jdbc, SeatInventory seatInventory,
+                          @Value("${berths.default-coaches:12}") int defaultCoaches) {
+        this.jdbc = jdbc;
+        this.seatInventory = seatInventory;
+        this.defaultCoaches = defaultCoaches;
+    }
+
+    @PostConstruct
+    void load() {
+        long[] counts = new long[2];
+        jdbc.query("select b.train_id, b.travel_date, b.class, p.berth_allotted from passengers p join bookings b on b.booking_id = p.booking_id"
+                        + " where p.berth_allotted is not null and b.travel_date >= :today and b.status <> 'CANCELLED'",
+                Map.of("today", Date.valueOf(LocalDate.now())), rs -> {
+                    Date travelDate = rs.getDate(2);
+                    SeatKey key = SeatKey.of(rs.getObject(1, Long.class), travelDate == null ? null : travelDate.toLocalDate(), rs.getString(3));
+                    TripBerths trip = key == null ? null : trip(key);
+                    if (trip != null && trip.occupy(BerthAssignment.parse(rs.getString(4)))) {
+                        counts[0]++;
+                    } else {
+                        counts[1]++;
+                    }
+                });
+        log.info("Berth allotments recovered: {} berths on {} trips ({} values not recognised)", counts[0], trips.size(), counts[1]);
+    }
+
+    /**
+     * Allots one berth per preference (null or NONE: no preference), in the same order. Returns null, taking
+     * nothing, when the trip has fewer free berths than passengers.
+     */
+    public List<BerthAssignment> allocate(SeatKey key, List<BerthPreference> preferences) {
+        TripBerths trip = key == null ? null : trip(key);
+        if (trip == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No coach layout for class " + (key == null ? null : key.travelClass()));
+        }
+        if (preferences.isEmpty()) {
+            return List.of();
+        }
+        List<BerthAssignment> allotted;
+        synchronized (trip) {
+            trip.ensureCoaches(coachesFor(key, trip.layout));
+            allotted = trip.allocate(preferences);
+        }
+        if (allotted == null) {
+            refused.increment();
+            return null;
+        }
+        AfterCommit.onRollback(() -> release(trip, allotted));
+        allocations.increment();
+        berthsAllotted.add(allotted.size());
+        for (int i = 0; i < preferences.size(); i++) {
+            BerthPreference wanted = preferences.get(i);
+            if (wanted != null && wanted != BerthPreference.NONE) {
+                preferencesRequested.increment();
+                if (allotted.get(i).type() == wanted) {
+                    preferencesHonoured.increment();
+                }
+            }
+        }
+        return allotted;
+    }
+
+    /** Frees berths once the surrounding transaction commits; {@code labels} as stored on the passengers. */
+    public void release(SeatKey key, Collection<String> labels) {
+        List<BerthAssignment> berths = labels.stream().map(BerthAssignment::parse).filter(b -> b != null).toList();
+        if (key == null || berths.isEmpty()) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            TripBerths trip = trips.get(key);
+            if (trip != null) {
+                release(trip, berths);
+            }
+        });
+    }
+
+    /** Frees the berths allotted to a booking's passengers, once the surrounding transaction commits. */
+    public void releaseBooking(SeatKey key, Long bookingId) {
+        if (key == null || trips.get(key) == null) {
+            return;
+        }
+        release(key, jdbc.queryForList("select berth_allotted from passengers where booking_id = :id and berth_allotted is not null",
+                Map.of("id", bookingId), String.class));
+    }
+
+    /** Forgets every class of a trip (the train was cancelled) once the surrounding transaction commits. */
+    public void dropTrip(Long trainId, LocalDate travelDate) {
+        AfterCommit.run(() -> trips.keySet().removeIf(k -> k.trainId().equals(trainId) && k.travelDate().equals(travelDate)));
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.purge-interval-ms:3600000}")
+    public void purgePastTrips() {
+        LocalDate today = LocalDate.now();
+        trips.keySet().removeIf(key -> key.travelDate().isBefore(today));
+    }
+
+    @Override
+    public String statsName() {
+        return "berths";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("trips", trips.size());
+        data.put("allocations", allocations.sum());
+        data.put("berthsAllotted", berthsAllotted.sum());
+        data.put("preferencesRequested", preferencesRequested.sum());
+        data.put("preferencesHonoured", preferencesHonoured.sum());
+        data.put("splitGroups", splitGroups.sum());
+        data.put("refused", refused.sum());
+        return data;
+    }
+
+    private TripBerths trip(SeatKey key) {
+        TripBerths trip = trips.get(key);
+        if (trip != null) {
+            return trip;
+        }
+        CoachLayout layout = CoachLayout.of(key.travelClass());
+        if (layout == null) {
+            return null;
+        }
+        return trips.computeIfAbsent(key, k -> new TripBerths(layout, coachesFor(k, layout)));
+    }
+
+    // Enough coaches for the trip's quota; trips without one get the configured default
+    private int coachesFor(SeatKey key, CoachLayout layout) {
+        SeatAvailability quota = seatInventory.availability(key);
+        if (quota == null) {
+            return defaultCoaches;
+        }
+        return Math.max(1, (quota.capacity() + layout.berths() - 1) / layout.berths());
+    }
+
+    private void release(TripBerths trip, List<BerthAssignment> berths) {
+        synchronized (trip) {
+            berths.forEach(trip::free);
+        }
+    }
+
+    /** Free berths of one trip. Guarded by its own monitor. */
+    private final class TripBerths {
+        private final CoachLayout layout;
+        private long[][] free = new long[0][];
+        private int[] freeCount = new int[0];
+        private int totalFree;
+
+        private TripBerths(CoachLayout layout, int coaches) {
+            this.layout = layout;
+            ensureCoaches(coaches);
+        }
+
+        // Coaches are only ever added, so berths already allotted keep their meaning
+        void ensureCoaches(int coaches) {
+            int current = free.length;
+            if (coaches <= current) {
+                return;
+            }
+            long[][] grown = Arrays.copyOf(free, coaches);
+            int[] grownCount = Arrays.copyOf(freeCount, coaches);
+            for (int c = current; c < coaches; c++) {
+                grown[c] = new long[layout.words()];
+                for (int b = 0; b < layout.bays(); b++) {
+                    or(grown[c], layout.bayMask(b));
+                }
+                grownCount[c] = layout.berths();
+                totalFree += layout.berths();
+            }
+            free = grown;
+            freeCount = grownCount;
+        }
+
+        boolean occupy(BerthAssignment berth) {
+            int coach = coachIndex(berth);
+            if (coach < 0 || berth.number() > layout.berths()) {
+                return false;
+            }
+            ensureCoaches(coach + 1);
+            return take(coach, berth.number() - 1);
+        }
+
+        void free(BerthAssignment berth) {
+            int coach = coachIndex(berth);
+            if (coach < 0 || coach >= free.length || berth.number() > layout.berths()) {
+                return;
+            }
+            int index = berth.number() - 1;
+            long bit = 1L << index;
+            if ((free[coach][index >>> 6] & bit) == 0) {
+                free[coach][index >>> 6] |= bit;
+                freeCount[coach]++;
+                totalFree++;
+            }
+        }
+
+        List<BerthAssignment> allocate(List<BerthPreference> preferences) {
+            int n = preferences.size();
+            if (totalFree < n) {
+                return null;
+            }
+            int[] coaches = new int[n];
+            int[] berths = new int[n];
+            Pick best = null;
+            for (int c = 0; c < free.length; c++) {
+                if (freeCount[c] < n) {
+                    continue;
+                }
+                Pick pick = bestInCoach(c, preferences);
+                if (best == null || pick.betterThan(best)) {
+                    best = pick;
+                }
+            }
+            if (best != null) {
+                apply(best, coaches, berths, 0);
+            } else {
+                // No coach holds the whole group: fill the emptiest coaches first to keep the pieces few
+                splitGroups.increment();
+                Integer[] order = IntStream.range(0, free.length).boxed().toArray(Integer[]::new);
+                Arrays.sort(order, Comparator.comparingInt((Integer c) -> freeCount[c]).reversed());
+                int from = 0;
+                for (int c : order) {
+                    if (from == n) {
+                        break;
+                    }
+                    int take = Math.min(n - from, freeCount[c]);
+                    if (take > 0) {
+                        apply(bestInCoach(c, preferences.subList(from, from + take)), coaches, berths, from);
+                        from += take;
+                    }
+                }
+            }
+            List<BerthAssignment> allotted = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                allotted.add(new BerthAssignment(layout.coachPrefix() + (coaches[i] + 1), berths[i] + 1, layout.typeOf(berths[i])));
+            }
+            return allotted;
+        }
+
+        // Tries every narrowest run of bays (from each starting bay) that has room for the whole group
+        private Pick bestInCoach(int coach, List<BerthPreference> preferences) {
+            int n = preferences.size();
+            long[] window = new long[layout.words()];
+            Pick best = null;
+            for (int start = 0; start < layout.bays(); start++) {
+                Arrays.fill(window, 0L);
+                int room = 0;
+                int end = start;
+                while (end < layout.bays() && room < n) {
+                    long[] bay = layout.bayMask(end++);
+                    for (int w = 0; w < window.length; w++) {
+                        long freeInBay = free[coach][w] & bay[w];
+                        window[w] |= freeInBay;
+                        room += Long.bitCount(freeInBay);
+                    }
+                }
+                if (room < n) {
+                    break;
+                }
+                Pick pick = assign(coach, window, preferences, end - start);
+                if (best == null || pick.betterThan(best)) {
+                    best = pick;
+                }
+            }
+            return best;
+        }
+
+        // Preferences first, so a passenger without one cannot take the only lower berth someone asked for
+        private Pick assign(int coach, long[] window, List<BerthPreference> preferences, int span) {
+            long[] available = window.clone();
+            int[] berths = new int[preferences.size()];
+            Arrays.fill(berths, -1);
+            int honoured = 0;
+            for (int i = 0; i < berths.length; i++) {
+                BerthPreference wanted = preferences.get(i);
+                if (wanted != null && wanted != BerthPreference.NONE) {
+                    berths[i] = takeFirst(available, layout.typeMask(wanted));
+                    if (berths[i] >= 0) {
+                        honoured++;
+                    }
+                }
+            }
+            for (int i = 0; i < berths.length; i++) {
+                if (berths[i] < 0) {
+                    berths[i] = takeFirst(available, null);
+                }
+            }
+            return new Pick(coach, berths, honoured, span);
+        }
+
+        private void apply(Pick pick, int[] coaches, int[] berths, int offset) {
+            for (int i = 0; i < pick.berths().length; i++) {
+                take(pick.coach(), pick.berths()[i]);
+                coaches[offset + i] = pick.coach();
+                berths[offset + i] = pick.berths()[i];
+            }
+        }
+
+        private boolean take(int coach, int index) {
+            long bit = 1L << index;
+            if ((free[coach][index >>> 6] & bit) == 0) {
+                return false;
+            }
+            free[coach][index >>> 6] &= ~bit;
+            freeCount[coach]--;
+            totalFree--;
+            return true;
+        }
+
+        private int coachIndex(BerthAssignment berth) {
+            if (berth == null || !berth.coach().startsWith(layout.coachPrefix())) {
+                return -1;
+            }
+            try {
+                int coach = Integer.parseInt(berth.coach().substring(layout.coachPrefix().length())) - 1;
+                return coach < 0 ? -1 : coach;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+
+    // Lowest set bit of available (and mask, when given), cleared from available; -1 if there is none
+    private static int takeFirst(long[] available, long[] mask) {
+        for (int w = 0; w < available.length; w++) {
+            long candidates = mask == null ? available[w] : available[w] & mask[w];
+            if (candidates != 0) {
+                int bit = Long.numberOfTrailingZeros(candidates);
+                available[w] &= ~(1L << bit);
+                return (w << 6) + bit;
+            }
+        }
+        return -1;
+    }
+
+    private static void or(long[] target, long[] mask) {
+        for (int w = 0; w < target.length; w++) {
+            target[w] |= mask[w];
+        }
+    }
+
+    /** One way to seat a group in a coach: more preferences honoured wins, then fewer bays spanned. */
+    private record Pick(int coach, int[] berths, int honoured, int span) {
+        boolean betterThan(Pick other) {
+            return honoured != other.honoured ? honoured > other.honoured : span < other.span;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.yatrasathi.inventory;
+
+import com.yatrasathi.common.TicketEnums.BerthPreference;
+
+/**
+ * One allotted berth. Stored in {@code passengers.berth_allotted} as its {@link #label()}, e.g. "B2/17/LB"
+ * (seats without a berth type drop the last part: "D1/40").
+ */
+public record BerthAssignment(String coach, int number, BerthPreference type) {
+
+    public String label() {
+        String code = code(type);
+        return coach + "/" + number + (code == null ? "" : "/" + code);
+    }
+
+    /** Null for text that is not a label written by {@link #label()} (hand-entered values, older data). */
+    public static BerthAssignment parse(String label) {
+        if (label == null) {
+            return null;
+        }
+        String[] parts = label.trim().split("/");
+        if (parts.length < 2 || parts.length > 3 || parts[0].isEmpty()) {
+            return null;
+        }
+        try {
+            int number = Integer.parseInt(parts[1]);
+            BerthPreference type = parts.length == 3 ? fromCode(parts[2]) : BerthPreference.NONE;
+            return number < 1 || type == null ? null : new BerthAssignment(parts[0], number, type);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String code(BerthPreference type) {
+        return switch (type) {
+            case LOWER -> "LB";
+            case MIDDLE -> "MB";
+            case UPPER -> "UB";
+            case SIDE_LOWER -> "SL";
+            case SIDE_UPPER -> "SU";
+            case NONE -> null;
+        };
+    }
+
+    private static BerthPreference fromCode(String code) {
+        return switch (code) {
+            case "LB" -> BerthPreference.LOWER;
+            case "MB" -> BerthPreference.MIDDLE;
+            case "UB" -> BerthPreference.UPPER;
+            case "SL" -> BerthPreference.SIDE_LOWER;
+            case "SU" -> BerthPreference.SIDE_UPPER;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package com.yatrasathi.inventory;
+
+import com.yatrasathi.common.TicketEnums.BerthPreference;
+
+import static com.yatrasathi.common.TicketEnums.BerthPreference.LOWER;
+import static com.yatrasathi.common.TicketEnums.BerthPreference.MIDDLE;
+import static com.yatrasathi.common.TicketEnums.BerthPreference.NONE;
+import static com.yatrasathi.common.TicketEnums.BerthPreference.SIDE_LOWER;
+import static com.yatrasathi.common.TicketEnums.BerthPreference.SIDE_UPPER;
+import static com.yatrasathi.common.TicketEnums.BerthPreference.UPPER;
+
+/**
+ * Berth layout of one coach per travel class: berths are numbered from 1 and repeat the bay pattern, so
+ * berth {@code n} is of type {@code bay[(n - 1) % bay.length]}. Each layout also precomputes the bitsets
+ * {@link BerthAllocator} works with: one mask per berth type and one per bay, over the coach's berths.
+ */
+public enum CoachLayout {
+    SLEEPER("S", 72, LOWER, MIDDLE, UPPER, LOWER, MIDDLE, UPPER, SIDE_LOWER, SIDE_UPPER),
+    THREE_A("B", 72, LOWER, MIDDLE, UPPER, LOWER, MIDDLE, UPPER, SIDE_LOWER, SIDE_UPPER),
+    TWO_A("A", 48, LOWER, UPPER, LOWER, UPPER, SIDE_LOWER, SIDE_UPPER),
+    ONE_A("H", 24, LOWER, UPPER, LOWER, UPPER),
+    CHAIR_CAR("C", 78, NONE, NONE, NONE, NONE, NONE),
+    SECOND_SITTING("D", 108, NONE, NONE, NONE, NONE, NONE, NONE);
+
+    private final String coachPrefix;
+    private final int berths;
+    private final BerthPreference[] bay;
+    private final int words;
+    private final long[][] typeMasks;
+    private final long[][] bayMasks;
+
+    CoachLayout(String coachPrefix, int berths, BerthPreference... bay) {
+        this.coachPrefix = coachPrefix;
+        this.berths = berths;
+        this.bay = bay;
+        this.words = (berths + 63) / 64;
+        this.typeMasks = new long[BerthPreference.values().length][words];
+        this.bayMasks = new long[(berths + bay.length - 1) / bay.length][words];
+        for (int i = 0; i < berths; i++) {
+            typeMasks[bay[i % bay.length].ordinal()][i >>> 6] |= 1L << i;
+            bayMasks[i / bay.length][i >>> 6] |= 1L << i;
+        }
+    }
+
+    /** Accepts the enum names as well as the usual codes (SL, 3A, 2A, 1A, CC, 2S); null if unknown. */
+    public static CoachLayout of(String travelClass) {
+        if (travelClass == null) {
+            return null;
+        }
+        return switch (travelClass.trim().toUpperCase().replace("_", "").replace(" ", "")) {
+            case "SL", "SLEEPER" -> SLEEPER;
+            case "3A", "THREEA", "3AC" -> THREE_A;
+            case "2A", "TWOA", "2AC" -> TWO_A;
+            case "1A", "ONEA", "1AC" -> ONE_A;
+            case "CC", "CHAIRCAR" -> CHAIR_CAR;
+            case "2S", "SECONDSITTING" -> SECOND_SITTING;
+            default -> null;
+        };
+    }
+
+    public String coachPrefix() {
+        return coachPrefix;
+    }
+
+    public int berths() {
+        return berths;
+    }
+
+    public int bays() {
+        return bayMasks.length;
+    }
+
+    public BerthPreference typeOf(int berthIndex) {
+        return bay[berthIndex % bay.length];
+    }
+
+    int words() {
+        return words;
+    }
+
+    long[] typeMask(BerthPreference type) {
+        return typeMasks[type.ordinal()];
+    }
+
+    long[] bayMask(int bayIndex) {
+        return bayMasks[bayIndex];
+    }
+}
@@ -0,0 +1,51 @@
+package com.yatrasathi.inventory;
+
+import com.yatrasathi.common.AuditService;
+import jakarta.validation.Valid;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/inventory")
+public class InventoryController {
+
+    private final SeatInventory seatInventory;
+    private final AuditService auditService;
+
+    public InventoryController(SeatInventory seatInventory, AuditService auditService) {
+        this.seatInventory = seatInventory;
+        this.auditService = auditService;
+    }
+
+    @GetMapping
+    public ResponseEntity<List<SeatAvailability>> availability(@RequestParam Long trainId,
+                                                               @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                                               @RequestParam(required = false) String travelClass) {
+        if (travelClass == null || travelClass.isBlank()) {
+            return ResponseEntity.ok(seatInventory.availability(trainId, date));
+        }
+        SeatAvailability availability = seatInventory.availability(trainId, date, travelClass);
+        if (availability == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No seat quota for this train, date and class");
+        }
+        return ResponseEntity.ok(List.of(availability));
+    }
+
+    @PutMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<SeatAvailability> setCapacity(@Valid @RequestBody SeatQuotaRequest request, Authentication authentication) {
+        SeatAvailability availability = seatInventory.setCapacity(request.getTrainId(), request.getTravelDate(),
+                request.getTravelClass(), request.getCapacity());
+        auditService.log(authentication.getName(), "SET_SEAT_QUOTA", "TrainId=" + request.getTrainId() + ", Date=" + request.getTravelDate()
+                + ", Class=" + availability.travelClass() + ", Capacity=" + request.getCapacity());
+        return ResponseEntity.ok(availability);
+    }
+}
@@ -0,0 +1,6 @@
+package com.yatrasathi.inventory;
+
+import java.time.LocalDate;
+
+public record SeatAvailability(Long trainId, LocalDate travelDate, String travelClass, int capacity, int reserved, int available) {
+}
@@ -0,0 +1,314 @@
+package com.yatrasathi.inventory;
+
+import com.yatrasathi.common.AfterCommit;
+import com.yatrasathi.common.StatsContributor;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live seat counts per (train, travel date, class). Each trip is a single {@link AtomicLong} packing
+ * capacity and reserved seats, so a reservation is one CAS and a sold-out trip turns requests away without
+ * touching the database. Successful reservations are written through to {@code seat_quotas} in the
+ * caller's transaction (and undone in memory if it rolls back); that table is what the counts are rebuilt
+ * from on startup.
+ *
+ * <p>Trips without a quota row are untracked: reservations against them always succeed but hold nothing,
+ * which keeps the booking flow working for trains nobody has loaded capacity for. {@link #reserve} says
+ * how many seats it actually took so the booking can record it and give back exactly that. The conditional write-through is the
+ * final guard against overselling, so memory drifting from the table (manual edits, a second instance)
+ * only costs a reload, never a seat.
+ */
+@Service
+public class SeatInventory implements StatsContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(SeatInventory.class);
+
+    /** Returned by {@link #reserve} when fewer seats are left than asked for. */
+    public static final int SOLD_OUT = -1;
+
+    private final SeatQuotaRepository repository;
+    private final ConcurrentHashMap<SeatKey, Slot> slots = new ConcurrentHashMap<>();
+    // Shared marker for trips known to have no quota, so they are not looked up again on every request
+    private final Slot untracked = new Slot(null, 0, 0);
+    private final List<SeatReleaseListener> releaseListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder reservedSeats = new LongAdder();
+    private final LongAdder releasedSeats = new LongAdder();
+    private final LongAdder soldOut = new LongAdder();
+    private final LongAdder casRetries = new LongAdder();
+    private final LongAdder writeThroughConflicts = new LongAdder();
+
+    public SeatInventory(SeatQuotaRepository repository) {
+        this.repository = repository;
+    }
+
+    @PostConstruct
+    void load() {
+        List<SeatQuota> quotas = repository.findByTravelDateGreaterThanEqual(LocalDate.now());
+        quotas.forEach(q -> slots.put(SeatKey.of(q), new Slot(q.getId(), q.getCapacity(), q.getReserved())));
+        log.info("Seat inventory recovered {} trip quotas", quotas.size());
+    }
+
+    /**
+     * Takes {@code seats} seats on the trip and returns how many are now held: {@code seats} on a tracked
+     * trip, 0 on an untracked one, or {@link #SOLD_OUT} (reserving nothing) when fewer are left.
+     *
+     * <p>The write-through UPDATE locks the trip's {@code seat_quotas} row until the caller's transaction ends,
+     * so reservations on one trip queue behind each other for the rest of the approving transaction; other
+     * trips are unaffected, and sold-out requests never reach the row. This is deliberate: the reservation
+     * commits or rolls back with the booking it is for, which a write-behind counter could not promise.
+     * The cost is measured by {@code SeatInventoryBenchmarkTest.rowLockHeldUntilCommit}; keep approving
+     * transactions short.
+     */
+    @Transactional
+    public int reserve(Long trainId, LocalDate travelDate, String travelClass, int seats) {
+        return reserve(SeatKey.of(trainId, travelDate, travelClass), seats);
+    }
+
+    @Transactional
+    public int reserve(SeatKey key, int seats) {
+        if (seats <= 0 || key == null) {
+            return 0;
+        }
+        Slot slot = slot(key);
+        if (slot == untracked) {
+            return 0;
+        }
+        if (!slot.tryAcquire(seats)) {
+            soldOut.increment();
+            return SOLD_OUT;
+        }
+        if (repository.reserve(slot.id, seats) == 0) {
+            slot.release(seats);
+            drifted(key, slot);
+            soldOut.increment();
+            return SOLD_OUT;
+        }
+        AfterCommit.onRollback(() -> slot.release(seats));
+        reservedSeats.add(seats);
+        return seats;
+    }
+
+    public void addReleaseListener(SeatReleaseListener listener) {
+        releaseListeners.add(listener);
+    }
+
+    /** Gives back seats taken by {@link #reserve}. */
+    @Transactional
+    public void release(Long trainId, LocalDate travelDate, String travelClass, int seats) {
+        release(SeatKey.of(trainId, travelDate, travelClass), seats);
+    }
+
+    @Transactional
+    public void release(SeatKey key, int seats) {
+        if (seats <= 0 || key == null) {
+            return;
+        }
+        Slot slot = slot(key);
+        if (slot == untracked) {
+            return;
+        }
+        if (repository.release(slot.id, seats) == 0) {
+            drifted(key, slot);
+            return;
+        }
+        // Freed in memory only once the table has them back, so memory never shows fewer seats taken than
+        // the table and a racing reservation's conditional write-through cannot fail on a phantom drift
+        AfterCommit.run(() -> slot.release(seats));
+        releasedSeats.add(seats);
+        freed(key);
+    }
+
+    /** Null when the trip has no quota. */
+    public SeatAvailability availability(Long trainId, LocalDate travelDate, String travelClass) {
+        SeatKey key = SeatKey.of(trainId, travelDate, travelClass);
+        return key == null ? null : availability(key);
+    }
+
+    public SeatAvailability availability(SeatKey key) {
+        Slot slot = slot(key);
+        return slot == untracked ? null : slot.snapshot(key);
+    }
+
+    public List<SeatAvailability> availability(Long trainId, LocalDate travelDate) {
+        return repository.findByTrainIdAndTravelDate(trainId, travelDate).stream()
+                .map(q -> availability(q.getTrainId(), q.getTravelDate(), q.getTravelClass()))
+                .filter(a -> a != null)
+                .toList();
+    }
+
+    /** Creates the trip's quota or changes its capacity; capacity cannot drop below the seats already reserved. */
+    @Transactional
+    public SeatAvailability setCapacity(Long trainId, LocalDate travelDate, String travelClass, int capacity) {
+        SeatKey key = SeatKey.of(trainId, travelDate, travelClass);
+        if (key == null || capacity < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "trainId, travelDate, travelClass and a non-negative capacity are required");
+        }
+        SeatQuota quota = repository.findByTrainIdAndTravelDateAndTravelClass(key.trainId(), key.travelDate(), key.travelClass())
+                .orElse(null);
+        if (quota == null) {
+            quota = new SeatQuota();
+            quota.setTrainId(key.trainId());
+            quota.setTravelDate(key.travelDate());
+            quota.setTravelClass(key.travelClass());
+            quota.setCapacity(capacity);
+            try {
+                quota = repository.saveAndFlush(quota);
+            } catch (DataIntegrityViolationException e) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Quota for this trip was created concurrently, please retry");
+            }
+            Slot created = new Slot(quota.getId(), capacity, 0);
+            slots.put(key, created);
+            AfterCommit.onRollback(() -> slots.remove(key, created));
+            return created.snapshot(key);
+        }
+        Slot slot = slot(key);
+        if (slot == untracked) {
+            // The row was created elsewhere after this trip was cached as untracked
+            slots.remove(key, untracked);
+            slot = slot(key);
+        }
+        Slot target = slot;
+        int previous = target.resize(capacity);
+        if (previous < 0 || repository.resize(quota.getId(), capacity) == 0) {
+            if (previous >= 0) {
+                target.resize(previous);
+            }
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Capacity " + capacity + " is below the seats already reserved");
+        }
+        AfterCommit.onRollback(() -> target.resize(previous));
+        if (capacity > previous) {
+            freed(key);
+        }
+        return target.snapshot(key);
+    }
+
+    // Past trips can no longer be booked; dropping them keeps the map proportional to the open booking window
+    @Scheduled(fixedDelayString = "${inventory.purge-interval-ms:3600000}")
+    public void purgePastTrips() {
+        LocalDate today = LocalDate.now();
+        slots.keySet().removeIf(key -> key.travelDate().isBefore(today));
+    }
+
+    @Override
+    public String statsName() {
+        return "seatInventory";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long tracked = slots.values().stream().filter(s -> s != untracked).count();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("trackedTrips", tracked);
+        data.put("untrackedTrips", slots.size() - tracked);
+        data.put("reservedSeats", reservedSeats.sum());
+        data.put("releasedSeats", releasedSeats.sum());
+        data.put("soldOut", soldOut.sum());
+        data.put("casRetries", casRetries.sum());
+        data.put("writeThroughConflicts", writeThroughConflicts.sum());
+        return data;
+    }
+
+    private Slot slot(SeatKey key) {
+        Slot slot = slots.get(key);
+        if (slot != null) {
+            return slot;
+        }
+        return slots.computeIfAbsent(key, k -> repository
+                .findByTrainIdAndTravelDateAndTravelClass(k.trainId(), k.travelDate(), k.travelClass())
+                .map(q -> new Slot(q.getId(), q.getCapacity(), q.getReserved()))
+                .orElse(untracked));
+    }
+
+    private void freed(SeatKey key) {
+        if (!releaseListeners.isEmpty()) {
+            AfterCommit.run(() -> releaseListeners.forEach(l -> l.seatsFreed(key)));
+        }
+    }
+
+    // The table disagreed with memory; drop the slot so the next request reloads it from the table
+    private void drifted(SeatKey key, Slot slot) {
+        writeThroughConflicts.increment();
+        slots.remove(key, slot);
+        log.warn("Seat inventory for {} drifted from seat_quotas; reloading", key);
+    }
+
+    /** Capacity in the high 32 bits, reserved seats in the low 32. */
+    private final class Slot {
+        private final Long id;
+        private final AtomicLong state;
+
+        private Slot(Long id, int capacity, int reserved) {
+            this.id = id;
+            this.state = new AtomicLong(pack(capacity, reserved));
+        }
+
+        boolean tryAcquire(int seats) {
+            while (true) {
+                long current = state.get();
+                int capacity = capacity(current);
+                int reserved = reserved(current);
+                if (reserved + seats > capacity) {
+                    return false;
+                }
+                if (state.compareAndSet(current, pack(capacity, reserved + seats))) {
+                    return true;
+                }
+                casRetries.increment();
+            }
+        }
+
+        void release(int seats) {
+            state.getAndUpdate(current -> pack(capacity(current), Math.max(0, reserved(current) - seats)));
+        }
+
+        /** Returns the previous capacity, or -1 if more seats than {@code capacity} are already reserved. */
+        int resize(int capacity) {
+            while (true) {
+                long current = state.get();
+                if (reserved(current) > capacity) {
+                    return -1;
+                }
+                if (state.compareAndSet(current, pack(capacity, reserved(current)))) {
+                    return capacity(current);
+                }
+            }
+        }
+
+        SeatAvailability snapshot(SeatKey key) {
+            long current = state.get();
+            int capacity = capacity(current);
+            int reserved = reserved(current);
+            return new SeatAvailability(key.trainId(), key.travelDate(), key.travelClass(), capacity, reserved,
+                    Math.max(0, capacity - reserved));
+        }
+
+        private static long pack(int capacity, int reserved) {
+            return ((long) capacity << 32) | (reserved & 0xFFFFFFFFL);
+        }
+
+        private static int capacity(long state) {
+            return (int) (state >>> 32);
+        }
+
+        private static int reserved(long state) {
+            return (int) state;
+        }
+    }
+}
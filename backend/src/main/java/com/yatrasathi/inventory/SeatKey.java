@@ -0,0 +1,22 @@
+package com.yatrasathi.inventory;
+
+import java.time.LocalDate;
+
+/**
+ * One bookable trip: a train on a travel date in one class. The class is normalised (trimmed, upper case)
+ * so "3a" and "3A " land on the same quota.
+ */
+public record SeatKey(Long trainId, LocalDate travelDate, String travelClass) {
+
+    /** Null when any part is missing, i.e. the request cannot be tied to a quota. */
+    public static SeatKey of(Long trainId, LocalDate travelDate, String travelClass) {
+        if (trainId == null || travelDate == null || travelClass == null || travelClass.isBlank()) {
+            return null;
+        }
+        return new SeatKey(trainId, travelDate, travelClass.trim().toUpperCase());
+    }
+
+    static SeatKey of(SeatQuota quota) {
+        return of(quota.getTrainId(), quota.getTravelDate(), quota.getTravelClass());
+    }
+}
@@ -0,0 +1,58 @@
+package com.yatrasathi.inventory;
+
+import jakarta.persistence.*;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Persisted seat quota for one (train, travel date, class). {@link SeatInventory} keeps the live counts in
+ * memory and writes every reservation through to this row, which is what it recovers from on restart.
+ */
+@NoArgsConstructor
+@Entity
+@Table(name = "seat_quotas",
+        uniqueConstraints = @UniqueConstraint(name = "uk_seat_quotas_trip", columnNames = {"train_id", "travel_date", "class"}),
+        indexes = @Index(name = "idx_seat_quotas_travel_date", columnList = "travel_date"))
+public class SeatQuota {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "train_id", nullable = false)
+    private Long trainId;
+
+    @Column(name = "travel_date", nullable = false)
+    private LocalDate travelDate;
+
+    @Column(name = "class", nullable = false)
+    private String travelClass;
+
+    @Column(nullable = false)
+    private Integer capacity;
+
+    @Column(nullable = false)
+    private Integer reserved = 0;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt = LocalDateTime.now();
+
+    // Getters
+    public Long getId() { return id; }
+    public Long getTrainId() { return trainId; }
+    public LocalDate getTravelDate() { return travelDate; }
+    public String getTravelClass() { return travelClass; }
+    public Integer getCapacity() { return capacity; }
+    public Integer getReserved() { return reserved; }
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+
+    // Setters
+    public void setId(Long id) { this.id = id; }
+    public void setTrainId(Long trainId) { this.trainId = trainId; }
+    public void setTravelDate(LocalDate travelDate) { this.travelDate = travelDate; }
+    public void setTravelClass(String travelClass) { this.travelClass = travelClass; }
+    public void setCapacity(Integer capacity) { this.capacity = capacity; }
+    public void setReserved(Integer reserved) { this.reserved = reserved; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,32 @@
+package com.yatrasathi.inventory;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface SeatQuotaRepository extends JpaRepository<SeatQuota, Long> {
+    Optional<SeatQuota> findByTrainIdAndTravelDateAndTravelClass(Long trainId, LocalDate travelDate, String travelClass);
+    List<SeatQuota> findByTravelDateGreaterThanEqual(LocalDate travelDate);
+    List<SeatQuota> findByTrainIdAndTravelDate(Long trainId, LocalDate travelDate);
+
+    // Write-through of the in-memory counts. Both are conditional, so a row that has drifted from memory
+    // (manual edits, another instance) returns 0 instead of going over capacity or below zero.
+    @Modifying
+    @Query("update SeatQuota q set q.reserved = q.reserved + :seats, q.updatedAt = CURRENT_TIMESTAMP"
+            + " where q.id = :id and q.reserved + :seats <= q.capacity")
+    int reserve(Long id, int seats);
+
+    @Modifying
+    @Query("update SeatQuota q set q.reserved = q.reserved - :seats, q.updatedAt = CURRENT_TIMESTAMP"
+            + " where q.id = :id and q.reserved >= :seats")
+    int release(Long id, int seats);
+
+    @Modifying
+    @Query("update SeatQuota q set q.capacity = :capacity, q.updatedAt = CURRENT_TIMESTAMP"
+            + " where q.id = :id and q.reserved <= :capacity")
+    int resize(Long id, int capacity);
+}
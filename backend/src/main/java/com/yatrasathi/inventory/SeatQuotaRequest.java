@@ -0,0 +1,34 @@
+package com.yatrasathi.inventory;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDate;
+
+public class SeatQuotaRequest {
+    @NotNull
+    private Long trainId;
+
+    @NotNull
+    private LocalDate travelDate;
+
+    @NotBlank
+    private String travelClass;
+
+    @NotNull
+    @Min(0)
+    private Integer capacity;
+
+    // Getters
+    public Long getTrainId() { return trainId; }
+    public LocalDate getTravelDate() { return travelDate; }
+    public String getTravelClass() { return travelClass; }
+    public Integer getCapacity() { return capacity; }
+
+    // Setters
+    public void setTrainId(Long trainId) { this.trainId = trainId; }
+    public void setTravelDate(LocalDate travelDate) { this.travelDate = travelDate; }
+    public void setTravelClass(String travelClass) { this.travelClass = travelClass; }
+    public void setCapacity(Integer capacity) { this.capacity = capacity; }
+}
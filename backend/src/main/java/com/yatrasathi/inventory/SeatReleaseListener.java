@@ -0,0 +1,9 @@
+package com.yatrasathi.inventory;
+
+/**
+ * Told when seats on a trip become free (a release or a capacity increase has committed), so whoever
+ * holds a waitlist for that trip can move it up.
+ */
+public interface SeatReleaseListener {
+    void seatsFreed(SeatKey trip);
+}
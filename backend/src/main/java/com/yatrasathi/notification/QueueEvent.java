@@ -0,0 +1,43 @@
+package com.yatrasathi.notification;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.yatrasathi.common.TicketEnums.PaymentStatus;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * A single change to the ticket queue, pushed to console subscribers instead of having them re-download
+ * whole lists. Only the fields relevant to the {@link Type} are set; {@code customerId} is always present
+ * and is what customer subscriptions are filtered on.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record QueueEvent(Type type, Long ticketId, Long customerId, TicketStatus status, Long version,
+                         Long employeeId, Long paymentId, PaymentStatus paymentStatus, BigDecimal amount) {
+
+    public enum Type { CREATED, TRANSITIONED, ASSIGNED, PAID, WAITLISTED, PROMOTED }
+
+    public static QueueEvent created(Long ticketId, Long customerId) {
+        return new QueueEvent(Type.CREATED, ticketId, customerId, TicketStatus.PENDING, null, null, null, null, null);
+    }
+
+    public static QueueEvent transitioned(Long ticketId, Long customerId, TicketStatus status, Long version) {
+        return new QueueEvent(Type.TRANSITIONED, ticketId, customerId, status, version, null, null, null, null);
+    }
+
+    public static QueueEvent waitlisted(Long ticketId, Long customerId, Long version) {
+        return new QueueEvent(Type.WAITLISTED, ticketId, customerId, TicketStatus.PENDING, version, null, null, null, null);
+    }
+
+    public static QueueEvent promoted(Long ticketId, Long customerId, Long version) {
+        return new QueueEvent(Type.PROMOTED, ticketId, customerId, TicketStatus.APPROVED, version, null, null, null, null);
+    }
+
+    public static QueueEvent assigned(Long ticketId, Long customerId, Long employeeId) {
+        return new QueueEvent(Type.ASSIGNED, ticketId, customerId, null, null, employeeId, null, null, null);
+    }
+
+    public static QueueEvent paid(Long ticketId, Long customerId, Long paymentId, PaymentStatus paymentStatus, BigDecimal amount) {
+        return new QueueEvent(Type.PAID, ticketId, customerId, null, null, null, paymentId, paymentStatus, amount);
+    }
+}
@@ -0,0 +1,59 @@
+package com.yatrasathi.notification;
+
+import com.yatrasathi.security.CurrentUserId;
+import com.yatrasathi.security.JwtService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/events")
+public class QueueEventController {
+
+    private final QueueEventStream stream;
+    private final JwtService jwtService;
+
+    public QueueEventController(QueueEventStream stream, JwtService jwtService) {
+        this.stream = stream;
+        this.jwtService = jwtService;
+    }
+
+    // Consoles keep this open instead of polling the queue and dashboard endpoints. Browsers connect with
+    // new EventSource("/api/events/queue?token=" + token), the token coming from POST /api/events/queue/token
+    @GetMapping(value = "/queue", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter queue(Authentication authentication, @CurrentUserId Long userId) {
+        boolean staff = authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_EMPLOYEE") || a.getAuthority().equals("ROLE_ADMIN"));
+        return stream.subscribe(userId, staff);
+    }
+
+    // Short-lived, stream-only token for clients that cannot send the Authorization header; fetch one per (re)connect
+    @PostMapping("/queue/token")
+    public ResponseEntity<Map<String, Object>> streamToken(Authentication authentication, @CurrentUserId Long userId) {
+        if (userId == null) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Sign in again to open the event stream");
+        }
+        String role = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .filter(a -> a.startsWith("ROLE_"))
+                .map(a -> a.substring("ROLE_".length()))
+                .findFirst()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.FORBIDDEN, "No role on this session"));
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("token", jwtService.generateStreamToken(authentication.getName(), userId, role));
+        body.put("expiresInSeconds", jwtService.getStreamTokenSeconds());
+        return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(body);
+    }
+}
@@ -0,0 +1,305 @@
+package com.yatrasathi.notification;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yatrasathi.common.AfterCommit;
+import com.yatrasathi.common.StatsContributor;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fans queue events out to Server-Sent Events subscribers. An idle subscriber is just an async request
+ * plus a small mailbox, so thousands of open consoles hold no threads. Publishing only serializes the
+ * event once and drops it into each matching mailbox; the actual socket writes happen on a small shared
+ * sender pool, one drain task per mailbox at a time. A subscriber whose mailbox backs up past
+ * {@code events.sse.max-backlog} is disconnected so it cannot pin memory; its client reconnects and reloads.
+ *
+ * <p>A socket write to a client that stopped reading blocks its sender thread until the container's write
+ * timeout ({@code server.tomcat.connection-timeout}) gives up, and the emitter cannot be completed from outside
+ * meanwhile. A watchdog therefore disconnects any subscriber whose write has been blocked for longer than
+ * {@code events.sse.send-timeout-ms} and lends the pool a spare thread until that write returns, so a few
+ * dead clients cannot stall delivery to everyone else.
+ *
+ * <p>Staff (employees and admins) receive every event; customers only those for their own requests.
+ */
+@Service
+public class QueueEventStream implements StatsContributor {
+
+    private final ObjectMapper objectMapper;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor senders;
+    private final AtomicLong sequence = new AtomicLong();
+    private final long timeoutMs;
+    private final int maxSubscribers;
+    private final int maxBacklog;
+    private final long sendTimeoutNanos;
+    private final int maxSpareSenders;
+    private int spareSenders;
+    private final long startedAt = System.nanoTime();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
+    private final LongAdder stalledDisconnects = new LongAdder();
+
+    public QueueEventStream(ObjectMapper objectMapper,
+                            @Value("${events.sse.sender-threads:2}") int senderThreads,
+                            @Value("${events.sse.timeout-ms:1800000}") long timeoutMs,
+                            @Value("${events.sse.max-subscribers:10000}") int maxSubscribers,
+                            @Value("${events.sse.max-backlog:256}") int maxBacklog,
+                            @Value("${events.sse.send-timeout-ms:10000}") long sendTimeoutMs,
+                            @Value("${events.sse.max-spare-senders:8}") int maxSpareSenders) {
+        this.objectMapper = objectMapper;
+        this.timeoutMs = timeoutMs;
+        this.maxSubscribers = maxSubscribers;
+        this.maxBacklog = maxBacklog;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.maxSpareSenders = maxSpareSenders;
+        AtomicInteger counter = new AtomicInteger();
+        // At most one queued drain task per subscriber, so the work queue is bounded by the subscriber cap
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "sse-sender-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    public SseEmitter subscribe(Long userId, boolean staff) {
+        return subscribe(new SseEmitter(timeoutMs), userId, staff);
+    }
+
+    SseEmitter subscribe(SseEmitter emitter, Long userId, boolean staff) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many open event streams");
+        }
+        Subscriber subscriber = new Subscriber(emitter, userId, staff);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> {
+            subscribers.remove(subscriber);
+            subscriber.closed.set(true);
+        });
+        emitter.onTimeout(() -> {
+            subscribers.remove(subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> {
+            subscribers.remove(subscriber);
+            subscriber.closed.set(true);
+        });
+        // Lets the client know the stream is live and flushes the response headers through proxies
+        subscriber.enqueue(SseEmitter.event().comment("connected").build());
+        return emitter;
+    }
+
+    /** Queues the event for delivery once the current transaction (if any) commits. */
+    public void publish(QueueEvent event) {
+        AfterCommit.run(() -> fanOut(event));
+    }
+
+    // A comment line is the cheapest thing that keeps proxies from closing idle streams and surfaces dead ones
+    @Scheduled(fixedDelayString = "${events.sse.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Set<DataWithMediaType> ping = SseEmitter.event().comment("").build();
+        subscribers.forEach(s -> s.enqueue(ping));
+    }
+
+    @Scheduled(fixedDelayString = "${events.sse.stall-check-interval-ms:1000}")
+    public void disconnectStalledSends() {
+        long now = clock();
+        for (Subscriber subscriber : subscribers) {
+            long since = subscriber.sendingSince.get();
+            if (since != IDLE && since != STALLED && now - since > sendTimeoutNanos) {
+                stall(subscriber, since);
+            }
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "queueEvents";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("subscribers", subscribers.size());
+        data.put("published", published.sum());
+        data.put("delivered", delivered.sum());
+        data.put("slowDisconnects", slowDisconnects.sum());
+        data.put("stalledDisconnects", stalledDisconnects.sum());
+        synchronized (this) {
+            data.put("spareSenders", spareSenders);
+        }
+        data.put("senderQueue", senders.getQueue().size());
+        return data;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        subscribers.forEach(s -> s.emitter.complete());
+        senders.shutdown();
+    }
+
+    private void fanOut(QueueEvent event) {
+        published.increment();
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize queue event", e);
+        }
+        Set<DataWithMediaType> frame = SseEmitter.event()
+                .id(Long.toString(sequence.incrementAndGet()))
+                .name(event.type().name().toLowerCase())
+                .data(json)
+                .build();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.staff || (subscriber.userId != null && subscriber.userId.equals(event.customerId()))) {
+                subscriber.enqueue(frame);
+            }
+        }
+    }
+
+    // Runs under the same lock as unstall, so a sender whose write returns sees whether it was lent a spare thread
+    private synchronized void stall(Subscriber subscriber, long since) {
+        if (!subscriber.sendingSince.compareAndSet(since, STALLED)) {
+            return;
+        }
+        if (subscribers.remove(subscriber)) {
+            stalledDisconnects.increment();
+        }
+        subscriber.mailbox.clear();
+        if (spareSenders < maxSpareSenders) {
+            spareSenders++;
+            subscriber.spared = true;
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() + 1);
+            senders.setCorePoolSize(senders.getCorePoolSize() + 1);
+        }
+    }
+
+    private synchronized void unstall(Subscriber subscriber) {
+        if (subscriber.spared) {
+            subscriber.spared = false;
+            spareSenders--;
+            senders.setCorePoolSize(senders.getCorePoolSize() - 1);
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() - 1);
+        }
+    }
+
+    private static final long IDLE = 0;
+    private static final long STALLED = -1;
+
+    // Nanos since startup, offset so that a real time never collides with IDLE or STALLED
+    private long clock() {
+        return System.nanoTime() - startedAt + 1;
+    }
+
+    private final class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        private final Long userId;
+        private final boolean staff;
+        private final ConcurrentLinkedQueue<Set<DataWithMediaType>> mailbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger backlog = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // When the write in progress started (clock()), IDLE between writes, STALLED once the watchdog gave up on it
+        private final AtomicLong sendingSince = new AtomicLong(IDLE);
+        private boolean spared;
+
+        private Subscriber(SseEmitter emitter, Long userId, boolean staff) {
+            this.emitter = emitter;
+            this.userId = userId;
+            this.staff = staff;
+        }
+
+        void enqueue(Set<DataWithMediaType> frame) {
+            if (backlog.incrementAndGet() > maxBacklog) {
+                if (subscribers.remove(this)) {
+                    slowDisconnects.increment();
+                    mailbox.clear();
+                    // Completed by the drain task: complete() waits for a write in progress, which may be blocked
+                    schedule();
+                }
+                return;
+            }
+            mailbox.offer(frame);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Set<DataWithMediaType> frame;
+                while (subscribers.contains(this) && (frame = mailbox.poll()) != null) {
+                    backlog.decrementAndGet();
+                    if (!send(frame)) {
+                        break;
+                    }
+                    delivered.increment();
+                }
+                if (!subscribers.contains(this) && closed.compareAndSet(false, true)) {
+                    emitter.complete();
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away or the emitter already completed
+                subscribers.remove(this);
+                closed.set(true);
+                mailbox.clear();
+            } finally {
+                scheduled.set(false);
+                boolean subscribed = subscribers.contains(this);
+                if ((subscribed ? !mailbox.isEmpty() : !closed.get()) && scheduled.compareAndSet(false, true)) {
+                    senders.execute(this);
+                }
+            }
+        }
+
+        // False if the watchdog gave up on this write while it was blocked; the subscriber is already gone then
+        private boolean send(Set<DataWithMediaType> frame) throws IOException {
+            long started = clock();
+            sendingSince.set(started);
+            try {
+                emitter.send(frame);
+            } finally {
+                if (!sendingSince.compareAndSet(started, IDLE)) {
+                    unstall(this);
+                }
+            }
+            return sendingSince.get() != STALLED;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.yatrasathi.passenger;
+
+/**
+ * A passenger being added who already travels on another live booking: the same Aadhaar on the same travel
+ * date, or the same name and age on the same train and date. {@code index} is the passenger's position in
+ * the list that was checked.
+ */
+public record DuplicatePassenger(Kind kind, int index, String name, Long otherBookingId, boolean sameCustomer) {
+
+    public enum Kind { AADHAAR, NAME_AGE }
+}
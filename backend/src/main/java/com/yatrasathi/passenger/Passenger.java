@@ -1,5 +1,7 @@
 package com.yatrasathi.passenger;
 
+import com.yatrasathi.common.PooledIds;
+import com.yatrasathi.common.TicketEnums.BerthPreference;
 import com.yatrasathi.ticket.TicketRequest;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
@@ -11,7 +13,10 @@ import lombok.NoArgsConstructor;
 @Table(name = "passengers")
 public class Passenger {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "passenger_ids")
+    @TableGenerator(name = "passenger_ids", table = PooledIds.TABLE, pkColumnName = PooledIds.NAME_COLUMN,
+            valueColumnName = PooledIds.VALUE_COLUMN, pkColumnValue = PooledIds.PASSENGERS,
+            allocationSize = PooledIds.ALLOCATION_SIZE)
     @Column(name = "passenger_id")
     private Long id;
 
@@ -39,6 +44,11 @@ public class Passenger {
     @Column(name = "passport_number")
     private String passportNumber;
     
+    @Enumerated(EnumType.STRING)
+    @Column(name = "berth_preference")
+    private BerthPreference berthPreference;
+
+    // Written by the berth allocator, e.g. "B2/17/LB" (coach/berth/type)
     @Column(name = "berth_allotted")
     private String berthAllotted;
 
@@ -51,6 +61,7 @@ public class Passenger {
     public String getRelationToPrimary() { return relationToPrimary; }
     public String getAadhaar() { return aadhaar; }
     public String getPassportNumber() { return passportNumber; }
+    public BerthPreference getBerthPreference() { return berthPreference; }
     public String getBerthAllotted() { return berthAllotted; }
 
     // Setters
@@ -62,5 +73,6 @@ public class Passenger {
     public void setRelationToPrimary(String relationToPrimary) { this.relationToPrimary = relationToPrimary; }
     public void setAadhaar(String aadhaar) { this.aadhaar = aadhaar; }
     public void setPassportNumber(String passportNumber) { this.passportNumber = passportNumber; }
+    public void setBerthPreference(BerthPreference berthPreference) { this.berthPreference = berthPreference; }
     public void setBerthAllotted(String berthAllotted) { this.berthAllotted = berthAllotted; }
 }
\ No newline at end of file
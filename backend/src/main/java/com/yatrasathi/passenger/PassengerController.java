@@ -1,27 +1,42 @@
 package com.yatrasathi.passenger;
 
+import com.yatrasathi.security.CurrentUserId;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/passengers")
 public class PassengerController {
 
     private final PassengerService passengerService;
+    private final PassengerImportService passengerImportService;
 
-    public PassengerController(PassengerService passengerService) {
+    public PassengerController(PassengerService passengerService, PassengerImportService passengerImportService) {
         this.passengerService = passengerService;
+        this.passengerImportService = passengerImportService;
     }
 
     @GetMapping("/ticket/{ticketId}")
-    public ResponseEntity<List<Passenger>> getPassengersByTicketId(@PathVariable Long ticketId) {
+    public ResponseEntity<List<PassengerSummary>> getPassengersByTicketId(@PathVariable Long ticketId) {
         return ResponseEntity.ok(passengerService.getPassengersByTicketRequestId(ticketId));
     }
 
+    // Screens listing many bookings: ?ids=1,2,3 -> {"1":[...],"2":[...],"3":[]}
+    @GetMapping("/tickets")
+    public ResponseEntity<Map<Long, List<PassengerSummary>>> getPassengersByTicketIds(@RequestParam List<Long> ids,
+                                                                                    @CurrentUserId Long userId,
+                                                                                    Authentication authentication) {
+        return ResponseEntity.ok(passengerService.getPassengersByTicketRequestIds(ids, isStaff(authentication) ? null : userId));
+    }
+
     @PostMapping("/ticket/{ticketId}")
     @PreAuthorize("hasRole('CUSTOMER')")
     public ResponseEntity<Passenger> addPassenger(
@@ -30,6 +45,12 @@ public class PassengerController {
         return ResponseEntity.ok(passengerService.addPassenger(ticketId, passenger));
     }
 
+    @PostMapping("/ticket/{ticketId}/allocate-berths")
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public ResponseEntity<List<Passenger>> allocateBerths(@PathVariable Long ticketId) {
+        return ResponseEntity.ok(passengerService.allocateBerths(ticketId));
+    }
+
     @PostMapping("/ticket/{ticketId}/batch")
     @PreAuthorize("hasRole('CUSTOMER')")
     public ResponseEntity<List<Passenger>> addPassengers(
@@ -37,4 +58,17 @@ public class PassengerController {
             @Valid @RequestBody List<Passenger> passengers) {
         return ResponseEntity.ok(passengerService.addPassengers(ticketId, passengers));
     }
-}
\ No newline at end of file
+
+    // Group bookings: the JSON array body is streamed and inserted in batches rather than bound as a List
+    @PostMapping(value = "/ticket/{ticketId}/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public ResponseEntity<PassengerImport> importPassengers(@PathVariable Long ticketId, InputStream body,
+                                                            @CurrentUserId Long userId, Authentication authentication) {
+        return ResponseEntity.ok(passengerImportService.importPassengers(ticketId, userId, authentication.getName(), body));
+    }
+
+    private static boolean isStaff(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_EMPLOYEE") || a.getAuthority().equals("ROLE_ADMIN"));
+    }
+}
@@ -0,0 +1,5 @@
+package com.yatrasathi.passenger;
+
+/** Outcome of one bulk passenger upload; the passengers themselves are not echoed back. */
+public record PassengerImport(Long ticketRequestId, int imported, int batches, long elapsedMs) {
+}
@@ -0,0 +1,194 @@
+package com.yatrasathi.passenger;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yatrasathi.common.AuditService;
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.ticket.TicketRequest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk passenger upload for group and corporate bookings. The body is a JSON array that is read one element
+ * at a time, so only the current batch is ever held: each passenger is validated as it is read, persisted,
+ * and every {@code passengers.bulk.batch-size} passengers the batch is flushed as JDBC batches (passengers
+ * use pooled ids) and cleared from the persistence context, after a check against {@link PassengerIndex}.
+ * The upload is one transaction, so a passenger that fails validation or is already booked elsewhere
+ * rejects the whole upload rather than leaving half a group on the booking.
+ */
+@Service
+public class PassengerImportService implements StatsContributor {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final PassengerIndex passengerIndex;
+    private final AuditService auditService;
+    private final int batchSize;
+    private final int maxItems;
+
+    private final LongAdder imports = new LongAdder();
+    private final LongAdder imported = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final AtomicLong lastImportMs = new AtomicLong();
+
+    public PassengerImportService(ObjectMapper objectMapper, Validator validator, PassengerIndex passengerIndex, AuditService auditService,
+                                  @Value("${passengers.bulk.batch-size:500}") int batchSize,
+                                  @Value("${passengers.bulk.max-items:20000}") int maxItems) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.passengerIndex = passengerIndex;
+        this.auditService = auditService;
+        this.batchSize = batchSize;
+        this.maxItems = maxItems;
+    }
+
+    /** Customers may only add passengers to their own requests. */
+    @Transactional
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public PassengerImport importPassengers(Long ticketRequestId, Long customerId, String actor, InputStream body) {
+        long started = System.nanoTime();
+        // Locked so a cancellation cannot commit mid-upload and leave passengers indexed on a dead booking
+        TicketRequest ticketRequest = entityManager.find(TicketRequest.class, ticketRequestId, LockModeType.PESSIMISTIC_WRITE);
+        if (ticketRequest == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ticket request " + ticketRequestId + " not found");
+        }
+        if (!ticketRequest.getCustomer().getId().equals(customerId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Ticket request " + ticketRequestId + " belongs to another customer");
+        }
+        if (ticketRequest.getStatus() == TicketStatus.CANCELLED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ticket request " + ticketRequestId + " is cancelled");
+        }
+        // clear() detaches the request after every batch, so keep what the index needs from it
+        Trip trip = new Trip(ticketRequestId, customerId, ticketRequest.getTrainId(), ticketRequest.getTravelDate());
+        // Lets one flush go out as a single JDBC batch instead of hibernate.jdbc.batch_size sized pieces
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+
+        int count = 0;
+        int flushes = 0;
+        List<Passenger> batch = new ArrayList<>(batchSize);
+        List<DuplicatePassenger> duplicates = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw badRequest("Expected a JSON array of passengers");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw badRequest("Passenger #" + count + " is not a JSON object");
+                }
+                if (count == maxItems) {
+                    throw badRequest("At most " + maxItems + " passengers per upload");
+                }
+                Passenger passenger = objectMapper.readValue(parser, Passenger.class);
+                validate(count, passenger);
+                batch.add(passenger);
+                count++;
+                if (batch.size() == batchSize) {
+                    write(trip, batch, count - batch.size(), duplicates);
+                    flushes++;
+                }
+            }
+        } catch (JsonProcessingException e) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed passenger list after " + count + " passengers: "
+                    + e.getOriginalMessage());
+        } catch (IOException e) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Could not read the passenger list", e);
+        }
+        if (!batch.isEmpty()) {
+            write(trip, batch, count - batch.size(), duplicates);
+            flushes++;
+        }
+        if (!duplicates.isEmpty()) {
+            auditService.log(actor, "DUPLICATE_PASSENGER", "RequestId=" + ticketRequestId + ", matches=" + duplicates);
+        }
+        auditService.log(actor, "IMPORT_PASSENGERS", "RequestId=" + ticketRequestId + ", passengers=" + count);
+
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        imports.increment();
+        imported.add(count);
+        batches.add(flushes);
+        lastImportMs.set(elapsedMs);
+        return new PassengerImport(ticketRequestId, count, flushes, elapsedMs);
+    }
+
+    @Override
+    public String statsName() {
+        return "passengerImports";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("batchSize", batchSize);
+        data.put("imports", imports.sum());
+        data.put("imported", imported.sum());
+        data.put("batches", batches.sum());
+        data.put("rejected", rejected.sum());
+        data.put("lastImportMs", lastImportMs.get());
+        return data;
+    }
+
+    // Checks the batch against the duplicate index, then inserts it as one flush
+    private void write(Trip trip, List<Passenger> batch, int firstIndex, List<DuplicatePassenger> duplicates) {
+        duplicates.addAll(passengerIndex.claim(trip.bookingId(), trip.customerId(), trip.trainId(), trip.travelDate(), batch, firstIndex));
+        for (Passenger passenger : batch) {
+            passenger.setId(null);
+            passenger.setBerthAllotted(null);
+            // A reference is enough for the foreign key
+            passenger.setTicketRequest(entityManager.getReference(TicketRequest.class, trip.bookingId()));
+            entityManager.persist(passenger);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        batch.clear();
+    }
+
+    private void validate(int index, Passenger passenger) {
+        Set<ConstraintViolation<Passenger>> violations = validator.validate(passenger);
+        if (!violations.isEmpty()) {
+            throw badRequest("Passenger #" + index + ": " + violations.stream()
+                    .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+    }
+
+    private record Trip(Long bookingId, Long customerId, Long trainId, LocalDate travelDate) {
+    }
+
+    private ResponseStatusException badRequest(String message) {
+        rejected.increment();
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, message);
+    }
+}
@@ -0,0 +1,499 @@
+package com.yatrasathi.passenger;
+
+import com.yatrasathi.common.AfterCommit;
+import com.yatrasathi.common.ChangeVersions;
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.ticket.TicketRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.sql.Date;
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of the passengers on live bookings (not cancelled, travel date today or later), used to
+ * catch the same person booked twice through different accounts without a query at intake. Two hash keys
+ * per passenger: the Aadhaar number, matched against other bookings on the same travel date, and
+ * train + date + normalised name, matched on age against other customers' bookings on that train. Keys are
+ * keyed HMACs, so neither the heap nor the snapshot holds Aadhaar numbers or names.
+ *
+ * <p>Passengers are claimed into the index before they are inserted, under the index lock, so two
+ * concurrent uploads cannot both miss each other; a rollback takes the claim back out. Cancellations
+ * remove their bookings once they commit.
+ *
+ * <p>On startup the index is read from the snapshot at {@code passengers.index.snapshot-path} and brought
+ * up to date with the passengers inserted and bookings cancelled since it was written; without a usable
+ * snapshot it is rebuilt by streaming every live passenger. Snapshots are only taken while no claim is in
+ * flight, which makes "passenger ids above the highest one" and "change versions above stable()" a
+ * complete delta. Like {@link ChangeVersions}, this assumes one writing instance.
+ */
+@Component
+public class PassengerIndex implements StatsContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(PassengerIndex.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x59535049; // "YSPI"
+    private static final int SNAPSHOT_FORMAT = 1;
+
+    private static final String LIVE_PASSENGERS = "select p.passenger_id, p.aadhaar, p.name, p.age, b.booking_id, b.customer_id, b.train_id, b.travel_date"
+            + " from passengers p join bookings b on b.booking_id = p.booking_id"
+            + " where b.travel_date >= :today and b.status <> 'CANCELLED'";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final ChangeVersions changeVersions;
+    private final SecretKeySpec hashKey;
+    private final ThreadLocal<Mac> macs;
+    private final Path snapshotPath;
+    private final boolean rejectAadhaar;
+    private final boolean rejectNameAge;
+
+    // Guarded by this
+    private final Map<Long, List<Entry>> byAadhaar = new HashMap<>();
+    private final Map<Long, List<Entry>> byName = new HashMap<>();
+    private final Map<Long, List<Entry>> byBooking = new HashMap<>();
+    private int entries;
+    private int claimsInFlight;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder aadhaarMatches = new LongAdder();
+    private final LongAdder nameMatches = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile String loadedFrom = "none";
+    private volatile long loadMs;
+    private final AtomicLong snapshotsWritten = new AtomicLong();
+    private volatile long lastSnapshotMs;
+
+    public PassengerIndex(NamedParameterJdbcTemplate jdbc, ChangeVersions changeVersions,
+                          @Value("${passengers.index.hash-secret:${security.jwt.secret}}") String hashSecret,
+                          @Value("${passengers.index.snapshot-path:}") String snapshotPath,
+                          @Value("${passengers.duplicates.reject-aadhaar:true}") boolean rejectAadhaar,
+                          @Value("${passengers.duplicates.reject-name-age:false}") boolean rejectNameAge) {
+        this.jdbc = jdbc;
+        this.changeVersions = changeVersions;
+        this.hashKey = new SecretKeySpec(hashSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.macs = ThreadLocal.withInitial(this::newMac);
+        this.snapshotPath = snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+        this.rejectAadhaar = rejectAadhaar;
+        this.rejectNameAge = rejectNameAge;
+    }
+
+    @PostConstruct
+    void load() {
+        long started = System.nanoTime();
+        Snapshot snapshot = readSnapshot();
+        if (snapshot != null) {
+            synchronized (this) {
+                snapshot.entries.forEach(this::add);
+            }
+            // Everything the snapshot could not see: later passengers and later cancellations
+            int added = stream(LIVE_PASSENGERS + " and p.passenger_id > :afterId", Map.of("afterId", snapshot.maxPassengerId));
+            List<Long> cancelled = jdbc.queryForList("select booking_id from bookings where status = 'CANCELLED' and change_version > :since",
+                    Map.of("since", snapshot.changeVersion), Long.class);
+            synchronized (this) {
+                cancelled.forEach(this::dropBooking);
+            }
+            loadedFrom = "snapshot";
+            log.info("Passenger index loaded from {}: {} entries, {} passengers added since, {} cancelled bookings dropped",
+                    snapshotPath, snapshot.entries.size(), added, cancelled.size());
+        } else {
+            int added = stream(LIVE_PASSENGERS, Map.of());
+            loadedFrom = "rebuild";
+            log.info("Passenger index rebuilt from the database: {} passengers on live bookings", added);
+        }
+        loadMs = (System.nanoTime() - started) / 1_000_000;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // Requests still finishing may hold claims; give them a moment rather than skip the snapshot
+        for (int attempt = 0; attempt < 20 && snapshotPath != null; attempt++) {
+            if (writeSnapshot()) {
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+    }
+
+    /**
+     * Checks {@code passengers} against the index and claims them for the booking in one step. Matches that
+     * are configured to reject (Aadhaar by default) throw 409 and claim nothing; the others are returned so
+     * the caller can record them. Call inside the transaction that inserts the passengers, holding the booking
+     * row lock: a cancellation that commits after the claim then drops it again. Cancelled bookings are never
+     * indexed.
+     */
+    public List<DuplicatePassenger> claim(TicketRequest booking, List<Passenger> passengers) {
+        if (booking.getStatus() == TicketStatus.CANCELLED) {
+            return List.of();
+        }
+        return claim(booking.getId(), booking.getCustomer().getId(), booking.getTrainId(), booking.getTravelDate(), passengers, 0);
+    }
+
+    /**
+     * As {@link #claim(TicketRequest, List)}; {@code firstIndex} numbers the passengers in what is returned.
+     * The caller must already have checked, under the row lock, that the booking is not cancelled.
+     */
+    public List<DuplicatePassenger> claim(Long bookingId, Long customerId, Long trainId, LocalDate travelDate,
+                                          List<Passenger> passengers, int firstIndex) {
+        if (trainId == null || travelDate == null || travelDate.isBefore(LocalDate.now()) || passengers.isEmpty()) {
+            return List.of();
+        }
+        List<Entry> claimed = new ArrayList<>(passengers.size());
+        for (Passenger passenger : passengers) {
+            claimed.add(entry(bookingId, customerId, trainId, travelDate, passenger.getAadhaar(), passenger.getName(), passenger.getAge()));
+        }
+        checked.add(passengers.size());
+
+        List<DuplicatePassenger> found = new ArrayList<>();
+        boolean reject = false;
+        boolean transactional = TransactionSynchronizationManager.isSynchronizationActive();
+        synchronized (this) {
+            for (int i = 0; i < claimed.size(); i++) {
+                Entry mine = claimed.get(i);
+                String name = passengers.get(i).getName();
+                for (Entry other : byAadhaar.getOrDefault(mine.aadhaarHash, List.of())) {
+                    if (mine.aadhaarHash != 0 && other.epochDay == mine.epochDay && other.bookingId != mine.bookingId) {
+                        found.add(new DuplicatePassenger(DuplicatePassenger.Kind.AADHAAR, firstIndex + i, name, other.bookingId,
+                                other.customerId == mine.customerId));
+                        reject |= rejectAadhaar;
+                    }
+                }
+                for (Entry other : byName.getOrDefault(mine.nameHash, List.of())) {
+                    if (mine.nameHash != 0 && other.age == mine.age && other.trainId == mine.trainId && other.epochDay == mine.epochDay
+                            && other.bookingId != mine.bookingId && other.customerId != mine.customerId) {
+                        found.add(new DuplicatePassenger(DuplicatePassenger.Kind.NAME_AGE, firstIndex + i, name, other.bookingId, false));
+                        reject |= rejectNameAge;
+                    }
+                }
+            }
+            if (!reject) {
+                claimed.forEach(this::add);
+                if (transactional) {
+                    claimsInFlight++;
+                }
+            }
+        }
+        for (DuplicatePassenger duplicate : found) {
+            (duplicate.kind() == DuplicatePassenger.Kind.AADHAAR ? aadhaarMatches : nameMatches).increment();
+        }
+        if (reject) {
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Passenger already booked on another live booking: " + found.stream()
+                    .map(d -> "#" + d.index() + " " + d.name() + " (" + d.kind() + ", booking " + d.otherBookingId() + ")")
+                    .collect(Collectors.joining(", ")));
+        }
+        if (transactional) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    synchronized (PassengerIndex.this) {
+                        if (status != STATUS_COMMITTED) {
+                            claimed.forEach(PassengerIndex.this::remove);
+                        }
+                        claimsInFlight--;
+                    }
+                }
+            });
+        }
+        return found;
+    }
+
+    /** Drops a cancelled booking's passengers once the surrounding transaction commits. */
+    public void removeBooking(Long bookingId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                dropBooking(bookingId);
+            }
+        });
+    }
+
+    /** Drops every booking on a cancelled train and date once the surrounding transaction commits. */
+    public void removeTrip(Long trainId, LocalDate travelDate) {
+        long epochDay = travelDate.toEpochDay();
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                List<Long> bookings = byBooking.entrySet().stream()
+                        .filter(e -> e.getValue().get(0).trainId == trainId && e.getValue().get(0).epochDay == epochDay)
+                        .map(Map.Entry::getKey)
+                        .toList();
+                bookings.forEach(this::dropBooking);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${inventory.purge-interval-ms:3600000}")
+    public synchronized void purgePastJourneys() {
+        long today = LocalDate.now().toEpochDay();
+        List<Long> past = byBooking.entrySet().stream()
+                .filter(e -> e.getValue().get(0).epochDay < today)
+                .map(Map.Entry::getKey)
+                .toList();
+        past.forEach(this::dropBooking);
+    }
+
+    @Scheduled(initialDelayString = "${passengers.index.snapshot-interval-ms:600000}",
+            fixedDelayString = "${passengers.index.snapshot-interval-ms:600000}")
+    public void snapshot() {
+        if (snapshotPath != null) {
+            writeSnapshot();
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "passengerIndex";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        synchronized (this) {
+            data.put("entries", entries);
+            data.put("bookings", byBooking.size());
+            data.put("aadhaarKeys", byAadhaar.size());
+            data.put("nameKeys", byName.size());
+        }
+        data.put("checked", checked.sum());
+        data.put("aadhaarMatches", aadhaarMatches.sum());
+        data.put("nameMatches", nameMatches.sum());
+        data.put("rejected", rejected.sum());
+        data.put("loadedFrom", loadedFrom);
+        data.put("loadMs", loadMs);
+        data.put("snapshotsWritten", snapshotsWritten.get());
+        data.put("lastSnapshotMs", lastSnapshotMs);
+        return data;
+    }
+
+    // Streams passengers of live bookings into the index; returns how many were added
+    private int stream(String sql, Map<String, Object> params) {
+        Map<String, Object> args = new HashMap<>(params);
+        args.put("today", Date.valueOf(LocalDate.now()));
+        int[] added = new int[1];
+        jdbc.query(sql, args, rs -> {
+            Date travelDate = rs.getDate(8);
+            Long trainId = rs.getObject(7, Long.class);
+            if (travelDate == null || trainId == null) {
+                return;
+            }
+            Entry entry = entry(rs.getLong(5), rs.getLong(6), trainId, travelDate.toLocalDate(),
+                    rs.getString(2), rs.getString(3), rs.getObject(4, Integer.class));
+            synchronized (this) {
+                add(entry);
+            }
+            added[0]++;
+        });
+        return added[0];
+    }
+
+    /** Writes the snapshot unless a claim is in flight; returns whether it was written. */
+    private boolean writeSnapshot() {
+        long started = System.nanoTime();
+        List<Entry> copy;
+        long changeVersion;
+        long maxPassengerId;
+        synchronized (this) {
+            if (claimsInFlight > 0) {
+                return false;
+            }
+            // With no claim in flight every indexed passenger is committed, so these bound what the copy covers
+            changeVersion = changeVersions.stable();
+            Long maxId = jdbc.getJdbcTemplate().queryForObject("select coalesce(max(passenger_id), 0) from passengers", Long.class);
+            maxPassengerId = maxId == null ? 0 : maxId;
+            copy = new ArrayList<>(entries);
+            byBooking.values().forEach(copy::addAll);
+        }
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try {
+            if (snapshotPath.getParent() != null) {
+                Files.createDirectories(snapshotPath.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_FORMAT);
+                out.writeLong(keyFingerprint());
+                out.writeLong(maxPassengerId);
+                out.writeLong(changeVersion);
+                out.writeInt(copy.size());
+                for (Entry entry : copy) {
+                    out.writeLong(entry.bookingId);
+                    out.writeLong(entry.customerId);
+                    out.writeLong(entry.trainId);
+                    out.writeInt(entry.epochDay);
+                    out.writeInt(entry.age);
+                    out.writeLong(entry.aadhaarHash);
+                    out.writeLong(entry.nameHash);
+                }
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not write the passenger index snapshot to {}", snapshotPath, e);
+            return false;
+        }
+        snapshotsWritten.incrementAndGet();
+        lastSnapshotMs = (System.nanoTime() - started) / 1_000_000;
+        return true;
+    }
+
+    // Null when there is no snapshot or it cannot be used (other format, other hash secret, unreadable)
+    private Snapshot readSnapshot() {
+        if (snapshotPath == null || !Files.isRegularFile(snapshotPath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath), 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_FORMAT || in.readLong() != keyFingerprint()) {
+                log.info("Passenger index snapshot {} does not match this build or hash secret; rebuilding", snapshotPath);
+                return null;
+            }
+            long maxPassengerId = in.readLong();
+            long changeVersion = in.readLong();
+            int count = in.readInt();
+            long today = LocalDate.now().toEpochDay();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readLong(), in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readLong(), in.readLong());
+                if (entry.epochDay >= today) {
+                    entries.add(entry);
+                }
+            }
+            return new Snapshot(maxPassengerId, changeVersion, entries);
+        } catch (IOException e) {
+            log.warn("Could not read the passenger index snapshot {}; rebuilding", snapshotPath, e);
+            return null;
+        }
+    }
+
+    private Entry entry(long bookingId, long customerId, long trainId, LocalDate travelDate, String aadhaar, String name, Integer age) {
+        String digits = aadhaar == null ? "" : aadhaar.replaceAll("\\D", "");
+        String normalisedName = normaliseName(name);
+        return new Entry(bookingId, customerId, trainId, (int) travelDate.toEpochDay(), age == null ? -1 : age,
+                digits.length() == 12 ? hash("A|" + digits) : 0,
+                normalisedName.isEmpty() ? 0 : hash("N|" + trainId + "|" + travelDate + "|" + normalisedName));
+    }
+
+    // Case, accents, punctuation and spacing differences do not make a different name
+    static String normaliseName(String name) {
+        if (name == null) {
+            return "";
+        }
+        String stripped = Normalizer.normalize(name, Normalizer.Form.NFKD).replaceAll("\\p{M}", "");
+        return stripped.toLowerCase().replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    // First 8 bytes of the keyed HMAC; 0 is kept for "no key"
+    private long hash(String value) {
+        long hash = ByteBuffer.wrap(macs.get().doFinal(value.getBytes(StandardCharsets.UTF_8))).getLong();
+        return hash == 0 ? 1 : hash;
+    }
+
+    private long keyFingerprint() {
+        return hash("snapshot-key-check");
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(hashKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+
+    // Callers hold the lock
+    private void add(Entry entry) {
+        if (entry.aadhaarHash != 0) {
+            byAadhaar.computeIfAbsent(entry.aadhaarHash, k -> new ArrayList<>(1)).add(entry);
+        }
+        if (entry.nameHash != 0) {
+            byName.computeIfAbsent(entry.nameHash, k -> new ArrayList<>(1)).add(entry);
+        }
+        byBooking.computeIfAbsent(entry.bookingId, k -> new ArrayList<>()).add(entry);
+        entries++;
+    }
+
+    private void remove(Entry entry) {
+        unlink(byAadhaar, entry.aadhaarHash, entry);
+        unlink(byName, entry.nameHash, entry);
+        if (unlink(byBooking, entry.bookingId, entry)) {
+            entries--;
+        }
+    }
+
+    private void dropBooking(Long bookingId) {
+        List<Entry> booked = byBooking.remove(bookingId);
+        if (booked == null) {
+            return;
+        }
+        for (Entry entry : booked) {
+            unlink(byAadhaar, entry.aadhaarHash, entry);
+            unlink(byName, entry.nameHash, entry);
+        }
+        entries -= booked.size();
+    }
+
+    private static boolean unlink(Map<Long, List<Entry>> index, long key, Entry entry) {
+        List<Entry> list = index.get(key);
+        // Identity, not equals: two passengers on one booking can carry identical keys
+        boolean removed = list != null && list.removeIf(e -> e == entry);
+        if (list != null && list.isEmpty()) {
+            index.remove(key);
+        }
+        return removed;
+    }
+
+    private static final class Entry {
+        final long bookingId;
+        final long customerId;
+        final long trainId;
+        final int epochDay;
+        final int age;
+        final long aadhaarHash;
+        final long nameHash;
+
+        Entry(long bookingId, long customerId, long trainId, int epochDay, int age, long aadhaarHash, long nameHash) {
+            this.bookingId = bookingId;
+            this.customerId = customerId;
+            this.trainId = trainId;
+            this.epochDay = epochDay;
+            this.age = age;
+            this.aadhaarHash = aadhaarHash;
+            this.nameHash = nameHash;
+        }
+    }
+
+    private record Snapshot(long maxPassengerId, long changeVersion, List<Entry> entries) {
+    }
+}
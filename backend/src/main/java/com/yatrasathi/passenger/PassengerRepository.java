@@ -2,9 +2,28 @@ package com.yatrasathi.passenger;
 
 import com.yatrasathi.ticket.TicketRequest;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface PassengerRepository extends JpaRepository<Passenger, Long> {
+    // p.ticketRequest.id is read from passengers.booking_id, no join to bookings
+    String SUMMARY_SELECT = "select new com.yatrasathi.passenger.PassengerSummary("
+            + "p.id, p.ticketRequest.id, p.name, p.age, p.gender, p.relationToPrimary, p.aadhaar, p.passportNumber,"
+            + " p.berthPreference, p.berthAllotted)"
+            + " from Passenger p";
+
     List<Passenger> findByTicketRequest(TicketRequest ticketRequest);
-}
\ No newline at end of file
+
+    @Query(SUMMARY_SELECT + " where p.ticketRequest.id = :ticketRequestId order by p.id")
+    List<PassengerSummary> findSummariesByTicketRequestId(Long ticketRequestId);
+
+    @Query(SUMMARY_SELECT + " where p.ticketRequest.id in :ticketRequestIds order by p.ticketRequest.id, p.id")
+    List<PassengerSummary> findSummariesByTicketRequestIds(Collection<Long> ticketRequestIds);
+
+    // Customers only see their own bookings; this one does join bookings, for the owner check
+    @Query(SUMMARY_SELECT + " where p.ticketRequest.id in :ticketRequestIds and p.ticketRequest.customer.id = :customerId"
+            + " order by p.ticketRequest.id, p.id")
+    List<PassengerSummary> findSummariesByTicketRequestIdsForCustomer(Collection<Long> ticketRequestIds, Long customerId);
+}
@@ -1,39 +1,156 @@
 package com.yatrasathi.passenger;
 
+import com.yatrasathi.common.AuditService;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.inventory.BerthAllocator;
+import com.yatrasathi.inventory.BerthAssignment;
+import com.yatrasathi.inventory.SeatKey;
+import com.yatrasathi.ticket.BookingStatus;
 import com.yatrasathi.ticket.TicketRequest;
 import com.yatrasathi.ticket.TicketRequestRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class PassengerService {
     private final PassengerRepository passengerRepository;
     private final TicketRequestRepository ticketRequestRepository;
+    private final BerthAllocator berthAllocator;
+    private final PassengerIndex passengerIndex;
+    private final AuditService auditService;
 
-    public PassengerService(PassengerRepository passengerRepository, TicketRequestRepository ticketRequestRepository) {
+    @Value("${passengers.fetch.max-ids:200}")
+    private int maxIds;
+
+    public PassengerService(PassengerRepository passengerRepository, TicketRequestRepository ticketRequestRepository,
+                            BerthAllocator berthAllocator, PassengerIndex passengerIndex, AuditService auditService) {
         this.passengerRepository = passengerRepository;
         this.ticketRequestRepository = ticketRequestRepository;
+        this.berthAllocator = berthAllocator;
+        this.passengerIndex = passengerIndex;
+        this.auditService = auditService;
     }
 
-    public List<Passenger> getPassengersByTicketRequestId(Long ticketRequestId) {
-        TicketRequest ticketRequest = ticketRequestRepository.findById(ticketRequestId)
-                .orElseThrow(() -> new RuntimeException("Ticket request not found"));
-        return passengerRepository.findByTicketRequest(ticketRequest);
+    public List<PassengerSummary> getPassengersByTicketRequestId(Long ticketRequestId) {
+        List<PassengerSummary> passengers = passengerRepository.findSummariesByTicketRequestId(ticketRequestId);
+        // Only an empty result needs telling apart from a missing booking
+        if (passengers.isEmpty() && !ticketRequestRepository.existsById(ticketRequestId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ticket request " + ticketRequestId + " not found");
+        }
+        return passengers;
     }
 
+    /**
+     * Passengers of up to {@code passengers.fetch.max-ids} bookings with one IN query, keyed by booking id in
+     * the order asked for. Every id gets an entry, empty when the booking has no passengers, is missing or
+     * (for a customer, {@code customerId} non-null) belongs to someone else.
+     */
+    public Map<Long, List<PassengerSummary>> getPassengersByTicketRequestIds(List<Long> ticketRequestIds, Long customerId) {
+        Set<Long> ids = new LinkedHashSet<>(ticketRequestIds);
+        ids.remove(null);
+        if (ids.size() > maxIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxIds + " ticket request ids per call");
+        }
+        Map<Long, List<PassengerSummary>> byBooking = new LinkedHashMap<>();
+        for (Long id : ids) {
+            byBooking.put(id, new ArrayList<>());
+        }
+        if (ids.isEmpty()) {
+            return byBooking;
+        }
+        List<PassengerSummary> passengers = customerId == null
+                ? passengerRepository.findSummariesByTicketRequestIds(ids)
+                : passengerRepository.findSummariesByTicketRequestIdsForCustomer(ids, customerId);
+        for (PassengerSummary passenger : passengers) {
+            byBooking.get(passenger.ticketRequestId()).add(passenger);
+        }
+        return byBooking;
+    }
+
+    @Transactional
     public Passenger addPassenger(Long ticketRequestId, Passenger passenger) {
-        TicketRequest ticketRequest = ticketRequestRepository.findById(ticketRequestId)
+        TicketRequest ticketRequest = ticketRequestRepository.findByIdForUpdate(ticketRequestId)
                 .orElseThrow(() -> new RuntimeException("Ticket request not found"));
+        requireLive(ticketRequest);
+        auditDuplicates(ticketRequestId, passengerIndex.claim(ticketRequest, List.of(passenger)));
         passenger.setTicketRequest(ticketRequest);
         return passengerRepository.save(passenger);
     }
 
+    @Transactional
     public List<Passenger> addPassengers(Long ticketRequestId, List<Passenger> passengers) {
-        TicketRequest ticketRequest = ticketRequestRepository.findById(ticketRequestId)
+        TicketRequest ticketRequest = ticketRequestRepository.findByIdForUpdate(ticketRequestId)
                 .orElseThrow(() -> new RuntimeException("Ticket request not found"));
+        requireLive(ticketRequest);
+        auditDuplicates(ticketRequestId, passengerIndex.claim(ticketRequest, passengers));
         
         passengers.forEach(passenger -> passenger.setTicketRequest(ticketRequest));
         return passengerRepository.saveAll(passengers);
     }
-}
\ No newline at end of file
+
+    /**
+     * Allots berths to every passenger of the booking that has none yet, all in one go so the group is seated
+     * together, and writes them to {@code berthAllotted}. The booking must hold confirmed seats. The booking
+     * row stays locked until commit, so two concurrent calls cannot both see the same passengers unseated and
+     * allot each of them twice, and a cancellation cannot release berths that are still being written.
+     */
+    @Transactional
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public List<Passenger> allocateBerths(Long ticketRequestId) {
+        TicketRequest ticketRequest = ticketRequestRepository.findByIdForUpdate(ticketRequestId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Ticket request " + ticketRequestId + " not found"));
+        if (ticketRequest.getStatus() == TicketStatus.PENDING || ticketRequest.getStatus() == TicketStatus.CANCELLED
+                || ticketRequest.getBookingStatus() != BookingStatus.CONFIRMED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ticket request " + ticketRequestId + " holds no confirmed seats");
+        }
+        List<Passenger> passengers = passengerRepository.findByTicketRequest(ticketRequest);
+        int approved = ticketRequest.getApprovedTicketCount() == null ? 0 : ticketRequest.getApprovedTicketCount();
+        if (passengers.size() > approved) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT,
+                    passengers.size() + " passengers on ticket request " + ticketRequestId + " but only " + approved + " seats approved");
+        }
+        List<Passenger> unseated = passengers.stream()
+                .filter(p -> p.getBerthAllotted() == null || p.getBerthAllotted().isBlank())
+                .toList();
+        if (unseated.isEmpty()) {
+            return passengers;
+        }
+        SeatKey trip = SeatKey.of(ticketRequest.getTrainId(), ticketRequest.getTravelDate(), ticketRequest.getTravelClass());
+        List<BerthAssignment> berths = berthAllocator.allocate(trip, unseated.stream().map(Passenger::getBerthPreference).toList());
+        if (berths == null) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Not enough free berths left for " + unseated.size() + " passengers");
+        }
+        for (int i = 0; i < unseated.size(); i++) {
+            unseated.get(i).setBerthAllotted(berths.get(i).label());
+        }
+        passengerRepository.saveAll(unseated);
+        auditService.log("system", "ALLOT_BERTHS", "RequestId=" + ticketRequestId + ", berths="
+                + berths.stream().map(BerthAssignment::label).toList());
+        return passengers;
+    }
+
+    // The caller holds the booking row lock, so the booking cannot be cancelled after this check
+    private static void requireLive(TicketRequest ticketRequest) {
+        if (ticketRequest.getStatus() == TicketStatus.CANCELLED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ticket request " + ticketRequest.getId() + " is cancelled");
+        }
+    }
+
+    // Duplicates that were let through (by default name + age matches) are left for staff to follow up
+    private void auditDuplicates(Long ticketRequestId, List<DuplicatePassenger> duplicates) {
+        if (!duplicates.isEmpty()) {
+            auditService.log("system", "DUPLICATE_PASSENGER", "RequestId=" + ticketRequestId + ", matches=" + duplicates);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.yatrasathi.passenger;
+
+import com.yatrasathi.common.TicketEnums.BerthPreference;
+
+/**
+ * Flat read model for passenger lists. Carries the booking id from the foreign key column, so reading
+ * passengers never loads the {@code TicketRequest} (and its customer and employee) behind them.
+ */
+public record PassengerSummary(
+        Long id,
+        Long ticketRequestId,
+        String name,
+        Integer age,
+        String gender,
+        String relationToPrimary,
+        String aadhaar,
+        String passportNumber,
+        BerthPreference berthPreference,
+        String berthAllotted
+) {
+}
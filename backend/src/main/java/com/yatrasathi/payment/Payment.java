@@ -1,5 +1,7 @@
 package com.yatrasathi.payment;
 
+import com.yatrasathi.common.ChangeTracked;
+import com.yatrasathi.common.ChangeVersionListener;
 import com.yatrasathi.common.TicketEnums;
 import com.yatrasathi.ticket.TicketRequest;
 import com.yatrasathi.user.User;
@@ -13,8 +15,12 @@ import java.time.LocalDateTime;
 
 @NoArgsConstructor
 @Entity
-@Table(name = "payments")
-public class Payment {
+@Table(name = "payments", indexes = {
+        @Index(name = "idx_payments_change_version", columnList = "change_version, id"),
+        @Index(name = "idx_payments_ticket_status", columnList = "ticket_request_id, status, amount")
+})
+@EntityListeners(ChangeVersionListener.class)
+public class Payment implements ChangeTracked {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -47,6 +53,9 @@ public class Payment {
     @Column
     private String remarks;
 
+    @Column(name = "change_version")
+    private Long changeVersion;
+
     // Getters
     public Long getId() { return id; }
     public TicketRequest getTicketRequest() { return ticketRequest; }
@@ -57,6 +66,7 @@ public class Payment {
     public LocalDateTime getCreatedAt() { return createdAt; }
     public String getReference() { return reference; }
     public String getRemarks() { return remarks; }
+    public Long getChangeVersion() { return changeVersion; }
 
     // Setters
     public void setId(Long id) { this.id = id; }
@@ -68,4 +78,5 @@ public class Payment {
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     public void setReference(String reference) { this.reference = reference; }
     public void setRemarks(String remarks) { this.remarks = remarks; }
+    public void setChangeVersion(Long changeVersion) { this.changeVersion = changeVersion; }
 }
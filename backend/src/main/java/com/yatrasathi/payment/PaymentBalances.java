@@ -0,0 +1,142 @@
+package com.yatrasathi.payment;
+
+import com.yatrasathi.common.AfterCommit;
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.common.TicketEnums.PaymentStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Amount paid per ticket request: the sum of its COMPLETED payments, refunds included as negative amounts.
+ * Misses are summed in SQL ({@code SUM ... GROUP BY}, one query for any number of tickets) and cached;
+ * a write that can move a ticket's balance calls {@link #changed(Long)}, which recomputes it once the
+ * write commits.
+ *
+ * <p>A sum read before a commit must not be cached after it. Every refresh bumps {@code generation}, and
+ * a loaded sum is only stored if no refresh happened since its query started; both happen inside
+ * {@code compute} on the ticket's key, so the check and the store cannot interleave with a refresh.
+ */
+@Component
+public class PaymentBalances implements StatsContributor {
+
+    private final PaymentRepository paymentRepository;
+    private final int maxSize;
+    private final Map<Long, BigDecimal> balances = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+
+    public PaymentBalances(PaymentRepository paymentRepository, @Value("${payments.balance-cache.max-size:100000}") int maxSize) {
+        this.paymentRepository = paymentRepository;
+        this.maxSize = maxSize;
+    }
+
+    public BigDecimal balance(Long ticketRequestId) {
+        return balances(List.of(ticketRequestId)).get(ticketRequestId);
+    }
+
+    /** Every id gets an entry; tickets without completed payments (or that do not exist) have paid zero. */
+    public Map<Long, BigDecimal> balances(Collection<Long> ticketRequestIds) {
+        Map<Long, BigDecimal> result = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ticketRequestIds) {
+            BigDecimal cached = balances.get(id);
+            if (cached != null) {
+                result.put(id, cached);
+            } else {
+                result.put(id, BigDecimal.ZERO);
+                missing.add(id);
+            }
+        }
+        hits.add(ticketRequestIds.size() - missing.size());
+        if (!missing.isEmpty()) {
+            misses.add(missing.size());
+            load(missing).forEach(result::put);
+        }
+        return result;
+    }
+
+    /** The ticket's payments changed (or will, once the surrounding transaction commits). */
+    public void changed(Long ticketRequestId) {
+        changed(List.of(ticketRequestId));
+    }
+
+    /** As {@link #changed(Long)} for many tickets, refreshed together with one query. */
+    public void changed(Collection<Long> ticketRequestIds) {
+        if (ticketRequestIds.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(ticketRequestIds);
+        AfterCommit.run(() -> {
+            refreshes.add(ids.size());
+            for (Long id : ids) {
+                balances.compute(id, (k, old) -> {
+                    generation.incrementAndGet();
+                    return null;
+                });
+            }
+            load(ids);
+        });
+    }
+
+    @Override
+    public String statsName() {
+        return "paymentBalances";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("size", balances.size());
+        data.put("hits", h);
+        data.put("misses", m);
+        data.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        data.put("refreshes", refreshes.sum());
+        data.put("sumQueries", queries.sum());
+        return data;
+    }
+
+    private Map<Long, BigDecimal> load(List<Long> ids) {
+        long startedAt = generation.get();
+        Map<Long, BigDecimal> sums = new HashMap<>();
+        for (Long id : ids) {
+            sums.put(id, BigDecimal.ZERO);
+        }
+        queries.increment();
+        for (Object[] row : paymentRepository.sumByTicketRequestIds(ids, PaymentStatus.COMPLETED)) {
+            sums.put((Long) row[0], (BigDecimal) row[1]);
+        }
+        if (balances.size() + sums.size() > maxSize) {
+            makeRoom(sums.size());
+        }
+        sums.forEach((id, sum) -> balances.compute(id, (k, current) ->
+                current != null || generation.get() != startedAt ? current : sum));
+        return sums;
+    }
+
+    // Drop arbitrary entries; they are one indexed SUM away
+    private void makeRoom(int needed) {
+        Iterator<Long> it = balances.keySet().iterator();
+        while (balances.size() + needed > maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.yatrasathi.payment;
+
+import com.yatrasathi.common.TicketEnums.PaymentMode;
+import com.yatrasathi.common.TicketEnums.PaymentStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Flat payment row for the delta feed, read with a constructor expression so no ticket or user graph is loaded.
+ */
+public record PaymentChange(
+        Long id,
+        Long ticketRequestId,
+        Long userId,
+        BigDecimal amount,
+        PaymentMode mode,
+        PaymentStatus status,
+        String reference,
+        LocalDateTime createdAt,
+        Long changeVersion
+) {
+}
@@ -1,28 +1,33 @@
 package com.yatrasathi.payment;
 
 import jakarta.validation.Valid;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.math.BigDecimal;
-import java.security.Principal;
 import java.util.List;
+import java.util.Map;
 
+import com.yatrasathi.common.ChangeFeed;
 import com.yatrasathi.common.TicketEnums.PaymentStatus;
-import com.yatrasathi.user.User;
-import com.yatrasathi.user.UserRepository;
+import com.yatrasathi.security.CurrentUserId;
 
 @RestController
 @RequestMapping("/api/payments")
 public class PaymentController {
 
     private final PaymentService paymentService;
-    private final UserRepository userRepository;
+    private final PaymentReconciliationService reconciliationService;
 
-    public PaymentController(PaymentService paymentService, UserRepository userRepository) {
+    public PaymentController(PaymentService paymentService, PaymentReconciliationService reconciliationService) {
         this.paymentService = paymentService;
-        this.userRepository = userRepository;
+        this.reconciliationService = reconciliationService;
     }
 
     @PostMapping("/ticket/{ticketId}")
@@ -48,10 +53,16 @@ public class PaymentController {
         return ResponseEntity.ok(paymentService.totalPaid(ticketId));
     }
 
+    // Amount paid per ticket for many tickets at once: ?ticketIds=1,2,3 -> {"1":1500.00,"2":0,"3":-250.00}
+    @GetMapping("/totals")
+    public ResponseEntity<Map<Long, BigDecimal>> totals(@RequestParam List<Long> ticketIds,
+                                                        Authentication authentication, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(paymentService.totalsPaid(ticketIds, isStaff(authentication) ? null : userId));
+    }
+
     @PostMapping("/ticket/{ticketId}/make-payment")
     @PreAuthorize("hasRole('CUSTOMER')")
-    public ResponseEntity<Payment> makePayment(@PathVariable Long ticketId, @Valid @RequestBody Payment payment, Principal principal) {
-        Long userId = getUserIdFromPrincipal(principal);
+    public ResponseEntity<Payment> makePayment(@PathVariable Long ticketId, @Valid @RequestBody Payment payment, @CurrentUserId Long userId) {
         return ResponseEntity.ok(paymentService.makePayment(ticketId, userId, payment));
     }
 
@@ -68,20 +79,45 @@ public class PaymentController {
         return ResponseEntity.ok(paymentService.getAllPayments());
     }
 
+    // Delta sync counterpart of /all and /my: payments changed after the position returned by the previous call
+    @GetMapping("/changes")
+    public ResponseEntity<ChangeFeed<PaymentChange>> changes(@RequestParam(required = false) Long since,
+                                                             @RequestParam(required = false) Long afterId,
+                                                             @RequestParam(required = false) Integer size,
+                                                             Authentication authentication, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(paymentService.changesSince(isStaff(authentication) ? null : userId, since, afterId, size));
+    }
+
     @GetMapping("/my")
     @PreAuthorize("hasRole('CUSTOMER')")
-    public ResponseEntity<List<Payment>> getMyPayments(Principal principal) {
-        Long userId = getUserIdFromPrincipal(principal);
+    public ResponseEntity<List<Payment>> getMyPayments(@CurrentUserId Long userId) {
         return ResponseEntity.ok(paymentService.getMyPayments(userId));
     }
 
-    private Long getUserIdFromPrincipal(Principal principal) {
-        if (principal == null) return null;
-        String username = principal.getName();
-        User user = userRepository.findByEmail(username).orElseGet(() -> userRepository.findByPhone(username).orElseThrow());
-        return user.getId();
+    // Raw CSV body (header row first); processed in the background, poll the returned job
+    @PostMapping(value = "/reconciliations", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public ResponseEntity<ReconciliationJob> reconcile(InputStream body, Authentication authentication) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reconciliationService.submit(body, authentication.getName()));
     }
-}
 
+    @GetMapping("/reconciliations/{jobId}")
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public ResponseEntity<ReconciliationJob> reconciliation(@PathVariable String jobId) {
+        return ResponseEntity.ok(reconciliationService.job(jobId));
+    }
 
+    @GetMapping("/reconciliations/{jobId}/report")
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public ResponseEntity<FileSystemResource> reconciliationReport(@PathVariable String jobId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header("Content-Disposition", "attachment; filename=\"reconciliation-" + jobId + ".csv\"")
+                .body(new FileSystemResource(reconciliationService.report(jobId)));
+    }
 
+    private static boolean isStaff(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_EMPLOYEE") || a.getAuthority().equals("ROLE_ADMIN"));
+    }
+}
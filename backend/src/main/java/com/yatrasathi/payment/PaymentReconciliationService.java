@@ -0,0 +1,508 @@
+package com.yatrasathi.payment;
+
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.common.TicketEnums.PaymentStatus;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Reconciles PENDING payments against an uploaded bank/UPI statement (CSV with a header row). The upload is
+ * spooled to disk and a single background thread works through it:
+ * <ol>
+ *   <li>every PENDING payment with a reference is loaded into a hash index keyed on the normalised reference,
+ *   with the amount checked within the bucket, so memory grows with the pending payments and not with the
+ *   statement;</li>
+ *   <li>the statement is read through {@link StatementReader}'s mapped windows, one line at a time;</li>
+ *   <li>matched payments are moved to COMPLETED (or FAILED, for lines whose status column says so)
+ *   {@code payments.reconcile.batch-size} at a time by {@link ReconciliationWriter};</li>
+ *   <li>every line that did not settle a payment, and every pending payment the statement never mentioned,
+ *   is written to the job's mismatch report, which is streamed to disk as well.</li>
+ * </ol>
+ * Amounts are compared in paise and without sign, since statements differ on how they sign refunds.
+ */
+@Service
+public class PaymentReconciliationService implements StatsContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentReconciliationService.class);
+
+    private static final Set<String> REFERENCE_HEADERS = Set.of("reference", "ref", "ref no", "reference no", "utr", "utr no", "rrn",
+            "transaction id", "txn id", "transaction reference");
+    private static final Set<String> AMOUNT_HEADERS = Set.of("amount", "txn amount", "transaction amount", "credit", "credit amount");
+    private static final Set<String> STATUS_HEADERS = Set.of("status", "txn status", "transaction status");
+    private static final Set<String> FAILED_STATUSES = Set.of("FAILED", "FAILURE", "DECLINED", "REJECTED", "REVERSED");
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    enum Issue { MALFORMED, UNMATCHED_REFERENCE, AMOUNT_MISMATCH, DUPLICATE_LINE, ALREADY_SETTLED, NOT_IN_STATEMENT }
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final ReconciliationWriter writer;
+    private final Path workDir;
+    private final int batchSize;
+    private final long windowBytes;
+    private final long maxUploadBytes;
+    private final Duration retention;
+    private final ThreadPoolExecutor worker;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    private final LongAdder linesRead = new LongAdder();
+    private final LongAdder paymentsSettled = new LongAdder();
+    private final LongAdder mismatches = new LongAdder();
+
+    public PaymentReconciliationService(NamedParameterJdbcTemplate jdbc, ReconciliationWriter writer,
+                                        @Value("${payments.reconcile.work-dir:${java.io.tmpdir}/yatrasathi-reconcile}") String workDir,
+                                        @Value("${payments.reconcile.batch-size:1000}") int batchSize,
+                                        @Value("${payments.reconcile.window-mb:64}") int windowMb,
+                                        @Value("${payments.reconcile.max-upload-mb:2048}") long maxUploadMb,
+                                        @Value("${payments.reconcile.max-queued:4}") int maxQueued,
+                                        @Value("${payments.reconcile.retention-minutes:1440}") long retentionMinutes) {
+        this.jdbc = jdbc;
+        this.writer = writer;
+        this.workDir = Path.of(workDir);
+        this.batchSize = batchSize;
+        this.windowBytes = windowMb * 1024L * 1024L;
+        this.maxUploadBytes = maxUploadMb * 1024L * 1024L;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        this.worker = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(maxQueued), r -> {
+            Thread t = new Thread(r, "payment-reconciliation");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    /** Spools the statement to disk and queues the job; the caller polls {@link #job(String)}. */
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public ReconciliationJob submit(InputStream statement, String actor) {
+        Job job = new Job(UUID.randomUUID().toString(), actor);
+        try {
+            Files.createDirectories(workDir);
+            job.fileBytes = spool(statement, job.upload());
+        } catch (IOException e) {
+            deleteFiles(job);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Could not read the statement upload", e);
+        }
+        if (job.fileBytes < 0) {
+            deleteFiles(job);
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "Statements are limited to " + maxUploadBytes / (1024 * 1024) + " MB");
+        }
+        jobs.put(job.id, job);
+        try {
+            worker.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            deleteFiles(job);
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many reconciliations queued; try again later");
+        }
+        return job.view();
+    }
+
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public ReconciliationJob job(String jobId) {
+        return find(jobId).view();
+    }
+
+    /** The mismatch report (CSV) of a finished job. */
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public Path report(String jobId) {
+        Job job = find(jobId);
+        if (job.state != State.DONE) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Reconciliation " + jobId + " is " + job.state);
+        }
+        return job.report();
+    }
+
+    // Finished jobs and their files are kept for payments.reconcile.retention-minutes
+    @Scheduled(fixedDelayString = "${payments.reconcile.purge-interval-ms:600000}")
+    public void purgeFinished() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            boolean expired = job.finishedAt != null && job.finishedAt.isBefore(cutoff);
+            if (expired) {
+                deleteFiles(job);
+            }
+            return expired;
+        });
+        // Jobs live in memory; files left by jobs of an earlier run age out the same way
+        try (Stream<Path> files = Files.list(workDir)) {
+            files.filter(file -> !jobs.containsKey(file.getFileName().toString().replace("-report.csv", "").replace(".csv", "")))
+                    .filter(file -> {
+                        try {
+                            return Files.getLastModifiedTime(file).toInstant().isBefore(cutoff.atZone(ZoneId.systemDefault()).toInstant());
+                        } catch (IOException e) {
+                            return false;
+                        }
+                    })
+                    .forEach(file -> {
+                        try {
+                            Files.deleteIfExists(file);
+                        } catch (IOException e) {
+                            log.warn("Could not delete {}", file, e);
+                        }
+                    });
+        } catch (NoSuchFileException e) {
+            // Nothing submitted yet
+        } catch (IOException e) {
+            log.warn("Could not list {}", workDir, e);
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "paymentReconciliation";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("jobs", jobs.size());
+        data.put("queued", worker.getQueue().size());
+        data.put("running", worker.getActiveCount());
+        data.put("linesRead", linesRead.sum());
+        data.put("paymentsSettled", paymentsSettled.sum());
+        data.put("mismatches", mismatches.sum());
+        return data;
+    }
+
+    private void run(Job job) {
+        job.state = State.RUNNING;
+        job.startedAt = LocalDateTime.now();
+        long started = System.nanoTime();
+        try {
+            reconcile(job);
+            job.state = State.DONE;
+        } catch (ResponseStatusException e) {
+            log.warn("Reconciliation {} rejected: {}", job.id, e.getReason());
+            job.error = e.getReason();
+            job.state = State.FAILED;
+        } catch (Exception e) {
+            log.error("Reconciliation {} failed", job.id, e);
+            job.error = e.getMessage();
+            job.state = State.FAILED;
+        } finally {
+            job.elapsedMs = (System.nanoTime() - started) / 1_000_000;
+            job.finishedAt = LocalDateTime.now();
+            try {
+                Files.deleteIfExists(job.upload());
+            } catch (IOException e) {
+                log.warn("Could not delete statement upload {}", job.upload(), e);
+            }
+        }
+    }
+
+    private void reconcile(Job job) throws IOException {
+        Map<String, List<Pending>> pending = loadPending();
+        job.pendingIndexed = pending.values().stream().mapToInt(List::size).sum();
+
+        try (StatementReader reader = new StatementReader(job.upload(), windowBytes);
+             BufferedWriter report = Files.newBufferedWriter(job.report(), StandardCharsets.UTF_8)) {
+            report.write("line,reference,amount,issue,payment_id,detail\n");
+            if (!reader.next()) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "The statement is empty");
+            }
+            Columns columns = Columns.of(reader.fields());
+            List<ReconciliationWriter.Match> batch = new ArrayList<>(batchSize);
+            while (reader.next()) {
+                job.lines++;
+                if (reader.blank()) {
+                    continue;
+                }
+                long line = reader.lineNumber();
+                if (reader.tooLong()) {
+                    mismatch(job, report, line, "", "", Issue.MALFORMED, null, "line longer than " + StatementReader.MAX_LINE_BYTES + " bytes");
+                    continue;
+                }
+                List<String> fields = reader.fields();
+                String reference = columns.reference < fields.size() ? normalise(fields.get(columns.reference)) : "";
+                String amountText = columns.amount < fields.size() ? fields.get(columns.amount) : "";
+                Long paise = paise(amountText);
+                if (reference.isEmpty() || paise == null) {
+                    mismatch(job, report, line, reference, amountText, Issue.MALFORMED, null, "missing reference or unreadable amount");
+                    continue;
+                }
+                List<Pending> candidates = pending.get(reference);
+                if (candidates == null) {
+                    mismatch(job, report, line, reference, amountText, Issue.UNMATCHED_REFERENCE, null, "no pending payment with this reference");
+                    continue;
+                }
+                Pending match = null;
+                boolean seen = false;
+                for (Pending candidate : candidates) {
+                    if (candidate.paise == paise) {
+                        if (candidate.claimed) {
+                            seen = true;
+                        } else {
+                            match = candidate;
+                            break;
+                        }
+                    }
+                }
+                if (match == null) {
+                    String expected = candidates.stream().map(c -> BigDecimal.valueOf(c.paise, 2).toPlainString()).distinct().toList().toString();
+                    mismatch(job, report, line, reference, amountText, seen ? Issue.DUPLICATE_LINE : Issue.AMOUNT_MISMATCH,
+                            candidates.get(0).paymentId, seen ? "payment already settled by an earlier line" : "pending amount " + expected);
+                    continue;
+                }
+                match.claimed = true;
+                PaymentStatus status = columns.status >= 0 && columns.status < fields.size()
+                        && FAILED_STATUSES.contains(fields.get(columns.status).toUpperCase(Locale.ROOT)) ? PaymentStatus.FAILED : PaymentStatus.COMPLETED;
+                batch.add(new ReconciliationWriter.Match(match.paymentId, match.ticketRequestId, match.customerId, match.amount,
+                        status, line, reference));
+                if (batch.size() == batchSize) {
+                    flush(job, batch, report);
+                }
+            }
+            flush(job, batch, report);
+
+            // Left over: pending payments the statement never mentioned
+            for (List<Pending> candidates : pending.values()) {
+                for (Pending candidate : candidates) {
+                    if (!candidate.claimed) {
+                        job.notInStatement++;
+                        report.write(",," + csv(candidate.amount.toPlainString()) + "," + Issue.NOT_IN_STATEMENT + "," + candidate.paymentId
+                                + "," + csv("reference " + candidate.reference + ", ticket " + candidate.ticketRequestId) + "\n");
+                    }
+                }
+            }
+        } finally {
+            linesRead.add(job.lines);
+        }
+    }
+
+    private void flush(Job job, List<ReconciliationWriter.Match> batch, BufferedWriter report) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean[] applied = writer.apply(batch, job.actor, job.id);
+        for (int i = 0; i < batch.size(); i++) {
+            ReconciliationWriter.Match match = batch.get(i);
+            if (!applied[i]) {
+                mismatch(job, report, match.line(), match.reference(), match.amount().toPlainString(), Issue.ALREADY_SETTLED,
+                        match.paymentId(), "payment left PENDING after the index was built");
+                continue;
+            }
+            paymentsSettled.increment();
+            if (match.status() == PaymentStatus.COMPLETED) {
+                job.completed++;
+            } else {
+                job.failed++;
+            }
+        }
+        batch.clear();
+    }
+
+    private void mismatch(Job job, BufferedWriter report, long line, String reference, String amount, Issue issue,
+                          Long paymentId, String detail) throws IOException {
+        job.mismatches.merge(issue, 1L, Long::sum);
+        mismatches.increment();
+        report.write(line + "," + csv(reference) + "," + csv(amount) + "," + issue + "," + (paymentId == null ? "" : paymentId)
+                + "," + csv(detail) + "\n");
+    }
+
+    // Streams rather than loads: only the fields the index needs are kept per payment
+    private Map<String, List<Pending>> loadPending() {
+        Map<String, List<Pending>> index = new HashMap<>();
+        jdbc.query("select p.id, p.ticket_request_id, b.customer_id, p.reference, p.amount from payments p"
+                        + " join bookings b on b.booking_id = p.ticket_request_id where p.status = 'PENDING' and p.reference is not null",
+                Map.of(), rs -> {
+                    String reference = normalise(rs.getString(4));
+                    BigDecimal amount = rs.getBigDecimal(5);
+                    if (!reference.isEmpty() && amount != null) {
+                        index.computeIfAbsent(reference, k -> new ArrayList<>(1)).add(new Pending(rs.getLong(1), rs.getLong(2),
+                                rs.getLong(3), reference, amount, amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).abs().longValue()));
+                    }
+                });
+        return index;
+    }
+
+    // -1 once the upload passes max-upload-mb
+    private long spool(InputStream in, Path target) throws IOException {
+        long total = 0;
+        byte[] chunk = new byte[1 << 16];
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                total += n;
+                if (total > maxUploadBytes) {
+                    return -1;
+                }
+                out.write(chunk, 0, n);
+            }
+        }
+        return total;
+    }
+
+    private Job find(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Reconciliation " + jobId + " not found");
+        }
+        return job;
+    }
+
+    private void deleteFiles(Job job) {
+        try {
+            Files.deleteIfExists(job.upload());
+            Files.deleteIfExists(job.report());
+        } catch (IOException e) {
+            log.warn("Could not delete files of reconciliation {}", job.id, e);
+        }
+    }
+
+    private static String normalise(String reference) {
+        return reference == null ? "" : reference.trim().toUpperCase(Locale.ROOT);
+    }
+
+    // Null unless a whole number of paise; "1,234.50", "INR 1234.5" and "-250" are all accepted
+    private static Long paise(String text) {
+        String cleaned = text.replaceAll("[^0-9.\\-]", "");
+        if (cleaned.isEmpty()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(cleaned).movePointRight(2).setScale(0, RoundingMode.UNNECESSARY).abs().longValueExact();
+        } catch (ArithmeticException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String csv(String value) {
+        if (value == null || value.isEmpty()) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /** Header positions of the columns used; status is optional (-1). */
+    private record Columns(int reference, int amount, int status) {
+
+        static Columns of(List<String> header) {
+            int reference = -1;
+            int amount = -1;
+            int status = -1;
+            for (int i = 0; i < header.size(); i++) {
+                String name = header.get(i).toLowerCase(Locale.ROOT).replace('_', ' ').replace(".", "").trim();
+                if (reference < 0 && REFERENCE_HEADERS.contains(name)) {
+                    reference = i;
+                } else if (amount < 0 && AMOUNT_HEADERS.contains(name)) {
+                    amount = i;
+                } else if (status < 0 && STATUS_HEADERS.contains(name)) {
+                    status = i;
+                }
+            }
+            if (reference < 0 || amount < 0) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "The statement header needs a reference column (e.g. reference, UTR) and an amount column");
+            }
+            return new Columns(reference, amount, status);
+        }
+    }
+
+    private static final class Pending {
+        final long paymentId;
+        final long ticketRequestId;
+        final long customerId;
+        final String reference;
+        final BigDecimal amount;
+        final long paise;
+        boolean claimed;
+
+        Pending(long paymentId, long ticketRequestId, long customerId, String reference, BigDecimal amount, long paise) {
+            this.paymentId = paymentId;
+            this.ticketRequestId = ticketRequestId;
+            this.customerId = customerId;
+            this.reference = reference;
+            this.amount = amount;
+            this.paise = paise;
+        }
+    }
+
+    /** Progress of one reconciliation; written by the worker thread only. */
+    private final class Job {
+        final String id;
+        final String actor;
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        volatile State state = State.QUEUED;
+        volatile long fileBytes;
+        volatile int pendingIndexed;
+        volatile long lines;
+        volatile long completed;
+        volatile long failed;
+        volatile long notInStatement;
+        final Map<Issue, Long> mismatches = new ConcurrentHashMap<>();
+        volatile LocalDateTime startedAt;
+        volatile LocalDateTime finishedAt;
+        volatile long elapsedMs;
+        volatile String error;
+
+        Job(String id, String actor) {
+            this.id = id;
+            this.actor = actor;
+        }
+
+        Path upload() {
+            return workDir.resolve(id + ".csv");
+        }
+
+        Path report() {
+            return workDir.resolve(id + "-report.csv");
+        }
+
+        ReconciliationJob view() {
+            Map<String, Long> issues = new LinkedHashMap<>();
+            for (Issue issue : Issue.values()) {
+                long count = issue == Issue.NOT_IN_STATEMENT ? notInStatement : mismatches.getOrDefault(issue, 0L);
+                if (count > 0) {
+                    issues.put(issue.name(), count);
+                }
+            }
+            return new ReconciliationJob(id, state, actor, fileBytes, pendingIndexed, lines, completed, failed, issues,
+                    submittedAt, startedAt, finishedAt, elapsedMs, error);
+        }
+    }
+}
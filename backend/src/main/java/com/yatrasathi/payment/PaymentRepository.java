@@ -2,14 +2,39 @@ package com.yatrasathi.payment;
 
 import com.yatrasathi.common.TicketEnums.PaymentStatus;
 import com.yatrasathi.ticket.TicketRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByTicketRequest(TicketRequest request);
     List<Payment> findByStatus(PaymentStatus status);
     List<Payment> findByUserId(Long userId);
+
+    String CHANGE_SELECT = "select new com.yatrasathi.payment.PaymentChange("
+            + "p.id, p.ticketRequest.id, p.user.id, p.amount, p.mode, p.status, p.reference, p.createdAt, p.changeVersion)"
+            + " from Payment p";
+
+    @Query(CHANGE_SELECT + " where p.changeVersion <= :stable"
+            + " and (p.changeVersion > :since or (p.changeVersion = :since and p.id > :afterId))"
+            + " order by p.changeVersion, p.id")
+    List<PaymentChange> findChangedSince(long since, long afterId, long stable, Pageable limit);
+
+    @Query(CHANGE_SELECT + " where p.user.id = :userId and p.changeVersion <= :stable"
+            + " and (p.changeVersion > :since or (p.changeVersion = :since and p.id > :afterId))"
+            + " order by p.changeVersion, p.id")
+    List<PaymentChange> findChangedSinceForUser(Long userId, long since, long afterId, long stable, Pageable limit);
+
+    // Rows only for tickets with at least one payment in the status; served by idx_payments_ticket_status
+    @Query("select p.ticketRequest.id, sum(p.amount) from Payment p where p.ticketRequest.id in :ticketRequestIds and p.status = :status"
+            + " group by p.ticketRequest.id")
+    List<Object[]> sumByTicketRequestIds(Collection<Long> ticketRequestIds, PaymentStatus status);
+
+    @Query("select p.status, count(p), coalesce(sum(p.amount), 0) from Payment p group by p.status")
+    List<Object[]> countAndSumGroupedByStatus();
 }
 
 
@@ -1,25 +1,57 @@
 package com.yatrasathi.payment;
 
 import com.yatrasathi.common.AuditService;
+import com.yatrasathi.common.ChangeFeed;
+import com.yatrasathi.common.ChangeVersions;
 import com.yatrasathi.common.TicketEnums.PaymentStatus;
+import com.yatrasathi.dashboard.DashboardCounters;
+import com.yatrasathi.notification.QueueEvent;
+import com.yatrasathi.notification.QueueEventStream;
 import com.yatrasathi.ticket.TicketRequest;
 import com.yatrasathi.ticket.TicketRequestRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final TicketRequestRepository ticketRequestRepository;
     private final AuditService auditService;
+    private final DashboardCounters counters;
+    private final QueueEventStream events;
+    private final ChangeVersions changeVersions;
+    private final PaymentBalances balances;
 
-    public PaymentService(PaymentRepository paymentRepository, TicketRequestRepository ticketRequestRepository, AuditService auditService) {
+    @Value("${payments.changes.default-size:100}")
+    private int defaultChangesSize;
+
+    @Value("${payments.changes.max-size:500}")
+    private int maxChangesSize;
+
+    @Value("${payments.balances.max-ids:200}")
+    private int maxBalanceIds;
+
+    public PaymentService(PaymentRepository paymentRepository, TicketRequestRepository ticketRequestRepository, AuditService auditService,
+                          DashboardCounters counters, QueueEventStream events, ChangeVersions changeVersions,
+                          PaymentBalances balances) {
         this.paymentRepository = paymentRepository;
         this.ticketRequestRepository = ticketRequestRepository;
         this.auditService = auditService;
+        this.counters = counters;
+        this.events = events;
+        this.changeVersions = changeVersions;
+        this.balances = balances;
     }
 
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
@@ -27,6 +59,11 @@ public class PaymentService {
         TicketRequest request = ticketRequestRepository.findById(ticketRequestId).orElseThrow();
         payment.setTicketRequest(request);
         Payment saved = paymentRepository.save(payment);
+        counters.paymentAdded(saved.getStatus(), saved.getAmount());
+        if (saved.getStatus() == PaymentStatus.COMPLETED) {
+            balances.changed(ticketRequestId);
+        }
+        publishPaid(saved);
         auditService.log("system", "ADD_PAYMENT", "TicketRequestId=" + ticketRequestId + ", PaymentId=" + saved.getId());
         return saved;
     }
@@ -39,16 +76,45 @@ public class PaymentService {
     @PreAuthorize("hasRole('ADMIN')")
     public void markCompleted(Long paymentId) {
         Payment p = paymentRepository.findById(paymentId).orElseThrow();
+        PaymentStatus previous = p.getStatus();
         p.setStatus(PaymentStatus.COMPLETED);
         paymentRepository.save(p);
+        counters.paymentMoved(previous, PaymentStatus.COMPLETED, p.getAmount());
+        if (previous != PaymentStatus.COMPLETED) {
+            balances.changed(p.getTicketRequest().getId());
+        }
+        publishPaid(p);
         auditService.log("system", "COMPLETE_PAYMENT", "PaymentId=" + paymentId);
     }
 
+    /** Sum of the ticket's completed payments, refunds (negative payments) included. */
     public BigDecimal totalPaid(Long ticketRequestId) {
-        return listPayments(ticketRequestId).stream()
-                .filter(p -> p.getStatus() == PaymentStatus.COMPLETED)
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal paid = balances.balance(ticketRequestId);
+        // Zero is also what a missing ticket sums to; only then is the extra lookup needed
+        if (paid.signum() == 0 && !ticketRequestRepository.existsById(ticketRequestId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ticket request " + ticketRequestId + " not found");
+        }
+        return paid;
+    }
+
+    /**
+     * {@link #totalPaid} for up to {@code payments.balances.max-ids} tickets, keyed in the order asked for.
+     * Unknown tickets, and for a customer ({@code customerId} non-null) other customers' tickets, are left out.
+     */
+    public Map<Long, BigDecimal> totalsPaid(List<Long> ticketRequestIds, Long customerId) {
+        Set<Long> ids = new LinkedHashSet<>(ticketRequestIds);
+        ids.remove(null);
+        if (ids.size() > maxBalanceIds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxBalanceIds + " ticket ids per call");
+        }
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+        Set<Long> known = new HashSet<>(customerId == null
+                ? ticketRequestRepository.findExistingIds(ids)
+                : ticketRequestRepository.findIdsOwnedBy(ids, customerId));
+        ids.retainAll(known);
+        return balances.balances(ids);
     }
 
     public Payment makePayment(Long ticketRequestId, Long userId, Payment payment) {
@@ -56,6 +122,8 @@ public class PaymentService {
         payment.setTicketRequest(request);
         payment.setStatus(PaymentStatus.PENDING);
         Payment saved = paymentRepository.save(payment);
+        counters.paymentAdded(saved.getStatus(), saved.getAmount());
+        publishPaid(saved);
         auditService.log("customer", "MAKE_PAYMENT", "TicketRequestId=" + ticketRequestId + ", PaymentId=" + saved.getId());
         return saved;
     }
@@ -63,8 +131,14 @@ public class PaymentService {
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
     public Payment updatePaymentStatus(Long paymentId, PaymentStatus status) {
         Payment payment = paymentRepository.findById(paymentId).orElseThrow();
+        PaymentStatus previous = payment.getStatus();
         payment.setStatus(status);
         Payment saved = paymentRepository.save(payment);
+        counters.paymentMoved(previous, status, saved.getAmount());
+        if ((previous == PaymentStatus.COMPLETED) != (status == PaymentStatus.COMPLETED)) {
+            balances.changed(saved.getTicketRequest().getId());
+        }
+        publishPaid(saved);
         auditService.log("system", "UPDATE_PAYMENT_STATUS", "PaymentId=" + paymentId + ", Status=" + status);
         return saved;
     }
@@ -77,6 +151,34 @@ public class PaymentService {
     public List<Payment> getMyPayments(Long userId) {
         return paymentRepository.findByUserId(userId);
     }
+
+    /** Payments changed after the client's last sync position; {@code userId} null means all payments (staff). */
+    public ChangeFeed<PaymentChange> changesSince(Long userId, Long since, Long afterId, Integer size) {
+        if ((since != null && since < 0) || (afterId != null && since == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "since must be a position returned by an earlier call");
+        }
+        // No since: a first sync, which includes rows from before change tracking (version 0).
+        // No afterId: every row at version since was already seen.
+        long from = since == null ? -1 : since;
+        long after = afterId == null ? Long.MAX_VALUE : afterId;
+        long stable = changeVersions.stable();
+        int pageSize = size == null ? defaultChangesSize : Math.max(1, Math.min(size, maxChangesSize));
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<PaymentChange> rows = userId == null
+                ? paymentRepository.findChangedSince(from, after, stable, limit)
+                : paymentRepository.findChangedSinceForUser(userId, from, after, stable, limit);
+        if (rows.size() <= pageSize) {
+            return new ChangeFeed<>(rows, Math.max(from, stable), null, false);
+        }
+        List<PaymentChange> page = rows.subList(0, pageSize);
+        PaymentChange last = page.get(pageSize - 1);
+        return new ChangeFeed<>(page, last.changeVersion(), last.id(), true);
+    }
+
+    private void publishPaid(Payment payment) {
+        TicketRequest request = payment.getTicketRequest();
+        events.publish(QueueEvent.paid(request.getId(), request.getCustomer().getId(), payment.getId(), payment.getStatus(), payment.getAmount()));
+    }
 }
 
 
@@ -0,0 +1,27 @@
+package com.yatrasathi.payment;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Progress and outcome of one statement reconciliation. {@code mismatches} counts the rows of the mismatch
+ * report by issue (unmatched references, amount mismatches, duplicate lines, pending payments not in the
+ * statement, ...).
+ */
+public record ReconciliationJob(
+        String id,
+        PaymentReconciliationService.State state,
+        String submittedBy,
+        long fileBytes,
+        int pendingIndexed,
+        long lines,
+        long completed,
+        long failed,
+        Map<String, Long> mismatches,
+        LocalDateTime submittedAt,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt,
+        long elapsedMs,
+        String error
+) {
+}
@@ -0,0 +1,114 @@
+package com.yatrasathi.payment;
+
+import com.yatrasathi.common.AuditLog;
+import com.yatrasathi.common.AuditService;
+import com.yatrasathi.common.ChangeVersions;
+import com.yatrasathi.common.TicketEnums.PaymentStatus;
+import com.yatrasathi.dashboard.DashboardCounters;
+import com.yatrasathi.notification.QueueEvent;
+import com.yatrasathi.notification.QueueEventStream;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies one batch of statement matches in a single transaction: one JDBC batch of conditional UPDATEs
+ * (still PENDING, so a payment settled by hand meanwhile is left alone and reported), then the usual side
+ * effects for the rows that moved: counters, paid events, balance refreshes and audit rows.
+ */
+@Component
+class ReconciliationWriter {
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final ChangeVersions changeVersions;
+    private final AuditService auditService;
+    private final DashboardCounters counters;
+    private final QueueEventStream events;
+    private final PaymentBalances balances;
+
+    ReconciliationWriter(NamedParameterJdbcTemplate jdbc, ChangeVersions changeVersions, AuditService auditService,
+                         DashboardCounters counters, QueueEventStream events, PaymentBalances balances) {
+        this.jdbc = jdbc;
+        this.changeVersions = changeVersions;
+        this.auditService = auditService;
+        this.counters = counters;
+        this.events = events;
+        this.balances = balances;
+    }
+
+    /** Returns, per match, whether the payment was still PENDING and has been moved. */
+    @Transactional
+    public boolean[] apply(List<Match> matches, String actor, String jobId) {
+        long changeVersion = changeVersions.next();
+        jdbc.getJdbcTemplate().batchUpdate(
+                "update payments set status = ?, change_version = ? where id = ? and status = 'PENDING'",
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Match match = matches.get(i);
+                        ps.setString(1, match.status().name());
+                        ps.setLong(2, changeVersion);
+                        ps.setLong(3, match.paymentId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return matches.size();
+                    }
+                });
+        // Batched update counts may be SUCCESS_NO_INFO whether or not the row matched, so read the rows back:
+        // only those now carrying the new status under this batch's change version were moved here
+        Set<Long> moved = moved(matches, changeVersion);
+        boolean[] applied = new boolean[matches.size()];
+        List<AuditLog> audit = new ArrayList<>(matches.size());
+        Set<Long> completedTickets = new HashSet<>();
+        for (int i = 0; i < matches.size(); i++) {
+            Match match = matches.get(i);
+            applied[i] = moved.contains(match.paymentId());
+            if (!applied[i]) {
+                continue;
+            }
+            counters.paymentMoved(PaymentStatus.PENDING, match.status(), match.amount());
+            events.publish(QueueEvent.paid(match.ticketRequestId(), match.customerId(), match.paymentId(), match.status(), match.amount()));
+            if (match.status() == PaymentStatus.COMPLETED) {
+                completedTickets.add(match.ticketRequestId());
+            }
+            audit.add(AuditService.entry(actor, "RECONCILE_PAYMENT", "PaymentId=" + match.paymentId() + ", Status=" + match.status()
+                    + ", StatementLine=" + match.line() + ", Job=" + jobId));
+        }
+        balances.changed(completedTickets);
+        auditService.logAll(audit);
+        return applied;
+    }
+
+    private Set<Long> moved(List<Match> matches, long changeVersion) {
+        Map<Long, PaymentStatus> wanted = new HashMap<>();
+        for (Match match : matches) {
+            wanted.put(match.paymentId(), match.status());
+        }
+        Set<Long> moved = new HashSet<>();
+        jdbc.query("select id, status from payments where id in (:ids) and change_version = :changeVersion",
+                Map.of("ids", wanted.keySet(), "changeVersion", changeVersion), rs -> {
+                    long id = rs.getLong(1);
+                    if (wanted.get(id).name().equals(rs.getString(2))) {
+                        moved.add(id);
+                    }
+                });
+        return moved;
+    }
+
+    record Match(long paymentId, long ticketRequestId, long customerId, BigDecimal amount, PaymentStatus status,
+                 long line, String reference) {
+    }
+}
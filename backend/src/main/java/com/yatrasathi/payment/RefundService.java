@@ -0,0 +1,118 @@
+package com.yatrasathi.payment;
+
+import com.yatrasathi.common.StatsContributor;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Background refund stage. Cancellation only flags a request as refund pending; this drains the flagged
+ * requests on its own thread, {@code refunds.batch-size} per transaction, so cancelling a whole train is
+ * a few UPDATEs for the caller and the refunds follow within seconds. Cancellations trigger a drain once
+ * they commit, and a periodic tick picks up anything left over (a failed batch, a restart).
+ */
+@Service
+public class RefundService implements StatsContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(RefundService.class);
+
+    private final RefundWriter writer;
+    private final int batchSize;
+    private final ExecutorService stage;
+    // A drain is queued or running; further triggers meanwhile add nothing
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final LongAdder settled = new LongAdder();
+    private final LongAdder refunds = new LongAdder();
+    // Kept in paise so it fits a LongAdder
+    private final LongAdder refundedPaise = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicLong lastDrainMs = new AtomicLong();
+
+    public RefundService(RefundWriter writer, @Value("${refunds.batch-size:500}") int batchSize) {
+        this.writer = writer;
+        this.batchSize = batchSize;
+        this.stage = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "refund-stage");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        stage.shutdown();
+        stage.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Scheduled(fixedDelayString = "${refunds.poll-interval-ms:30000}")
+    public void trigger() {
+        if (scheduled.compareAndSet(false, true)) {
+            stage.execute(() -> {
+                scheduled.set(false);
+                drain();
+            });
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "refunds";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("pending", writer.pending());
+        data.put("settled", settled.sum());
+        data.put("refunds", refunds.sum());
+        data.put("refundedAmount", BigDecimal.valueOf(refundedPaise.sum(), 2));
+        data.put("batches", batches.sum());
+        data.put("failures", failures.sum());
+        data.put("lastDrainMs", lastDrainMs.get());
+        return data;
+    }
+
+    private void drain() {
+        long started = System.nanoTime();
+        int processed = 0;
+        while (true) {
+            RefundWriter.Batch batch;
+            try {
+                batch = writer.processNext(batchSize);
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.error("Refund batch failed; will retry on the next tick", e);
+                return;
+            }
+            if (batch.processed() == 0) {
+                break;
+            }
+            processed += batch.processed();
+            batches.increment();
+            settled.add(batch.processed());
+            refunds.add(batch.refunded());
+            refundedPaise.add(batch.amount().movePointRight(2).longValue());
+            if (batch.processed() < batchSize) {
+                break;
+            }
+        }
+        if (processed > 0) {
+            lastDrainMs.set((System.nanoTime() - started) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.yatrasathi.payment;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Time-to-departure refund slabs, configured as {@code hours:percent} pairs ({@code refunds.slabs}): a
+ * cancellation at least {@code hours} before departure gets {@code percent} of the amount paid back. The
+ * slabs are expanded once into a table indexed by whole hours, so a lookup is one array read.
+ */
+@Component
+public class RefundSlabs {
+
+    private final int[] percentByHour;
+
+    public RefundSlabs(@Value("${refunds.slabs:48:75,12:50,4:25}") String slabs) {
+        TreeMap<Integer, Integer> thresholds = new TreeMap<>();
+        for (String slab : slabs.split(",")) {
+            String[] parts = slab.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Refund slab must be hours:percent, got '" + slab + "'");
+            }
+            int hours = Integer.parseInt(parts[0].trim());
+            int percent = Integer.parseInt(parts[1].trim());
+            if (hours < 0 || percent < 0 || percent > 100) {
+                throw new IllegalArgumentException("Refund slab out of range: '" + slab + "'");
+            }
+            thresholds.put(hours, percent);
+        }
+        int maxHours = thresholds.isEmpty() ? 0 : thresholds.lastKey();
+        percentByHour = new int[maxHours + 1];
+        for (Map.Entry<Integer, Integer> threshold : thresholds.entrySet()) {
+            // Later (larger) thresholds overwrite from their hour on, so every hour ends up with the highest slab it reaches
+            for (int h = threshold.getKey(); h <= maxHours; h++) {
+                percentByHour[h] = threshold.getValue();
+            }
+        }
+    }
+
+    /** Percent refunded for a cancellation at {@code cancelledAt}; nothing once the train has left. */
+    public int percent(LocalDateTime departure, LocalDateTime cancelledAt) {
+        long hours = Duration.between(cancelledAt, departure).toHours();
+        if (hours < 0 || departure.isBefore(cancelledAt)) {
+            return 0;
+        }
+        return percentByHour[(int) Math.min(hours, percentByHour.length - 1)];
+    }
+}
@@ -0,0 +1,162 @@
+package com.yatrasathi.payment;
+
+import com.yatrasathi.common.AuditLog;
+import com.yatrasathi.common.AuditService;
+import com.yatrasathi.common.ChangeVersions;
+import com.yatrasathi.common.TicketEnums.PaymentStatus;
+import com.yatrasathi.dashboard.DashboardCounters;
+import com.yatrasathi.notification.QueueEvent;
+import com.yatrasathi.notification.QueueEventStream;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Refunds one batch of cancelled requests in a single transaction: one read of the batch, one read of its
+ * payments, one JDBC batch of refund inserts and one UPDATE clearing the pending flag. Payments use
+ * IDENTITY ids, which Hibernate cannot batch, so the inserts are plain JDBC.
+ *
+ * <p>A refund is a PENDING payment for the negative amount, referenced {@code REFUND-<booking id>}; once
+ * staff complete it, the sum of completed payments is what the customer is left having paid.
+ */
+@Component
+class RefundWriter {
+
+    static final String REFERENCE_PREFIX = "REFUND-";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final ChangeVersions changeVersions;
+    private final AuditService auditService;
+    private final DashboardCounters counters;
+    private final QueueEventStream events;
+
+    RefundWriter(NamedParameterJdbcTemplate jdbc, ChangeVersions changeVersions, AuditService auditService,
+                 DashboardCounters counters, QueueEventStream events) {
+        this.jdbc = jdbc;
+        this.changeVersions = changeVersions;
+        this.auditService = auditService;
+        this.counters = counters;
+        this.events = events;
+    }
+
+    @Transactional
+    public Batch processNext(int batchSize) {
+        List<Due> due = jdbc.query("select booking_id, customer_id, refund_percent from bookings where refund_pending = true"
+                        + " order by booking_id limit :limit", Map.of("limit", batchSize),
+                (rs, i) -> new Due(rs.getLong(1), rs.getLong(2), rs.getInt(3)));
+        if (due.isEmpty()) {
+            return new Batch(0, 0, BigDecimal.ZERO);
+        }
+        List<Long> ids = due.stream().map(Due::bookingId).toList();
+
+        Map<Long, Paid> paid = new HashMap<>();
+        jdbc.query("select ticket_request_id, amount, mode, status, reference from payments where ticket_request_id in (:ids) order by id",
+                Map.of("ids", ids), rs -> {
+                    Paid p = paid.computeIfAbsent(rs.getLong(1), k -> new Paid());
+                    String reference = rs.getString(5);
+                    if (reference != null && reference.startsWith(REFERENCE_PREFIX)) {
+                        // Already refunded by an earlier run that got this far; never refund twice
+                        p.refunded = true;
+                    } else if (PaymentStatus.COMPLETED.name().equals(rs.getString(4))) {
+                        p.amount = p.amount.add(rs.getBigDecimal(2));
+                        p.mode = rs.getString(3);
+                    }
+                });
+
+        List<Refund> refunds = new ArrayList<>();
+        for (Due d : due) {
+            Paid p = paid.get(d.bookingId());
+            if (p == null || p.refunded || p.mode == null || d.percent() <= 0 || p.amount.signum() <= 0) {
+                continue;
+            }
+            BigDecimal amount = p.amount.multiply(BigDecimal.valueOf(d.percent())).divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
+            if (amount.signum() > 0) {
+                refunds.add(new Refund(d, amount.negate(), p.mode));
+            }
+        }
+
+        if (!refunds.isEmpty()) {
+            insert(refunds, changeVersions.next(), LocalDateTime.now());
+        }
+        jdbc.update("update bookings set refund_pending = false where booking_id in (:ids)", Map.of("ids", ids));
+
+        BigDecimal total = BigDecimal.ZERO;
+        if (!refunds.isEmpty()) {
+            Map<Long, Long> paymentIds = new HashMap<>();
+            jdbc.query("select id, ticket_request_id from payments where ticket_request_id in (:ids) and reference like :prefix",
+                    Map.of("ids", refunds.stream().map(r -> r.due().bookingId()).toList(), "prefix", REFERENCE_PREFIX + "%"),
+                    rs -> {
+                        paymentIds.put(rs.getLong(2), rs.getLong(1));
+                    });
+            List<AuditLog> audit = new ArrayList<>(refunds.size());
+            for (Refund refund : refunds) {
+                Long bookingId = refund.due().bookingId();
+                Long paymentId = paymentIds.get(bookingId);
+                total = total.add(refund.amount().negate());
+                counters.paymentAdded(PaymentStatus.PENDING, refund.amount());
+                events.publish(QueueEvent.paid(bookingId, refund.due().customerId(), paymentId, PaymentStatus.PENDING, refund.amount()));
+                audit.add(AuditService.entry("system", "CREATE_REFUND", "TicketRequestId=" + bookingId + ", PaymentId=" + paymentId
+                        + ", Amount=" + refund.amount() + ", Percent=" + refund.due().percent()));
+            }
+            auditService.logAll(audit);
+        }
+        return new Batch(due.size(), refunds.size(), total);
+    }
+
+    long pending() {
+        Long count = jdbc.getJdbcTemplate().queryForObject("select count(*) from bookings where refund_pending = true", Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private void insert(List<Refund> refunds, long changeVersion, LocalDateTime now) {
+        jdbc.getJdbcTemplate().batchUpdate("insert into payments (ticket_request_id, user_id, amount, mode, status, created_at,"
+                + " reference, remarks, change_version) values (?, ?, ?, ?, ?, ?, ?, ?, ?)", new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Refund refund = refunds.get(i);
+                ps.setLong(1, refund.due().bookingId());
+                ps.setLong(2, refund.due().customerId());
+                ps.setBigDecimal(3, refund.amount());
+                ps.setString(4, refund.mode());
+                ps.setString(5, PaymentStatus.PENDING.name());
+                ps.setTimestamp(6, Timestamp.valueOf(now));
+                ps.setString(7, REFERENCE_PREFIX + refund.due().bookingId());
+                ps.setString(8, "Refund of " + refund.due().percent() + "% on cancellation");
+                ps.setLong(9, changeVersion);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return refunds.size();
+            }
+        });
+    }
+
+    /** {@code processed} cancelled requests were settled, {@code refunded} of them with a refund payment. */
+    record Batch(int processed, int refunded, BigDecimal amount) {
+    }
+
+    private record Due(Long bookingId, Long customerId, int percent) {
+    }
+
+    private record Refund(Due due, BigDecimal amount, String mode) {
+    }
+
+    private static final class Paid {
+        private BigDecimal amount = BigDecimal.ZERO;
+        private String mode;
+        private boolean refunded;
+    }
+}
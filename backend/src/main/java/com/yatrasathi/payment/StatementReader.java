@@ -0,0 +1,161 @@
+package com.yatrasathi.payment;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a CSV statement record by record through memory-mapped windows of the file, so a statement of any size
+ * costs one window of address space and one record of heap. Fields follow RFC 4180 quoting, including line
+ * breaks inside quoted fields, so a "line" here is one record and {@link #lineNumber()} is the physical line
+ * it starts on. A UTF-8 byte order mark on the first line and CRLF line ends are accepted. Records longer
+ * than {@link #MAX_LINE_BYTES} are skipped and reported as {@link #tooLong()}.
+ */
+final class StatementReader implements AutoCloseable {
+
+    static final int MAX_LINE_BYTES = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long window;
+    private MappedByteBuffer buffer;
+    private long bufferStart;
+    private long position;
+    private long lineNumber;
+    private long physicalLines;
+
+    private final byte[] line = new byte[MAX_LINE_BYTES];
+    private int lineLength;
+    private boolean tooLong;
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+
+    StatementReader(Path file, long windowBytes) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.window = Math.max(MAX_LINE_BYTES, windowBytes);
+    }
+
+    /** Advances to the next record; false at the end of the file. */
+    boolean next() throws IOException {
+        if (position >= size) {
+            return false;
+        }
+        lineNumber = ++physicalLines;
+        lineLength = 0;
+        tooLong = false;
+        // An escaped quote ("") flips the state twice, so a plain toggle tracks RFC 4180 quoting
+        boolean quoted = false;
+        while (true) {
+            map(position);
+            int from = (int) (position - bufferStart);
+            int limit = buffer.limit();
+            int i = from;
+            for (; i < limit; i++) {
+                byte b = buffer.get(i);
+                if (b == '"') {
+                    quoted = !quoted;
+                } else if (b == '\n') {
+                    if (!quoted) {
+                        break;
+                    }
+                    physicalLines++;
+                }
+            }
+            append(from, i);
+            position = bufferStart + i;
+            if (i < limit) {
+                position++;
+                break;
+            }
+            if (position >= size) {
+                break;
+            }
+            // The window ended mid-record; the next round maps the rest
+        }
+        if (lineLength > 0 && line[lineLength - 1] == '\r') {
+            lineLength--;
+        }
+        if (lineNumber == 1 && lineLength >= 3 && (line[0] & 0xFF) == 0xEF && (line[1] & 0xFF) == 0xBB && (line[2] & 0xFF) == 0xBF) {
+            System.arraycopy(line, 3, line, 0, lineLength - 3);
+            lineLength -= 3;
+        }
+        return true;
+    }
+
+    long lineNumber() {
+        return lineNumber;
+    }
+
+    boolean tooLong() {
+        return tooLong;
+    }
+
+    boolean blank() {
+        for (int i = 0; i < lineLength; i++) {
+            if (line[i] != ' ' && line[i] != '\t' && line[i] != ',') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** The current record split into trimmed fields; the list is reused by the next call. */
+    List<String> fields() {
+        fields.clear();
+        String text = new String(line, 0, lineLength, StandardCharsets.UTF_8);
+        field.setLength(0);
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        channel.close();
+    }
+
+    private void append(int from, int to) {
+        int count = to - from;
+        if (tooLong || lineLength + count > line.length) {
+            tooLong = true;
+            return;
+        }
+        buffer.get(from, line, lineLength, count);
+        lineLength += count;
+    }
+
+    private void map(long offset) throws IOException {
+        if (buffer != null && offset >= bufferStart && offset < bufferStart + buffer.limit()) {
+            return;
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(window, size - offset));
+        bufferStart = offset;
+    }
+}
@@ -0,0 +1,41 @@
+package com.yatrasathi.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Request principal built straight from verified JWT claims, so resolving the caller needs no users lookup.
+ */
+public final class AuthenticatedUser implements AuthenticatedPrincipal {
+    private final Long userId;
+    private final String email;
+    private final String role;
+    private final List<GrantedAuthority> authorities;
+
+    public AuthenticatedUser(Long userId, String email, String role) {
+        this.userId = userId;
+        this.email = email;
+        this.role = role;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role));
+    }
+
+    public static AuthenticatedUser from(VerifiedToken token) {
+        return new AuthenticatedUser(token.getUserId(), token.getSubject(), token.getRole());
+    }
+
+    @Override
+    public String getName() { return email; }
+
+    // Getters
+    public Long getUserId() { return userId; }
+    public String getEmail() { return email; }
+    public String getRole() { return role; }
+    public Collection<GrantedAuthority> getAuthorities() { return authorities; }
+
+    @Override
+    public String toString() { return email; }
+}
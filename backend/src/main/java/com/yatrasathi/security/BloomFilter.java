@@ -0,0 +1,57 @@
+package com.yatrasathi.security;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter over {@code long} keys. Lookups are lock-free; adds are safe from any thread.
+ * Entries cannot be removed, so owners rebuild a fresh filter when the key set shrinks.
+ */
+final class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitMask;
+    private final int hashes;
+
+    BloomFilter(int expectedEntries, double falsePositiveRate) {
+        int n = Math.max(expectedEntries, 1);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        // Round up to a power of two (at least one word) so probing is a mask instead of a modulo
+        long size = Long.highestOneBit(Math.max(bits, 64) - 1) << 1;
+        this.words = new AtomicLongArray((int) (size >>> 6));
+        this.bitMask = size - 1;
+        this.hashes = Math.min(16, Math.max(1, (int) Math.round((double) size / n * Math.log(2))));
+    }
+
+    void put(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            int idx = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(idx);
+                if ((current & mask) != 0) break;
+            } while (!words.compareAndSet(idx, current, current | mask));
+        }
+    }
+
+    boolean mightContain(long key) {
+        long h1 = mix(key);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = (h1 + i * h2) & bitMask;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // MurmurHash3 64-bit finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
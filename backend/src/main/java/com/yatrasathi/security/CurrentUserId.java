@@ -0,0 +1,15 @@
+package com.yatrasathi.security;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injects the id of the authenticated user into a controller method parameter of type {@link Long}.
+ * Resolves to {@code null} for anonymous requests.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CurrentUserId {
+}
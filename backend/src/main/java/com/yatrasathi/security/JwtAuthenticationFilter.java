@@ -8,6 +8,7 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -17,45 +18,87 @@ import java.io.IOException;
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    /** The one endpoint that also accepts a scoped stream token in the {@code token} query parameter. */
+    public static final String EVENT_STREAM_PATH = "/api/events/queue";
+
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
+    private final UserPrincipalCache userPrincipalCache;
+    private final TokenRevocationService tokenRevocationService;
 
-    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtService jwtService, UserDetailsService userDetailsService,
+                                   UserPrincipalCache userPrincipalCache, TokenRevocationService tokenRevocationService) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.userPrincipalCache = userPrincipalCache;
+        this.tokenRevocationService = tokenRevocationService;
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
         final String authHeader = request.getHeader("Authorization");
-        final String jwt;
-        final String username;
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        final boolean bearer = authHeader != null && authHeader.startsWith("Bearer ");
+        final boolean eventStream = isEventStream(request);
+        // EventSource cannot set headers, so the event stream also takes a token from the query string
+        final String raw = bearer ? authHeader.substring(7) : eventStream ? request.getParameter("token") : null;
+        if (raw == null) {
             filterChain.doFilter(request, response);
             return;
         }
-        jwt = authHeader.substring(7);
+        final VerifiedToken token;
         try {
-            username = jwtService.extractUsername(jwt);
+            token = jwtService.verify(raw);
         } catch (Exception e) {
             filterChain.doFilter(request, response);
             return;
         }
+        // Scoped stream tokens open the event stream and nothing else; session tokens are only taken from the header
+        boolean allowed = token.getScope() == null ? bearer : JwtService.EVENTS_SCOPE.equals(token.getScope()) && eventStream;
+        if (!allowed) {
+            filterChain.doFilter(request, response);
+            return;
+        }
 
+        String username = token.getSubject();
         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
-            if (jwtService.isTokenValid(jwt, userDetails.getUsername())) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities()
-                );
+            UsernamePasswordAuthenticationToken authToken = null;
+            if (token.getUserId() != null && token.getRole() != null) {
+                // Claims are signed by us, so the principal can be built without a users lookup
+                if (!tokenRevocationService.isRevoked(token.getUserId(), token.getIssuedAt())) {
+                    AuthenticatedUser user = AuthenticatedUser.from(token);
+                    authToken = new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities());
+                }
+            } else {
+                UserDetails userDetails = loadUser(username);
+                if (userDetails != null && userDetails.isEnabled() && username.equals(userDetails.getUsername())) {
+                    authToken = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                }
+            }
+            if (authToken != null) {
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         }
         filterChain.doFilter(request, response);
     }
+
+    private static boolean isEventStream(HttpServletRequest request) {
+        return "GET".equals(request.getMethod()) && (request.getContextPath() + EVENT_STREAM_PATH).equals(request.getRequestURI());
+    }
+
+    private UserDetails loadUser(String username) {
+        UserDetails cached = userPrincipalCache.getUserFromCache(username);
+        if (cached != null) {
+            return cached;
+        }
+        try {
+            UserDetails loaded = userDetailsService.loadUserByUsername(username);
+            userPrincipalCache.putUserInCache(loaded);
+            return loaded;
+        } catch (UsernameNotFoundException e) {
+            return null;
+        }
+    }
 }
 
 
@@ -1,9 +1,11 @@
 package com.yatrasathi.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -20,9 +22,47 @@ public class JwtService {
     @Value("${security.jwt.secret}")
     private String secret;
 
+    /** Scope of the tokens that only open the queue event stream. */
+    public static final String EVENTS_SCOPE = "events";
+
     @Value("${security.jwt.expiration-minutes}")
     private long expirationMinutes;
 
+    @Value("${security.jwt.stream-token-seconds:60}")
+    private long streamTokenSeconds;
+
+    // Built once; both are immutable and safe to share across request threads
+    private Key signInKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        // Accept plain text secret; jjwt expects at least 256-bit (32 bytes) for HS256
+        signInKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder()
+                .setSigningKey(signInKey)
+                .build();
+    }
+
+    /**
+     * Parses the token and checks its signature and expiry in a single pass.
+     *
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, tampered with or expired
+     */
+    public VerifiedToken verify(String token) {
+        Claims claims = extractAllClaims(token);
+        Object userId = claims.get("userId");
+        Date issuedAt = claims.getIssuedAt();
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("role", String.class),
+                userId instanceof Number n ? n.longValue() : null,
+                issuedAt != null ? issuedAt.toInstant() : null,
+                claims.getExpiration().toInstant(),
+                claims.get("scope", String.class)
+        );
+    }
+
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -39,36 +79,36 @@ public class JwtService {
                 .setSubject(username)
                 .setIssuedAt(Date.from(now))
                 .setExpiration(Date.from(now.plusSeconds(expirationMinutes * 60)))
-                .signWith(getSignInKey(), SignatureAlgorithm.HS256)
+                .signWith(signInKey, SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    public boolean isTokenValid(String token, String username) {
-        final String extracted = extractUsername(token);
-        return (extracted.equals(username) && !isTokenExpired(token));
+    /**
+     * A short-lived token for the queue event stream. The browser's EventSource cannot send an Authorization
+     * header, so this one travels in the query string; it is scoped so that a copy leaked through a URL opens
+     * nothing else, and it only has to be valid when the stream connects.
+     */
+    public String generateStreamToken(String username, Long userId, String role) {
+        Instant now = Instant.now();
+        return Jwts.builder()
+                .setClaims(Map.of("userId", userId, "role", role, "scope", EVENTS_SCOPE))
+                .setSubject(username)
+                .setIssuedAt(Date.from(now))
+                .setExpiration(Date.from(now.plusSeconds(streamTokenSeconds)))
+                .signWith(signInKey, SignatureAlgorithm.HS256)
+                .compact();
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    public long getStreamTokenSeconds() {
+        return streamTokenSeconds;
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
+    public boolean isTokenValid(String token, String username) {
+        // The parser already rejects expired tokens, so one parse covers both checks
+        return username.equals(extractUsername(token));
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignInKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
-    }
-
-    private Key getSignInKey() {
-        // Accept plain text secret; jjwt expects at least 256-bit (32 bytes) for HS256
-        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
-        return Keys.hmacShaKeyFor(keyBytes);
+        return parser.parseClaimsJws(token).getBody();
     }
 }
-
-
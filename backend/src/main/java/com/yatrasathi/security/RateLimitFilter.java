@@ -0,0 +1,108 @@
+package com.yatrasathi.security;
+
+import com.yatrasathi.common.StatsContributor;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Admission control for the expensive public entry points: login, signup and ticket creation. Runs after
+ * {@link JwtAuthenticationFilter} so bookings are limited per user id; anonymous routes are keyed by remote IP.
+ */
+@Component
+public class RateLimitFilter extends OncePerRequestFilter implements StatsContributor {
+
+    private final boolean enabled;
+    private final RateLimiter login;
+    private final RateLimiter signup;
+    private final RateLimiter booking;
+
+    public RateLimitFilter(@Value("${rate-limit.enabled:true}") boolean enabled,
+                           @Value("${rate-limit.max-keys:100000}") int maxKeys,
+                           @Value("${rate-limit.login.requests-per-minute:10}") int loginRpm,
+                           @Value("${rate-limit.login.burst:5}") int loginBurst,
+                           @Value("${rate-limit.signup.requests-per-minute:5}") int signupRpm,
+                           @Value("${rate-limit.signup.burst:3}") int signupBurst,
+                           @Value("${rate-limit.booking.requests-per-minute:30}") int bookingRpm,
+                           @Value("${rate-limit.booking.burst:10}") int bookingBurst) {
+        this.enabled = enabled;
+        this.login = new RateLimiter("login", loginRpm, loginBurst, maxKeys);
+        this.signup = new RateLimiter("signup", signupRpm, signupBurst, maxKeys);
+        this.booking = new RateLimiter("booking", bookingRpm, bookingBurst, maxKeys);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        RateLimiter limiter = limiterFor(request.getRequestURI());
+        if (limiter != null) {
+            long waitNanos = limiter.tryAcquire(keyFor(limiter, request), System.nanoTime());
+            if (waitNanos > 0) {
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L)));
+                response.setContentType("text/plain");
+                response.getWriter().write("Too many requests");
+                return;
+            }
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    @Scheduled(fixedDelayString = "${rate-limit.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = System.nanoTime();
+        login.evictIdle(now);
+        signup.evictIdle(now);
+        booking.evictIdle(now);
+    }
+
+    @Override
+    public String statsName() {
+        return "rateLimits";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put(login.getName(), login.stats());
+        data.put(signup.getName(), signup.stats());
+        data.put(booking.getName(), booking.stats());
+        return data;
+    }
+
+    private RateLimiter limiterFor(String uri) {
+        return switch (uri) {
+            case "/api/auth/login" -> login;
+            case "/api/auth/signup" -> signup;
+            case "/api/tickets", "/api/tickets/intake" -> booking;
+            default -> null;
+        };
+    }
+
+    private Object keyFor(RateLimiter limiter, HttpServletRequest request) {
+        if (limiter == booking) {
+            Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+            if (auth != null && auth.getPrincipal() instanceof AuthenticatedUser user) {
+                return user.getUserId();
+            }
+        }
+        return request.getRemoteAddr();
+    }
+}
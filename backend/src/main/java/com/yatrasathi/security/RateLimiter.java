@@ -0,0 +1,121 @@
+package com.yatrasathi.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket limiter for one route group, implemented as GCRA: each key holds a single theoretical
+ * arrival time in an {@link AtomicLong}, so admitting a request is one CAS with no locks and no allocation
+ * once the key is known. A bucket whose arrival time is in the past is full, which makes it safe to evict.
+ *
+ * <p>{@code maxKeys} is a hard cap: a new key reserves a slot before it is inserted. When every slot is taken
+ * one caller sweeps out the idle buckets, and if none of them are idle the new key is refused as if its
+ * bucket were empty. Buckets that are still draining are never evicted, so a flood of fresh keys cannot
+ * reset the limit of a key that is already throttled.
+ */
+final class RateLimiter {
+    private final String name;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final ConcurrentHashMap<Object, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger keys = new AtomicInteger();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overflow = new LongAdder();
+
+    RateLimiter(String name, int requestsPerMinute, int burst, int maxKeys) {
+        this.name = name;
+        this.intervalNanos = 60_000_000_000L / Math.max(requestsPerMinute, 1);
+        this.burstNanos = intervalNanos * Math.max(burst, 1);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * @return 0 if the request is admitted, otherwise the nanoseconds until the key may retry
+     */
+    long tryAcquire(Object key, long now) {
+        AtomicLong tat = buckets.get(key);
+        if (tat == null) {
+            tat = insert(key, now);
+            if (tat == null) {
+                overflow.increment();
+                rejected.increment();
+                return intervalNanos;
+            }
+        }
+        while (true) {
+            long current = tat.get();
+            long next = (current - now > 0 ? current : now) + intervalNanos;
+            long excess = next - now - burstNanos;
+            if (excess > 0) {
+                rejected.increment();
+                return excess;
+            }
+            if (tat.compareAndSet(current, next)) {
+                allowed.increment();
+                return 0;
+            }
+        }
+    }
+
+    void evictIdle(long now) {
+        for (Map.Entry<Object, AtomicLong> entry : buckets.entrySet()) {
+            // nanoTime readings may wrap, so compare by difference
+            if (now - entry.getValue().get() >= 0 && buckets.remove(entry.getKey(), entry.getValue())) {
+                keys.decrementAndGet();
+            }
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("keys", keys.get());
+        data.put("maxKeys", maxKeys);
+        data.put("allowed", allowed.sum());
+        data.put("rejected", rejected.sum());
+        data.put("overflow", overflow.sum());
+        return data;
+    }
+
+    // Null when the table is full of buckets that are still draining
+    private AtomicLong insert(Object key, long now) {
+        while (true) {
+            int count = keys.get();
+            if (count >= maxKeys) {
+                // One sweep at a time; callers that lose the race see the table as full
+                if (!sweeping.compareAndSet(false, true)) {
+                    return buckets.get(key);
+                }
+                try {
+                    evictIdle(now);
+                } finally {
+                    sweeping.set(false);
+                }
+                if (keys.get() >= maxKeys) {
+                    return buckets.get(key);
+                }
+                continue;
+            }
+            if (keys.compareAndSet(count, count + 1)) {
+                AtomicLong created = new AtomicLong(now);
+                AtomicLong existing = buckets.putIfAbsent(key, created);
+                if (existing != null) {
+                    keys.decrementAndGet();
+                    return existing;
+                }
+                return created;
+            }
+        }
+    }
+}
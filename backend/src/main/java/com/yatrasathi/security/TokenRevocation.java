@@ -0,0 +1,42 @@
+package com.yatrasathi.security;
+
+import jakarta.persistence.*;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@NoArgsConstructor
+@Entity
+@Table(name = "token_revocations", indexes = {
+        @Index(name = "idx_token_revocations_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_token_revocations_revoked_before", columnList = "revoked_before")
+})
+public class TokenRevocation {
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    // Tokens issued at or before this instant are rejected
+    @Column(name = "revoked_before", nullable = false)
+    private Instant revokedBefore;
+
+    // After this instant every affected token has expired on its own and the row can be compacted
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    public TokenRevocation(Long userId, Instant revokedBefore, Instant expiresAt) {
+        this.userId = userId;
+        this.revokedBefore = revokedBefore;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters
+    public Long getUserId() { return userId; }
+    public Instant getRevokedBefore() { return revokedBefore; }
+    public Instant getExpiresAt() { return expiresAt; }
+
+    // Setters
+    public void setUserId(Long userId) { this.userId = userId; }
+    public void setRevokedBefore(Instant revokedBefore) { this.revokedBefore = revokedBefore; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,136 @@
+package com.yatrasathi.security;
+
+import com.yatrasathi.common.StatsContributor;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks users whose previously issued tokens must no longer be accepted (deactivation, password reset,
+ * deletion). A token is revoked when it was issued at or before the user's cut-off; fresh logins still go
+ * through the database, so a deactivated user cannot obtain a new token.
+ *
+ * <p>Checks consult an in-memory Bloom filter first, so the common case of a never-revoked user costs a few
+ * memory reads. Only a Bloom hit falls through to the exact set, which mirrors the {@code token_revocations}
+ * table. Revocations written by other instances are pulled in every
+ * {@code security.revocation.refresh-interval-ms}; the full reload on each compaction also drops rows other
+ * instances deleted. Reactivating a user leaves the row alone: tokens issued before the cut-off stay
+ * rejected, and the row ages out through {@link #compact} once they have all expired.
+ */
+@Service
+public class TokenRevocationService implements StatsContributor {
+
+    private final TokenRevocationRepository repository;
+    private final Map<Long, Instant> revokedBefore = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private volatile BloomFilter bloom;
+    private volatile Instant refreshedAt = Instant.EPOCH;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder bloomHits = new LongAdder();
+    private final LongAdder revokedHits = new LongAdder();
+
+    @Value("${security.jwt.expiration-minutes}")
+    private long expirationMinutes;
+
+    // Cut-offs come from each writer's clock; look back this far so a lagging clock does not hide a row
+    @Value("${security.revocation.refresh-overlap-ms:10000}")
+    private long refreshOverlapMillis;
+
+    @Value("${security.revocation.bloom.expected-entries:10000}")
+    private int expectedEntries;
+
+    @Value("${security.revocation.bloom.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    public TokenRevocationService(TokenRevocationRepository repository) {
+        this.repository = repository;
+    }
+
+    @PostConstruct
+    void load() {
+        reload();
+    }
+
+    public void revokeUser(Long userId) {
+        // iat has second precision, so compare on whole seconds
+        Instant cutoff = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        synchronized (writeLock) {
+            repository.save(new TokenRevocation(userId, cutoff, cutoff.plus(expirationMinutes, ChronoUnit.MINUTES)));
+            revokedBefore.put(userId, cutoff);
+            bloom.put(userId);
+        }
+    }
+
+    public boolean isRevoked(Long userId, Instant issuedAt) {
+        checks.increment();
+        if (!bloom.mightContain(userId)) {
+            return false;
+        }
+        bloomHits.increment();
+        Instant cutoff = revokedBefore.get(userId);
+        boolean revoked = cutoff != null && (issuedAt == null || !issuedAt.isAfter(cutoff));
+        if (revoked) {
+            revokedHits.increment();
+        }
+        return revoked;
+    }
+
+    @Scheduled(fixedDelayString = "${security.revocation.refresh-interval-ms:5000}")
+    public void refresh() {
+        synchronized (writeLock) {
+            Instant started = Instant.now();
+            for (TokenRevocation r : repository.findByRevokedBeforeGreaterThanEqual(refreshedAt.minusMillis(refreshOverlapMillis))) {
+                revokedBefore.merge(r.getUserId(), r.getRevokedBefore(), (a, b) -> a.isAfter(b) ? a : b);
+                bloom.put(r.getUserId());
+            }
+            refreshedAt = started;
+        }
+    }
+
+    // Once every token issued before the cut-off has expired the entry carries no information.
+    // Reloading also picks up revocations written by other instances.
+    @Scheduled(fixedDelayString = "${security.revocation.compact-interval-ms:60000}")
+    public void compact() {
+        repository.deleteExpired(Instant.now());
+        reload();
+    }
+
+    @Override
+    public String statsName() {
+        return "tokenRevocations";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("entries", revokedBefore.size());
+        data.put("checks", checks.sum());
+        data.put("bloomHits", bloomHits.sum());
+        data.put("revoked", revokedHits.sum());
+        return data;
+    }
+
+    private void reload() {
+        synchronized (writeLock) {
+            Instant started = Instant.now();
+            Map<Long, Instant> fresh = new ConcurrentHashMap<>();
+            repository.findAll().forEach(r -> fresh.put(r.getUserId(), r.getRevokedBefore()));
+            // Bloom filters cannot forget keys, so rebuild one sized for the surviving set
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedEntries, fresh.size() * 2), falsePositiveRate);
+            fresh.keySet().forEach(rebuilt::put);
+            revokedBefore.keySet().retainAll(fresh.keySet());
+            revokedBefore.putAll(fresh);
+            bloom = rebuilt;
+            refreshedAt = started;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.yatrasathi.security;
+
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.user.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, TTL-based cache of the principals resolved by {@link JwtAuthenticationFilter}, so that
+ * authenticated requests do not hit the users table on every call. Entries are keyed by the token
+ * subject (the user's email) and must be evicted whenever an admin changes a user's status or password.
+ */
+@Component
+public class UserPrincipalCache implements UserCache, StatsContributor {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Value("${security.user-cache.ttl-seconds:60}")
+    private long ttlSeconds;
+
+    @Value("${security.user-cache.max-size:10000}")
+    private int maxSize;
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        Entry entry = entries.get(username);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.nanoTime() - entry.expiresAt > 0) {
+            entries.remove(username, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.user;
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        if (entries.size() >= maxSize) {
+            makeRoom();
+        }
+        entries.put(user.getUsername(), new Entry(user, System.nanoTime() + ttlSeconds * 1_000_000_000L));
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        if (username != null && entries.remove(username) != null) {
+            evictions.increment();
+        }
+    }
+
+    public void evict(User user) {
+        removeUserFromCache(user.getEmail());
+    }
+
+    @Scheduled(fixedDelayString = "${security.user-cache.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.nanoTime();
+        entries.values().removeIf(e -> now - e.expiresAt > 0);
+    }
+
+    @Override
+    public String statsName() {
+        return "userPrincipalCache";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("size", entries.size());
+        data.put("hits", h);
+        data.put("misses", m);
+        data.put("hitRatio", h + m == 0 ? 0.0 : (double) h / (h + m));
+        data.put("evictions", evictions.sum());
+        return data;
+    }
+
+    private void makeRoom() {
+        purgeExpired();
+        // Still full: drop arbitrary entries; they are cheap to reload on the next request
+        Iterator<String> it = entries.keySet().iterator();
+        while (entries.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    // expiresAt is a System.nanoTime() reading, so compare by difference; the raw values may wrap
+    private record Entry(UserDetails user, long expiresAt) {
+    }
+}
@@ -0,0 +1,33 @@
+package com.yatrasathi.security;
+
+import java.time.Instant;
+
+/**
+ * Claims of a JWT whose signature and expiry have already been checked by {@link JwtService#verify(String)}.
+ */
+public final class VerifiedToken {
+    private final String subject;
+    private final String role;
+    private final Long userId;
+    private final Instant issuedAt;
+    private final Instant expiresAt;
+    // Null for session tokens; set on tokens that only open one endpoint (see JwtService#generateStreamToken)
+    private final String scope;
+
+    public VerifiedToken(String subject, String role, Long userId, Instant issuedAt, Instant expiresAt, String scope) {
+        this.subject = subject;
+        this.role = role;
+        this.userId = userId;
+        this.issuedAt = issuedAt;
+        this.expiresAt = expiresAt;
+        this.scope = scope;
+    }
+
+    // Getters
+    public String getSubject() { return subject; }
+    public String getRole() { return role; }
+    public Long getUserId() { return userId; }
+    public Instant getIssuedAt() { return issuedAt; }
+    public Instant getExpiresAt() { return expiresAt; }
+    public String getScope() { return scope; }
+}
@@ -0,0 +1,78 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * On MySQL, Hibernate creates the booking status columns as native ENUMs, and {@code ddl-auto=update} never
+ * alters a column that already exists. A schema created before a constant was added (CANCELLED, WAITLIST)
+ * therefore rejects it at runtime. On startup each such column missing one of the Java constants is widened
+ * to the full set; values the column already allows are kept, so existing rows stay valid.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+class BookingEnumColumns {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingEnumColumns.class);
+
+    private static final Map<String, Class<? extends Enum<?>>> COLUMNS = Map.of(
+            "status", TicketStatus.class,
+            "booking_status", BookingStatus.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    BookingEnumColumns(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void widen() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (!"MySQL".equalsIgnoreCase(product)) {
+            return;
+        }
+        jdbcTemplate.query("select column_name, column_type, is_nullable from information_schema.columns"
+                        + " where table_schema = database() and table_name = 'bookings' and data_type = 'enum'",
+                rs -> {
+                    String column = rs.getString(1).toLowerCase();
+                    Class<? extends Enum<?>> type = COLUMNS.get(column);
+                    if (type != null) {
+                        widen(column, rs.getString(2), "YES".equals(rs.getString(3)), type);
+                    }
+                });
+    }
+
+    private void widen(String column, String columnType, boolean nullable, Class<? extends Enum<?>> type) {
+        // column_type reads enum('A','B',...); the constants are plain identifiers, so no quote escaping to undo
+        Set<String> values = new LinkedHashSet<>();
+        String list = columnType.substring(columnType.indexOf('(') + 1, columnType.lastIndexOf(')'));
+        for (String value : list.split(",")) {
+            values.add(value.trim().replaceAll("^'|'$", ""));
+        }
+        List<String> missing = new ArrayList<>();
+        for (Enum<?> constant : type.getEnumConstants()) {
+            if (values.add(constant.name())) {
+                missing.add(constant.name());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        String widened = values.stream().map(v -> "'" + v + "'").collect(Collectors.joining(","));
+        jdbcTemplate.execute("alter table bookings modify column " + column + " enum(" + widened + ")" + (nullable ? " null" : " not null"));
+        log.info("Widened bookings.{} to accept {}", column, missing);
+    }
+}
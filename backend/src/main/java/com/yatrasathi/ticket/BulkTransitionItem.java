@@ -0,0 +1,30 @@
+package com.yatrasathi.ticket;
+
+import java.math.BigDecimal;
+
+/**
+ * One entry of a bulk approve / create-ticket / confirm call. Only the fields the transition needs are
+ * read: {@code count} for approve, {@code pnr} and {@code paymentAmount} for create-ticket. {@code version}
+ * is optional and works like the single-request {@code ?version=} parameter.
+ */
+public class BulkTransitionItem {
+    private Long id;
+    private Integer count;
+    private String pnr;
+    private BigDecimal paymentAmount;
+    private Long version;
+
+    // Getters
+    public Long getId() { return id; }
+    public Integer getCount() { return count; }
+    public String getPnr() { return pnr; }
+    public BigDecimal getPaymentAmount() { return paymentAmount; }
+    public Long getVersion() { return version; }
+
+    // Setters
+    public void setId(Long id) { this.id = id; }
+    public void setCount(Integer count) { this.count = count; }
+    public void setPnr(String pnr) { this.pnr = pnr; }
+    public void setPaymentAmount(BigDecimal paymentAmount) { this.paymentAmount = paymentAmount; }
+    public void setVersion(Long version) { this.version = version; }
+}
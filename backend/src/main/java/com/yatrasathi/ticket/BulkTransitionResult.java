@@ -0,0 +1,15 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk transition. {@code results} follows the order of the submitted items; for each id it
+ * gives the status and version the request had once the batch committed.
+ */
+public record BulkTransitionResult(TicketStatus targetStatus, int requested, int succeeded, int failed, List<Item> results) {
+
+    public record Item(Long id, boolean success, TicketStatus status, Long version, String error) {
+    }
+}
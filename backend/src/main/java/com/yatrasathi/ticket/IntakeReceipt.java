@@ -0,0 +1,22 @@
+package com.yatrasathi.ticket;
+
+/**
+ * Acknowledgement for a request submitted through the Tatkal intake. {@code intakeId} is the provisional
+ * id handed out on arrival; {@code bookingId} is filled in once the request has been written.
+ */
+public record IntakeReceipt(String intakeId, Status status, Long bookingId, String error) {
+
+    public enum Status { QUEUED, WRITTEN, FAILED }
+
+    static IntakeReceipt queued(String intakeId) {
+        return new IntakeReceipt(intakeId, Status.QUEUED, null, null);
+    }
+
+    static IntakeReceipt written(String intakeId, Long bookingId) {
+        return new IntakeReceipt(intakeId, Status.WRITTEN, bookingId, null);
+    }
+
+    static IntakeReceipt failed(String intakeId, String error) {
+        return new IntakeReceipt(intakeId, Status.FAILED, null, error);
+    }
+}
@@ -0,0 +1,41 @@
+package com.yatrasathi.ticket;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor over {@code (booking_date, booking_id)}: the position of the last row already returned.
+ * Rows without a booking date are legal and sort first (ascending order puts NULL first in MySQL and H2); a
+ * cursor on such a row carries an empty date, and {@link #undated()} tells the queries to continue among the
+ * undated rows before moving on to the dated ones.
+ */
+record QueueCursor(LocalDateTime bookingDate, Long id) {
+
+    static QueueCursor of(TicketSummary last) {
+        return new QueueCursor(last.bookingDate(), last.id());
+    }
+
+    boolean undated() {
+        return bookingDate == null;
+    }
+
+    String encode() {
+        String raw = (bookingDate == null ? "" : bookingDate.toString()) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static QueueCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int sep = raw.indexOf('|');
+            LocalDateTime bookingDate = sep == 0 ? null : LocalDateTime.parse(raw.substring(0, sep));
+            return new QueueCursor(bookingDate, Long.parseLong(raw.substring(sep + 1)));
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Plain JDBC for the bulk transition endpoints: the conditional updates go out as one JDBC batch instead
+ * of a JPQL statement per id, and run inside the caller's JPA transaction.
+ */
+@Repository
+class TicketBulkRepository {
+
+    private final NamedParameterJdbcTemplate jdbc;
+
+    TicketBulkRepository(NamedParameterJdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Sends the conditional updates as one batch. Drivers may answer {@code SUCCESS_NO_INFO} for batched rows,
+     * so the counts cannot tell a matched row from a missed one; callers read the rows back with
+     * {@link #states} and look for {@code changeVersion}, which only this batch stamps.
+     */
+    void transition(TicketStatus target, Set<TicketStatus> from, List<BulkTransitionItem> items, int[] reservedSeats, long changeVersion) {
+        // Enum names only, so inlining the source states is safe
+        String sources = from.stream().map(s -> "'" + s.name() + "'").collect(Collectors.joining(", "));
+        String assignments = switch (target) {
+            case APPROVED -> "approved_ticket_count = ?, reserved_seats = ?, booking_status = 'CONFIRMED', lease_expires_at = null, ";
+            case TICKET_CREATED -> "pnr = ?, payment_amount = ?, ";
+            default -> "";
+        };
+        // One batch is one transaction, so all of its rows share a change version
+        String sql = "update bookings set status = ?, " + assignments + "version = version + 1, change_version = ?"
+                + " where booking_id = ? and status in (" + sources + ") and version = coalesce(?, version)";
+        jdbc.getJdbcTemplate().batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                BulkTransitionItem item = items.get(i);
+                int p = 1;
+                ps.setString(p++, target.name());
+                if (target == TicketStatus.APPROVED) {
+                    ps.setInt(p++, item.getCount());
+                    ps.setInt(p++, reservedSeats[i]);
+                } else if (target == TicketStatus.TICKET_CREATED) {
+                    ps.setString(p++, item.getPnr());
+                    ps.setBigDecimal(p++, item.getPaymentAmount());
+                }
+                ps.setLong(p++, changeVersion);
+                ps.setLong(p++, item.getId());
+                if (item.getVersion() == null) {
+                    ps.setNull(p, Types.BIGINT);
+                } else {
+                    ps.setLong(p, item.getVersion());
+                }
+            }
+
+            @Override
+            public int getBatchSize() {
+                return items.size();
+            }
+        });
+    }
+
+    Map<Long, State> states(Collection<Long> ids) {
+        Map<Long, State> states = new HashMap<>();
+        if (ids.isEmpty()) {
+            return states;
+        }
+        jdbc.query("select booking_id, status, version, customer_id, change_version from bookings where booking_id in (:ids)",
+                Map.of("ids", ids), rs -> {
+                    states.put(rs.getLong(1), new State(TicketStatus.valueOf(rs.getString(2)), rs.getLong(3), rs.getLong(4),
+                            rs.getObject(5, Long.class)));
+                });
+        return states;
+    }
+
+    Map<Long, Trip> trips(Collection<Long> ids) {
+        Map<Long, Trip> trips = new HashMap<>();
+        if (ids.isEmpty()) {
+            return trips;
+        }
+        jdbc.query("select booking_id, status, train_id, travel_date, class from bookings where booking_id in (:ids)", Map.of("ids", ids),
+                rs -> {
+                    java.sql.Date travelDate = rs.getDate(4);
+                    trips.put(rs.getLong(1), new Trip(TicketStatus.valueOf(rs.getString(2)), rs.getObject(3, Long.class),
+                            travelDate == null ? null : travelDate.toLocalDate(), rs.getString(5)));
+                });
+        return trips;
+    }
+
+    /**
+     * Locks and returns every live request on the trip. Must run inside a transaction; the rows stay locked
+     * until it ends, so what is read here is exactly what {@link #cancel} then changes.
+     */
+    List<Booked> lockLiveOnTrip(Long trainId, LocalDate travelDate) {
+        List<Booked> rows = new ArrayList<>();
+        jdbc.query("select booking_id, status, booking_status, class, approved_ticket_count, customer_id, version, reserved_seats from bookings"
+                        + " where train_id = :trainId and travel_date = :travelDate and status <> 'CANCELLED' for update",
+                Map.of("trainId", trainId, "travelDate", java.sql.Date.valueOf(travelDate)),
+                rs -> {
+                    String bookingStatus = rs.getString(3);
+                    rows.add(new Booked(rs.getLong(1), TicketStatus.valueOf(rs.getString(2)),
+                            bookingStatus == null ? null : BookingStatus.valueOf(bookingStatus), rs.getString(4),
+                            rs.getInt(5), rs.getLong(6), rs.getLong(7), rs.getObject(8, Integer.class)));
+                });
+        return rows;
+    }
+
+    /** Cancels the given live requests in chunks of {@code chunkSize} ids per UPDATE; returns how many changed. */
+    int cancel(List<Long> ids, LocalDateTime cancelledOn, String reason, int refundPercent, long changeVersion, int chunkSize) {
+        int updated = 0;
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("ids", ids.subList(from, Math.min(ids.size(), from + chunkSize)));
+            params.put("cancelledOn", Timestamp.valueOf(cancelledOn));
+            params.put("reason", reason);
+            params.put("refundPercent", refundPercent);
+            params.put("changeVersion", changeVersion);
+            updated += jdbc.update("update bookings set status = 'CANCELLED', booking_status = 'CANCELLED', cancelled_on = :cancelledOn,"
+                    + " cancellation_reason = :reason, refund_percent = :refundPercent, refund_pending = true, reserved_seats = 0, lease_expires_at = null,"
+                    + " version = version + 1, change_version = :changeVersion where booking_id in (:ids) and status <> 'CANCELLED'", params);
+        }
+        return updated;
+    }
+
+    Set<String> existingPnrs(Collection<String> pnrs) {
+        if (pnrs.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(jdbc.queryForList("select pnr from bookings where pnr in (:pnrs)", Map.of("pnrs", pnrs), String.class));
+    }
+
+    record State(TicketStatus status, Long version, Long customerId, Long changeVersion) {
+
+        /** True if the row is in {@code target} because of the write stamped {@code changeVersion}. */
+        boolean movedBy(TicketStatus target, long changeVersion) {
+            return status == target && this.changeVersion != null && this.changeVersion == changeVersion;
+        }
+    }
+
+    record Trip(TicketStatus status, Long trainId, LocalDate travelDate, String travelClass) {
+    }
+
+    record Booked(Long id, TicketStatus status, BookingStatus bookingStatus, String travelClass, int approvedSeats,
+                  Long customerId, Long version, Integer reservedSeats) {
+    }
+}
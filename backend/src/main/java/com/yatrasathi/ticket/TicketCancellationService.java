@@ -0,0 +1,194 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.AfterCommit;
+import com.yatrasathi.common.AuditService;
+import com.yatrasathi.common.ChangeVersions;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.dashboard.DashboardCounters;
+import com.yatrasathi.inventory.BerthAllocator;
+import com.yatrasathi.inventory.SeatInventory;
+import com.yatrasathi.inventory.SeatKey;
+import com.yatrasathi.notification.QueueEvent;
+import com.yatrasathi.notification.QueueEventStream;
+import com.yatrasathi.passenger.PassengerIndex;
+import com.yatrasathi.payment.RefundService;
+import com.yatrasathi.payment.RefundSlabs;
+import com.yatrasathi.train.Train;
+import com.yatrasathi.train.TrainRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cancels ticket requests, one at a time or a whole train and travel date at once. Cancelling frees the
+ * request's seats (which lets the waitlist move up), takes it off the waitlist and fixes its refund
+ * percent; the refund itself is left to {@link RefundService}, which picks it up after commit.
+ */
+@Service
+public class TicketCancellationService {
+
+    // The railway cancelled the train, so whatever was paid goes back in full
+    private static final int TRAIN_CANCELLED_REFUND_PERCENT = 100;
+
+    private final TicketRequestRepository ticketRepo;
+    private final TicketBulkRepository bulkRepo;
+    private final TrainRepository trainRepo;
+    private final SeatInventory seatInventory;
+    private final WaitlistService waitlistService;
+    private final BerthAllocator berthAllocator;
+    private final PassengerIndex passengerIndex;
+    private final RefundSlabs refundSlabs;
+    private final RefundService refundService;
+    private final AuditService auditService;
+    private final DashboardCounters counters;
+    private final QueueEventStream events;
+    private final ChangeVersions changeVersions;
+
+    @Value("${tickets.cancel.chunk-size:1000}")
+    private int chunkSize;
+
+    public TicketCancellationService(TicketRequestRepository ticketRepo, TicketBulkRepository bulkRepo, TrainRepository trainRepo,
+                                     SeatInventory seatInventory, WaitlistService waitlistService, BerthAllocator berthAllocator,
+                                     PassengerIndex passengerIndex, RefundSlabs refundSlabs, RefundService refundService, AuditService auditService,
+                                     DashboardCounters counters, QueueEventStream events, ChangeVersions changeVersions) {
+        this.ticketRepo = ticketRepo;
+        this.bulkRepo = bulkRepo;
+        this.trainRepo = trainRepo;
+        this.seatInventory = seatInventory;
+        this.waitlistService = waitlistService;
+        this.berthAllocator = berthAllocator;
+        this.passengerIndex = passengerIndex;
+        this.refundSlabs = refundSlabs;
+        this.refundService = refundService;
+        this.auditService = auditService;
+        this.counters = counters;
+        this.events = events;
+        this.changeVersions = changeVersions;
+    }
+
+    /** Customers may only cancel their own requests; {@code staff} may cancel any. */
+    @Transactional
+    public TicketRequest cancel(Long requestId, Long actorId, boolean staff, String actor, String reason, Long expectedVersion) {
+        TicketRequest tr = ticketRepo.findById(requestId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Ticket request " + requestId + " not found"));
+        if (!staff && !tr.getCustomer().getId().equals(actorId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Ticket request " + requestId + " belongs to another customer");
+        }
+        TicketStatus from = tr.getStatus();
+        if (!TicketTransitions.isAllowed(from, TicketStatus.CANCELLED)
+                || (expectedVersion != null && !expectedVersion.equals(tr.getVersion()))) {
+            throw new TicketTransitionException(requestId, from, TicketStatus.CANCELLED, tr.getVersion(), expectedVersion);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int refundPercent = refundSlabs.percent(departure(tr.getTrainId(), tr.getTravelDate()), now);
+        if (ticketRepo.cancelIf(requestId, Set.of(from), tr.getVersion(), changeVersions.next(), now, reason, refundPercent) == 0) {
+            TicketRequest current = ticketRepo.findById(requestId).orElseThrow();
+            throw new TicketTransitionException(requestId, current.getStatus(), TicketStatus.CANCELLED, current.getVersion(), expectedVersion);
+        }
+        counters.ticketsMoved(Set.of(from), TicketStatus.CANCELLED, 1);
+        if (tr.getBookingStatus() == BookingStatus.WAITLIST) {
+            waitlistService.remove(List.of(requestId));
+        }
+        int seats = heldSeats(from, tr.getBookingStatus(), tr.getApprovedTicketCount(), tr.getReservedSeats());
+        SeatKey trip = SeatKey.of(tr.getTrainId(), tr.getTravelDate(), tr.getTravelClass());
+        seatInventory.release(trip, seats);
+        berthAllocator.releaseBooking(trip, requestId);
+        passengerIndex.removeBooking(requestId);
+        auditService.log(actor, "CANCEL_TICKET_REQUEST", "RequestId=" + requestId + ", seatsReleased=" + seats
+                + ", refundPercent=" + refundPercent + ", reason=" + reason);
+        AfterCommit.run(refundService::trigger);
+
+        TicketRequest cancelled = ticketRepo.findById(requestId).orElseThrow();
+        events.publish(QueueEvent.transitioned(requestId, cancelled.getCustomer().getId(), TicketStatus.CANCELLED, cancelled.getVersion()));
+        return cancelled;
+    }
+
+    /**
+     * Cancels every live request on the train and date (the train itself was cancelled). The rows are locked
+     * and read once, cancelled with a handful of chunked UPDATEs, and their seats released per class, so the
+     * cost grows with the number of rows read rather than with per-row round trips. Refunds are in full.
+     */
+    @Transactional
+    @PreAuthorize("hasRole('ADMIN')")
+    public TripCancellation cancelTrip(Long trainId, LocalDate travelDate, String reason, String actor) {
+        if (trainId == null || travelDate == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "trainId and date are required");
+        }
+        List<TicketBulkRepository.Booked> live = bulkRepo.lockLiveOnTrip(trainId, travelDate);
+        if (live.isEmpty()) {
+            return new TripCancellation(trainId, travelDate, 0, 0, TRAIN_CANCELLED_REFUND_PERCENT);
+        }
+        List<Long> ids = new ArrayList<>(live.size());
+        List<Long> waitlisted = new ArrayList<>();
+        Map<String, Integer> seatsByClass = new HashMap<>();
+        Map<TicketStatus, Integer> bySource = new EnumMap<>(TicketStatus.class);
+        for (TicketBulkRepository.Booked booked : live) {
+            ids.add(booked.id());
+            bySource.merge(booked.status(), 1, Integer::sum);
+            if (booked.bookingStatus() == BookingStatus.WAITLIST) {
+                waitlisted.add(booked.id());
+            }
+            int seats = heldSeats(booked.status(), booked.bookingStatus(), booked.approvedSeats(), booked.reservedSeats());
+            if (seats > 0 && booked.travelClass() != null) {
+                seatsByClass.merge(booked.travelClass(), seats, Integer::sum);
+            }
+        }
+
+        // The rows are locked, so every one of them is still live and this cancels all of them
+        int cancelled = bulkRepo.cancel(ids, LocalDateTime.now(), reason, TRAIN_CANCELLED_REFUND_PERCENT, changeVersions.next(), chunkSize);
+        bySource.forEach((status, count) -> counters.ticketsMoved(Set.of(status), TicketStatus.CANCELLED, count));
+        // Off the waitlist before the release below can wake the promoter for this trip
+        waitlistService.remove(waitlisted);
+        int seatsReleased = 0;
+        for (Map.Entry<String, Integer> entry : seatsByClass.entrySet()) {
+            seatInventory.release(trainId, travelDate, entry.getKey(), entry.getValue());
+            seatsReleased += entry.getValue();
+        }
+        berthAllocator.dropTrip(trainId, travelDate);
+        passengerIndex.removeTrip(trainId, travelDate);
+        for (TicketBulkRepository.Booked booked : live) {
+            events.publish(QueueEvent.transitioned(booked.id(), booked.customerId(), TicketStatus.CANCELLED, booked.version() + 1));
+        }
+        // One summary row; each request carries its own cancelled_on and reason
+        auditService.log(actor, "CANCEL_TRAIN", "TrainId=" + trainId + ", TravelDate=" + travelDate + ", cancelled=" + cancelled
+                + ", seatsReleased=" + seatsReleased + ", reason=" + reason);
+        AfterCommit.run(refundService::trigger);
+        return new TripCancellation(trainId, travelDate, cancelled, seatsReleased, TRAIN_CANCELLED_REFUND_PERCENT);
+    }
+
+    // Seats a request holds in SeatInventory, as recorded when it was approved. A booking approved while its trip had
+    // no quota recorded 0: it took nothing, so releasing its count would free seats other bookings hold. Rows approved
+    // before the count was recorded fall back to their approved count.
+    private static int heldSeats(TicketStatus status, BookingStatus bookingStatus, Integer approvedSeats, Integer reservedSeats) {
+        if (status == TicketStatus.PENDING || bookingStatus != BookingStatus.CONFIRMED) {
+            return 0;
+        }
+        if (reservedSeats != null) {
+            return reservedSeats;
+        }
+        return approvedSeats == null ? 0 : approvedSeats;
+    }
+
+    // Trains store a departure time of day; without one the start of the travel date is the safe side for slabs
+    private LocalDateTime departure(Long trainId, LocalDate travelDate) {
+        if (trainId == null) {
+            return travelDate.atStartOfDay();
+        }
+        return trainRepo.findById(trainId)
+                .map(Train::getDepartureTime)
+                .map(time -> travelDate.atTime(time.toLocalTime()))
+                .orElse(travelDate.atStartOfDay());
+    }
+}
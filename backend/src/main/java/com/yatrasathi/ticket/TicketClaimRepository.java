@@ -0,0 +1,131 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.ChangeVersions;
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC side of the work-claiming queue. A PENDING request is claimable while it has no employee, or while
+ * the lease of the employee who claimed it has run out. Requests assigned by hand carry no lease and are
+ * never handed out again.
+ *
+ * <p>On MySQL the candidates are locked with {@code FOR UPDATE SKIP LOCKED}, so concurrent claimers walk
+ * past each other's rows instead of queueing on them. Databases without it (H2) fall back to conditional
+ * updates that only succeed for rows nobody else took first.
+ */
+@Repository
+class TicketClaimRepository {
+
+    // Waitlisted requests stay PENDING but have nothing to work on until they are promoted
+    private static final String CLAIMABLE = "status = 'PENDING' and (booking_status is null or booking_status <> 'WAITLIST')"
+            + " and (employee_id is null or lease_expires_at < :now)";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final ChangeVersions changeVersions;
+    private boolean skipLocked;
+
+    TicketClaimRepository(NamedParameterJdbcTemplate jdbc, ChangeVersions changeVersions) {
+        this.jdbc = jdbc;
+        this.changeVersions = changeVersions;
+    }
+
+    @PostConstruct
+    void detectDatabase() {
+        String product = jdbc.getJdbcTemplate().execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        skipLocked = product != null && product.toLowerCase().contains("mysql");
+    }
+
+    /** Must run inside a transaction; returns the ids now leased to {@code employeeId}, oldest first. */
+    List<Long> claim(Long employeeId, int limit, LocalDateTime now, LocalDateTime leaseUntil) {
+        return skipLocked
+                ? claimSkipLocked(employeeId, limit, now, leaseUntil)
+                : claimConditionally(employeeId, limit, now, leaseUntil);
+    }
+
+    int release(Long bookingId, Long employeeId) {
+        return jdbc.update("update bookings set employee_id = null, lease_expires_at = null, change_version = :changeVersion"
+                        + " where booking_id = :id and employee_id = :employeeId and status = 'PENDING' and lease_expires_at is not null",
+                Map.of("id", bookingId, "employeeId", employeeId, "changeVersion", changeVersions.next()));
+    }
+
+    int releaseExpired(LocalDateTime now) {
+        // Look first so an idle sweep does not burn a change version (and invalidate every list ETag)
+        List<Long> ids = jdbc.queryForList("select booking_id from bookings where status = 'PENDING' and lease_expires_at < :now",
+                Map.of("now", Timestamp.valueOf(now)), Long.class);
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbc.update("update bookings set employee_id = null, lease_expires_at = null, change_version = :changeVersion"
+                        + " where booking_id in (:ids) and status = 'PENDING' and lease_expires_at < :now",
+                Map.of("ids", ids, "now", Timestamp.valueOf(now), "changeVersion", changeVersions.next()));
+    }
+
+    private List<Long> claimSkipLocked(Long employeeId, int limit, LocalDateTime now, LocalDateTime leaseUntil) {
+        List<Long> ids = jdbc.queryForList("select booking_id from bookings where " + CLAIMABLE
+                        + " order by booking_date, booking_id limit :limit for update skip locked",
+                Map.of("now", Timestamp.valueOf(now), "limit", limit), Long.class);
+        if (!ids.isEmpty()) {
+            // The rows are locked by this transaction, so the update cannot lose them to anyone else
+            jdbc.update("update bookings set employee_id = :employeeId, lease_expires_at = :until, version = version + 1,"
+                            + " change_version = :changeVersion where booking_id in (:ids)",
+                    Map.of("employeeId", employeeId, "until", Timestamp.valueOf(leaseUntil), "ids", ids,
+                            "changeVersion", changeVersions.next()));
+        }
+        return ids;
+    }
+
+    private List<Long> claimConditionally(Long employeeId, int limit, LocalDateTime now, LocalDateTime leaseUntil) {
+        List<Long> claimed = new ArrayList<>(limit);
+        Long afterId = null;
+        LocalDateTime afterDate = null;
+        Long changeVersion = null;
+        // A few rounds cover rows taken by racing claimers between our read and our update
+        for (int round = 0; round < 3 && claimed.size() < limit; round++) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("now", Timestamp.valueOf(now));
+            params.put("limit", limit - claimed.size());
+            String keyset = "";
+            if (afterId != null && afterDate == null) {
+                // After an undated row (those sort first): the remaining undated rows, then every dated one
+                keyset = " and ((booking_date is null and booking_id > :afterId) or booking_date is not null)";
+                params.put("afterId", afterId);
+            } else if (afterId != null) {
+                keyset = " and (booking_date > :afterDate or (booking_date = :afterDate and booking_id > :afterId))";
+                params.put("afterDate", Timestamp.valueOf(afterDate));
+                params.put("afterId", afterId);
+            }
+            List<Map<String, Object>> candidates = jdbc.queryForList("select booking_id, booking_date from bookings where "
+                    + CLAIMABLE + keyset + " order by booking_date, booking_id limit :limit", params);
+            if (candidates.isEmpty()) {
+                break;
+            }
+            if (changeVersion == null) {
+                changeVersion = changeVersions.next();
+            }
+            for (Map<String, Object> row : candidates) {
+                Long id = ((Number) row.get("booking_id")).longValue();
+                int updated = jdbc.update("update bookings set employee_id = :employeeId, lease_expires_at = :until, version = version + 1,"
+                                + " change_version = :changeVersion where booking_id = :id and " + CLAIMABLE,
+                        Map.of("employeeId", employeeId, "until", Timestamp.valueOf(leaseUntil), "id", id, "now", Timestamp.valueOf(now),
+                                "changeVersion", changeVersion));
+                if (updated == 1) {
+                    claimed.add(id);
+                }
+            }
+            Map<String, Object> last = candidates.get(candidates.size() - 1);
+            afterId = ((Number) last.get("booking_id")).longValue();
+            Timestamp lastDate = (Timestamp) last.get("booking_date");
+            afterDate = lastDate == null ? null : lastDate.toLocalDateTime();
+        }
+        return claimed;
+    }
+}
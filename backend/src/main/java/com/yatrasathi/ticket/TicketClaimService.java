@@ -0,0 +1,102 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.notification.QueueEvent;
+import com.yatrasathi.notification.QueueEventStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out pending requests to employees so that no two agents pick up the same one. Each claim leases
+ * the oldest unassigned requests to the caller for {@code tickets.claim.lease-seconds}; approving a
+ * request ends its lease, and requests that are not worked in time go back into the pool.
+ */
+@Service
+public class TicketClaimService implements StatsContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(TicketClaimService.class);
+
+    private final TicketClaimRepository claimRepo;
+    private final TicketRequestRepository ticketRepo;
+    private final QueueEventStream events;
+
+    private final LongAdder claimCalls = new LongAdder();
+    private final LongAdder claimed = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    @Value("${tickets.claim.lease-seconds:600}")
+    private long leaseSeconds;
+
+    @Value("${tickets.claim.max-batch:50}")
+    private int maxBatch;
+
+    public TicketClaimService(TicketClaimRepository claimRepo, TicketRequestRepository ticketRepo, QueueEventStream events) {
+        this.claimRepo = claimRepo;
+        this.ticketRepo = ticketRepo;
+        this.events = events;
+    }
+
+    @Transactional
+    public List<TicketSummary> claimNext(Long employeeId, int n) {
+        if (n < 1 || n > maxBatch) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Can claim between 1 and " + maxBatch + " requests at a time");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = claimRepo.claim(employeeId, n, now, now.plusSeconds(leaseSeconds));
+        claimCalls.increment();
+        claimed.add(ids.size());
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        List<TicketSummary> summaries = ticketRepo.findSummariesByIds(ids);
+        summaries.forEach(t -> events.publish(QueueEvent.assigned(t.id(), t.customerId(), employeeId)));
+        return summaries;
+    }
+
+    @Transactional
+    public void release(Long requestId, Long employeeId) {
+        if (claimRepo.release(requestId, employeeId) == 0) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ticket request " + requestId + " is not leased to you");
+        }
+        released.increment();
+    }
+
+    // Claims already skip expired leases; this only clears the stale employee so listings stay accurate
+    @Transactional
+    @Scheduled(fixedDelayString = "${tickets.claim.release-interval-ms:30000}")
+    public void releaseExpiredLeases() {
+        int count = claimRepo.releaseExpired(LocalDateTime.now());
+        if (count > 0) {
+            expired.add(count);
+            log.info("Released {} expired ticket request leases", count);
+        }
+    }
+
+    @Override
+    public String statsName() {
+        return "ticketClaims";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("claimCalls", claimCalls.sum());
+        data.put("claimed", claimed.sum());
+        data.put("released", released.sum());
+        data.put("expired", expired.sum());
+        return data;
+    }
+}
@@ -2,40 +2,77 @@ package com.yatrasathi.ticket;
 
 import jakarta.validation.Valid;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.security.Principal;
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.math.BigDecimal;
 
-import com.yatrasathi.user.User;
-import com.yatrasathi.user.UserRepository;
+import com.yatrasathi.common.ChangeFeed;
+import com.yatrasathi.common.ChangeVersions;
+import com.yatrasathi.common.CursorPage;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.security.CurrentUserId;
 
 @RestController
 @RequestMapping("/api/tickets")
 public class TicketController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final TicketService ticketService;
-    private final UserRepository userRepository;
+    private final TicketIntakeService intakeService;
+    private final ChangeVersions changeVersions;
+    private final WaitlistService waitlistService;
+    private final TicketCancellationService cancellationService;
 
-    public TicketController(TicketService ticketService, UserRepository userRepository) {
+    public TicketController(TicketService ticketService, TicketIntakeService intakeService, ChangeVersions changeVersions,
+                            WaitlistService waitlistService, TicketCancellationService cancellationService) {
         this.ticketService = ticketService;
-        this.userRepository = userRepository;
+        this.intakeService = intakeService;
+        this.changeVersions = changeVersions;
+        this.waitlistService = waitlistService;
+        this.cancellationService = cancellationService;
     }
 
     @PostMapping
     @PreAuthorize("hasRole('CUSTOMER')")
-    public ResponseEntity<TicketRequest> create(@Valid @RequestBody TicketRequest request, Principal principal) {
+    public ResponseEntity<TicketRequest> create(@Valid @RequestBody TicketRequestForm form, @CurrentUserId Long userId) {
         try {
-            return ResponseEntity.ok(ticketService.createRequest(getUserIdFromPrincipal(principal), request));
+            return ResponseEntity.ok(ticketService.createRequest(userId, form.toRequest()));
         } catch (Exception e) {
             throw new RuntimeException("Failed to create ticket request: " + e.getMessage());
         }
     }
 
+    @PostMapping("/intake")
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public CompletableFuture<ResponseEntity<IntakeReceipt>> intake(@Valid @RequestBody TicketRequestForm form,
+                                                                  @CurrentUserId Long userId, Authentication authentication) {
+        return intakeService.submit(userId, authentication.getName(), form.toRequest()).thenApply(receipt -> switch (receipt.status()) {
+            case QUEUED -> ResponseEntity.accepted().body(receipt);
+            case WRITTEN -> ResponseEntity.ok(receipt);
+            case FAILED -> ResponseEntity.unprocessableEntity().body(receipt);
+        });
+    }
+
+    @GetMapping("/intake/{intakeId}")
+    @PreAuthorize("hasRole('CUSTOMER')")
+    public ResponseEntity<IntakeReceipt> intakeReceipt(@PathVariable String intakeId, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(intakeService.receipt(intakeId, userId));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<TicketRequest> getTicket(@PathVariable Long id) {
         return ResponseEntity.ok(ticketService.getTicketById(id));
@@ -43,85 +80,249 @@ public class TicketController {
 
     @GetMapping("/my")
     @PreAuthorize("hasRole('CUSTOMER')")
-    public ResponseEntity<List<TicketRequest>> myRequests(Principal principal) {
-        return ResponseEntity.ok(ticketService.getMyRequests(getUserIdFromPrincipal(principal)));
+    public ResponseEntity<List<TicketSummary>> myRequests(@CurrentUserId Long userId, WebRequest webRequest) {
+        String etag = listEtag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
+        }
+        return listing(etag).body(ticketService.getMyRequests(userId));
+    }
+
+    /**
+     * Delta sync: requests created or changed after {@code since}/{@code afterId}, the position returned by
+     * the previous call (omit both on the first sync). Customers only see their own requests.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<ChangeFeed<TicketSummary>> changes(@RequestParam(required = false) Long since,
+                                                             @RequestParam(required = false) Long afterId,
+                                                             @RequestParam(required = false) Integer size,
+                                                             Authentication authentication, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(ticketService.changesSince(isStaff(authentication) ? null : userId, since, afterId, size));
     }
 
     @GetMapping("/pending")
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public ResponseEntity<List<TicketRequest>> pending() {
-        return ResponseEntity.ok(ticketService.getPending());
+    public ResponseEntity<List<TicketSummary>> pending(@RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size,
+                                                     WebRequest webRequest) {
+        String etag = listEtag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
+        }
+        return page(ticketService.getPending(cursor, size), etag);
     }
 
     @GetMapping("/approved")
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public ResponseEntity<List<TicketRequest>> approved() {
-        return ResponseEntity.ok(ticketService.getApproved());
+    public ResponseEntity<List<TicketSummary>> approved(@RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size,
+                                                     WebRequest webRequest) {
+        String etag = listEtag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
+        }
+        return page(ticketService.getApproved(cursor, size), etag);
     }
 
     @GetMapping("/ticket-created")
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public ResponseEntity<List<TicketRequest>> ticketCreated() {
-        return ResponseEntity.ok(ticketService.getTicketCreated());
+    public ResponseEntity<List<TicketSummary>> ticketCreated(@RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size,
+                                                     WebRequest webRequest) {
+        String etag = listEtag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
+        }
+        return page(ticketService.getTicketCreated(cursor, size), etag);
     }
 
     @GetMapping("/confirmed")
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public ResponseEntity<List<TicketRequest>> confirmed() {
-        return ResponseEntity.ok(ticketService.getConfirmed());
+    public ResponseEntity<List<TicketSummary>> confirmed(@RequestParam(required = false) String cursor, @RequestParam(required = false) Integer size,
+                                                     WebRequest webRequest) {
+        String etag = listEtag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
+        }
+        return page(ticketService.getConfirmed(cursor, size), etag);
     }
 
     @PostMapping("/{id}/approve")
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public ResponseEntity<TicketRequest> approve(@PathVariable Long id, @RequestParam int count) {
-        return ResponseEntity.ok(ticketService.approve(id, count));
+    public ResponseEntity<TicketRequest> approve(@PathVariable Long id, @RequestParam int count, @RequestParam(required = false) Long version,
+                                                 @RequestParam(defaultValue = "false") boolean waitlist) {
+        // With waitlist=true a sold-out trip puts the request on the waitlist instead of answering 409
+        return ResponseEntity.ok(ticketService.approve(id, count, version, waitlist));
+    }
+
+    @GetMapping("/waitlist")
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public ResponseEntity<List<WaitlistEntry>> waitlist(@RequestParam Long trainId,
+                                                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                                        @RequestParam String travelClass,
+                                                        @RequestParam(defaultValue = "100") int limit) {
+        return ResponseEntity.ok(waitlistService.entries(trainId, date, travelClass, Math.min(limit, 1000)));
+    }
+
+    @GetMapping("/{id}/waitlist")
+    public ResponseEntity<WaitlistPosition> waitlistPosition(@PathVariable Long id) {
+        WaitlistPosition position = waitlistService.position(id);
+        if (position == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ticket request " + id + " is not waitlisted");
+        }
+        return ResponseEntity.ok(position);
     }
 
     @PostMapping("/{id}/create-ticket")
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public ResponseEntity<TicketRequest> createTicket(@PathVariable Long id, @RequestParam String pnr, @RequestParam BigDecimal paymentAmount) {
-        return ResponseEntity.ok(ticketService.createTicket(id, pnr, paymentAmount));
+    public ResponseEntity<TicketRequest> createTicket(@PathVariable Long id, @RequestParam String pnr, @RequestParam BigDecimal paymentAmount,
+                                                      @RequestParam(required = false) Long version) {
+        return ResponseEntity.ok(ticketService.createTicket(id, pnr, paymentAmount, version));
     }
 
     @PostMapping("/{id}/confirm")
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public ResponseEntity<TicketRequest> confirm(@PathVariable Long id) {
-        return ResponseEntity.ok(ticketService.confirm(id));
+    public ResponseEntity<TicketRequest> confirm(@PathVariable Long id, @RequestParam(required = false) Long version) {
+        return ResponseEntity.ok(ticketService.confirm(id, version));
     }
 
-    @GetMapping("/by-date")
-    public ResponseEntity<List<TicketRequest>> byDate(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
-        return ResponseEntity.ok(ticketService.filter(date));
+    @PostMapping("/{id}/cancel")
+    public ResponseEntity<TicketRequest> cancel(@PathVariable Long id, @RequestParam(required = false) String reason,
+                                                @RequestParam(required = false) Long version,
+                                                Authentication authentication, @CurrentUserId Long userId) {
+        return ResponseEntity.ok(cancellationService.cancel(id, userId, isStaff(authentication), authentication.getName(),
+                blankToNull(reason), version));
     }
 
-    private Long getUserIdFromPrincipal(Principal principal) {
-        if (principal == null) return null;
-        String username = principal.getName();
-        User user = userRepository.findByEmail(username).orElseGet(() -> userRepository.findByPhone(username).orElseThrow());
-        return user.getId();
+    // For a train that is itself cancelled: every live request on it is cancelled and refunded in full
+    @PostMapping("/bulk/cancel-trip")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<TripCancellation> cancelTrip(@RequestParam Long trainId,
+                                                       @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                                       @RequestParam(defaultValue = "Train cancelled") String reason,
+                                                       Authentication authentication) {
+        return ResponseEntity.ok(cancellationService.cancelTrip(trainId, date, reason, authentication.getName()));
+    }
+
+    @PostMapping("/bulk/approve")
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public ResponseEntity<BulkTransitionResult> bulkApprove(@RequestBody List<BulkTransitionItem> items) {
+        return ResponseEntity.ok(ticketService.bulkTransition(TicketStatus.APPROVED, items));
+    }
+
+    @PostMapping("/bulk/create-ticket")
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public ResponseEntity<BulkTransitionResult> bulkCreateTicket(@RequestBody List<BulkTransitionItem> items) {
+        return ResponseEntity.ok(ticketService.bulkTransition(TicketStatus.TICKET_CREATED, items));
+    }
+
+    @PostMapping("/bulk/confirm")
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public ResponseEntity<BulkTransitionResult> bulkConfirm(@RequestBody List<BulkTransitionItem> items) {
+        return ResponseEntity.ok(ticketService.bulkTransition(TicketStatus.CONFIRMED, items));
+    }
+
+    @GetMapping("/by-date")
+    public ResponseEntity<List<TicketSummary>> byDate(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                                      WebRequest webRequest) {
+        String etag = listEtag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
+        }
+        return listing(etag).body(ticketService.filter(date));
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<TicketRequest>> search(
+    public ResponseEntity<List<TicketSummary>> search(
+            @RequestParam(required = false) String origin,
             @RequestParam(required = false) String destination,
             @RequestParam(required = false) String status,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long trainId,
+            @RequestParam(required = false) String travelClass,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            WebRequest webRequest
     ) {
-        // Simple demo: chain filters using repository methods
-        List<TicketRequest> list;
-        if (date != null) {
-            list = ticketService.filter(date);
-        } else {
-            list = ticketService.getPending();
-        }
-        if (destination != null) {
-            list = list.stream().filter(t -> destination.equalsIgnoreCase(t.getDestination())).toList();
+        String etag = listEtag();
+        if (webRequest.checkNotModified(etag)) {
+            return notModified();
         }
-        if (status != null) {
-            list = list.stream().filter(t -> t.getStatus().name().equalsIgnoreCase(status)).toList();
+        TicketSearchCriteria criteria = new TicketSearchCriteria();
+        criteria.setOrigin(blankToNull(origin));
+        criteria.setDestination(blankToNull(destination));
+        criteria.setStatus(parseStatus(blankToNull(status)));
+        // "date" is kept for existing callers and means a single-day range
+        criteria.setTravelDateFrom(date != null ? date : from);
+        criteria.setTravelDateTo(date != null ? date : to);
+        criteria.setTrainId(trainId);
+        criteria.setTravelClass(blankToNull(travelClass));
+        return page(ticketService.search(criteria, cursor, size), etag);
+    }
+
+    /**
+     * Listings only change when some request, or a user whose name or phone they show, does. Both tables take
+     * their change versions from the same sequence, so the stable change version is a valid validator for all
+     * of them. It is read before the query runs: a write racing the query at worst makes the next revalidation
+     * return 200 again, never a stale 304.
+     */
+    private String listEtag() {
+        return "W/\"tickets-" + changeVersions.stable() + "\"";
+    }
+
+    /**
+     * A 200 carrying the list ETag. Without an explicit Cache-Control, Spring Security adds no-store and browsers
+     * never revalidate; no-cache lets them keep the body and send If-None-Match. The validator is global while
+     * bodies differ per caller (/my, staff-only queues), so private caches only, keyed on the token.
+     */
+    private static ResponseEntity.BodyBuilder listing(String etag) {
+        return cacheable(ResponseEntity.ok()).eTag(etag);
+    }
+
+    // A 304 repeats the caching headers the 200 would have carried; checkNotModified has already set the ETag
+    private static <T> ResponseEntity<T> notModified() {
+        return cacheable(ResponseEntity.status(HttpStatus.NOT_MODIFIED)).build();
+    }
+
+    private static ResponseEntity.BodyBuilder cacheable(ResponseEntity.BodyBuilder builder) {
+        return builder.cacheControl(CacheControl.noCache().cachePrivate()).varyBy(HttpHeaders.AUTHORIZATION);
+    }
+
+    private static boolean isStaff(Authentication authentication) {
+        return authentication.getAuthorities().stream()
+                .anyMatch(a -> a.getAuthority().equals("ROLE_EMPLOYEE") || a.getAuthority().equals("ROLE_ADMIN"));
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static TicketStatus parseStatus(String status) {
+        if (status == null) return null;
+        try {
+            return TicketStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown status: " + status);
         }
-        return ResponseEntity.ok(list);
     }
-}
 
+    @ExceptionHandler(TicketTransitionException.class)
+    public ResponseEntity<Map<String, Object>> transitionConflict(TicketTransitionException e) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", HttpStatus.CONFLICT.value());
+        body.put("error", e.getMessage());
+        body.put("ticketId", e.getTicketId());
+        body.put("currentStatus", e.getCurrentStatus());
+        body.put("targetStatus", e.getTargetStatus());
+        body.put("currentVersion", e.getCurrentVersion());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
 
+    // The body stays a plain list for existing clients; the cursor for the next page travels in a header
+    private <T> ResponseEntity<List<T>> page(CursorPage<T> page, String etag) {
+        ResponseEntity.BodyBuilder builder = listing(etag);
+        if (page.getNextCursor() != null) {
+            builder.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return builder.body(page.getItems());
+    }
+}
@@ -0,0 +1,287 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Tatkal intake mode. While open, new ticket requests are validated, given a provisional intake id and
+ * parked in a bounded queue; a single writer thread drains the queue and inserts the requests in
+ * batches. When the queue is full further requests are refused with 429 instead of piling up.
+ *
+ * <p>{@code tickets.intake.durability} decides when the customer is answered: {@code COMMIT} waits for
+ * the batch holding the request to commit and returns the real booking id, {@code MEMORY} answers as
+ * soon as the request is queued, so requests still in the queue are lost if the instance dies. Either
+ * way the outcome can be polled by intake id for {@code tickets.intake.receipt-ttl-seconds}.
+ *
+ * <p>On shutdown the gate closes first and everything already queued is written before the bean goes
+ * away. A submit checks the gate and enqueues under the read side of {@code gate}; closing takes the
+ * write side, so no request can slip into the queue after the final drain.
+ */
+@Service
+public class TicketIntakeService implements StatsContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(TicketIntakeService.class);
+
+    public enum Durability { MEMORY, COMMIT }
+
+    private final TicketService ticketService;
+    private final TicketIntakeWriter writer;
+    private final BlockingQueue<Item> queue;
+    private final Map<String, Receipt> receipts = new ConcurrentHashMap<>();
+    private final Durability durability;
+    private final int batchSize;
+    private final long pollMillis;
+    private final long receiptTtlNanos;
+    private final long shutdownTimeoutMillis;
+    private final ReentrantReadWriteLock gate = new ReentrantReadWriteLock();
+    private volatile boolean open;
+    private volatile boolean running;
+    private Thread writerThread;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder lagNanos = new LongAdder();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private volatile long lastLagNanos;
+
+    public TicketIntakeService(TicketService ticketService, TicketIntakeWriter writer,
+                               @Value("${tickets.intake.enabled:false}") boolean open,
+                               @Value("${tickets.intake.durability:COMMIT}") Durability durability,
+                               @Value("${tickets.intake.queue-capacity:10000}") int queueCapacity,
+                               @Value("${tickets.intake.batch-size:50}") int batchSize,
+                               @Value("${tickets.intake.poll-interval-ms:20}") long pollMillis,
+                               @Value("${tickets.intake.receipt-ttl-seconds:900}") long receiptTtlSeconds,
+                               @Value("${tickets.intake.shutdown-timeout-seconds:60}") long shutdownTimeoutSeconds) {
+        this.ticketService = ticketService;
+        this.writer = writer;
+        this.open = open;
+        this.durability = durability;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.pollMillis = pollMillis;
+        this.receiptTtlNanos = TimeUnit.SECONDS.toNanos(receiptTtlSeconds);
+        this.shutdownTimeoutMillis = TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        writerThread = new Thread(this::drainLoop, "ticket-intake-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    // Stop taking new work, then make sure whatever is already queued gets written
+    @PreDestroy
+    void stop() throws InterruptedException {
+        gate.writeLock().lock();
+        try {
+            open = false;
+            running = false;
+        } finally {
+            gate.writeLock().unlock();
+        }
+        writerThread.join(shutdownTimeoutMillis);
+        if (writerThread.isAlive()) {
+            log.error("Ticket intake writer still busy after {} ms; {} queued requests may be lost", shutdownTimeoutMillis, queue.size());
+            return;
+        }
+        // The writer only leaves early when interrupted; finish its work here
+        List<Item> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            try {
+                flush(batch);
+            } catch (RuntimeException e) {
+                log.error("Ticket intake writer failed on a batch of {}", batch.size(), e);
+                batch.forEach(item -> complete(item, IntakeReceipt.failed(item.intakeId(), "Could not save request")));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public void setOpen(boolean open) {
+        gate.writeLock().lock();
+        try {
+            // Once stopping, the queue is being drained for the last time
+            this.open = open && running;
+        } finally {
+            gate.writeLock().unlock();
+        }
+    }
+
+    public CompletableFuture<IntakeReceipt> submit(Long customerId, String actor, TicketRequest request) {
+        String intakeId = UUID.randomUUID().toString();
+        gate.readLock().lock();
+        try {
+            if (open) {
+                return enqueue(intakeId, customerId, actor, request);
+            }
+        } finally {
+            gate.readLock().unlock();
+        }
+        // Outside the Tatkal window requests take the regular synchronous path
+        TicketRequest saved = ticketService.createRequest(customerId, request);
+        IntakeReceipt receipt = IntakeReceipt.written(intakeId, saved.getId());
+        receipts.put(intakeId, new Receipt(customerId, receipt, System.nanoTime()));
+        return CompletableFuture.completedFuture(receipt);
+    }
+
+    public IntakeReceipt receipt(String intakeId, Long customerId) {
+        Receipt receipt = receipts.get(intakeId);
+        if (receipt == null || !receipt.customerId().equals(customerId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown intake id");
+        }
+        return receipt.receipt();
+    }
+
+    @Scheduled(fixedDelayString = "${tickets.intake.receipt-purge-interval-ms:60000}")
+    public void purgeReceipts() {
+        long cutoff = System.nanoTime() - receiptTtlNanos;
+        receipts.values().removeIf(r -> r.receipt().status() != IntakeReceipt.Status.QUEUED && r.updatedAt() < cutoff);
+    }
+
+    @Override
+    public String statsName() {
+        return "ticketIntake";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long done = written.sum() + failed.sum();
+        long batchCount = batches.sum();
+        Item oldest = queue.peek();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("open", open);
+        data.put("durability", durability.name());
+        data.put("queued", queue.size());
+        data.put("oldestQueuedMs", oldest == null ? 0.0 : (System.nanoTime() - oldest.enqueuedAt()) / 1e6);
+        data.put("accepted", accepted.sum());
+        data.put("rejected", rejected.sum());
+        data.put("written", written.sum());
+        data.put("failed", failed.sum());
+        data.put("batches", batchCount);
+        data.put("avgBatchSize", batchCount == 0 ? 0.0 : (double) done / batchCount);
+        data.put("avgLagMs", done == 0 ? 0.0 : lagNanos.sum() / 1e6 / done);
+        data.put("lastLagMs", lastLagNanos / 1e6);
+        data.put("maxLagMs", maxLagNanos.get() / 1e6);
+        return data;
+    }
+
+    // Caller holds the read side of the gate, so the final drain cannot run before this offer lands
+    private CompletableFuture<IntakeReceipt> enqueue(String intakeId, Long customerId, String actor, TicketRequest request) {
+        request.setId(null);
+        request.setStatus(TicketStatus.PENDING);
+        if (request.getPassengerCount() == null || request.getPassengerCount() < 1) {
+            request.setPassengerCount(1);
+        }
+        Item item = new Item(intakeId, customerId, actor, request, System.nanoTime(), new CompletableFuture<>());
+        receipts.put(intakeId, new Receipt(customerId, IntakeReceipt.queued(intakeId), item.enqueuedAt()));
+        if (!queue.offer(item)) {
+            receipts.remove(intakeId);
+            rejected.increment();
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Booking intake is full, please retry shortly");
+        }
+        accepted.increment();
+        return durability == Durability.COMMIT ? item.result() : CompletableFuture.completedFuture(IntakeReceipt.queued(intakeId));
+    }
+
+    private void drainLoop() {
+        List<Item> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Item first = queue.poll(pollMillis, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Ticket intake writer failed on a batch of {}", batch.size(), e);
+                batch.forEach(item -> complete(item, IntakeReceipt.failed(item.intakeId(), "Could not save request")));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Item> batch) {
+        batches.increment();
+        try {
+            writer.write(batch);
+            batch.forEach(item -> complete(item, IntakeReceipt.written(item.intakeId(), item.request().getId())));
+        } catch (RuntimeException e) {
+            // One bad row (e.g. a duplicate PNR) rolls back the whole batch; retry row by row so only it fails
+            for (Item item : batch) {
+                item.request().setId(null);
+                try {
+                    writer.write(List.of(item));
+                    complete(item, IntakeReceipt.written(item.intakeId(), item.request().getId()));
+                } catch (RuntimeException rowError) {
+                    log.warn("Ticket intake {} rejected: {}", item.intakeId(), rootMessage(rowError));
+                    item.request().setId(null);
+                    complete(item, IntakeReceipt.failed(item.intakeId(), "Could not save request"));
+                }
+            }
+        }
+    }
+
+    private void complete(Item item, IntakeReceipt receipt) {
+        long now = System.nanoTime();
+        long lag = now - item.enqueuedAt();
+        (receipt.status() == IntakeReceipt.Status.WRITTEN ? written : failed).increment();
+        lagNanos.add(lag);
+        lastLagNanos = lag;
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        receipts.put(item.intakeId(), new Receipt(item.customerId(), receipt, now));
+        item.result().complete(receipt);
+    }
+
+    private static String rootMessage(Throwable t) {
+        while (t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t.getMessage();
+    }
+
+    record Item(String intakeId, Long customerId, String actor, TicketRequest request, long enqueuedAt,
+                CompletableFuture<IntakeReceipt> result) {
+    }
+
+    private record Receipt(Long customerId, IntakeReceipt receipt, long updatedAt) {
+    }
+}
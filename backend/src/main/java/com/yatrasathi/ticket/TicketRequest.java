@@ -1,5 +1,8 @@
 package com.yatrasathi.ticket;
 
+import com.yatrasathi.common.ChangeTracked;
+import com.yatrasathi.common.ChangeVersionListener;
+import com.yatrasathi.common.PooledIds;
 import com.yatrasathi.common.TicketEnums.TicketStatus;
 import com.yatrasathi.common.TicketEnums.TravelClass;
 import com.yatrasathi.employee.Employee;
@@ -15,10 +18,22 @@ import java.math.BigDecimal;
 
 @NoArgsConstructor
 @Entity
-@Table(name = "bookings")
-public class TicketRequest {
+@Table(name = "bookings", indexes = {
+        @Index(name = "idx_bookings_status_booking_date", columnList = "status, booking_date, booking_id"),
+        @Index(name = "idx_bookings_route_travel_date", columnList = "origin, destination, travel_date"),
+        @Index(name = "idx_bookings_destination_travel_date", columnList = "destination, travel_date"),
+        @Index(name = "idx_bookings_train_travel_date_class", columnList = "train_id, travel_date, class"),
+        @Index(name = "idx_bookings_travel_date_status", columnList = "travel_date, status"),
+        @Index(name = "idx_bookings_change_version", columnList = "change_version, booking_id"),
+        @Index(name = "idx_bookings_refund_pending", columnList = "refund_pending, booking_id")
+})
+@EntityListeners(ChangeVersionListener.class)
+public class TicketRequest implements ChangeTracked {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "booking_ids")
+    @TableGenerator(name = "booking_ids", table = PooledIds.TABLE, pkColumnName = PooledIds.NAME_COLUMN,
+            valueColumnName = PooledIds.VALUE_COLUMN, pkColumnValue = PooledIds.BOOKINGS,
+            allocationSize = PooledIds.ALLOCATION_SIZE)
     @Column(name = "booking_id")
     private Long id;
 
@@ -67,6 +82,20 @@ public class TicketRequest {
     @Column(name = "status")
     private TicketStatus status = TicketStatus.PENDING;
 
+    // Seat state: WAITLIST while the request waits for seats, CONFIRMED once its seats are held; null before either
+    @Enumerated(EnumType.STRING)
+    @Column(name = "booking_status")
+    private BookingStatus bookingStatus;
+
+    // Seats asked for when the request was waitlisted; promotion approves this many
+    @Column(name = "waitlist_seats")
+    private Integer waitlistSeats;
+
+    // Seats actually taken from SeatInventory at approval (0 when the trip had no quota then); cancelling gives back
+    // exactly these. Null on rows approved before this was recorded
+    @Column(name = "reserved_seats")
+    private Integer reservedSeats;
+
     @Column(name = "total_tickets")
     private Integer passengerCount = 1;
     
@@ -76,6 +105,26 @@ public class TicketRequest {
     @Column(name = "cancellation_reason")
     private String cancellationReason;
 
+    // Share of the amount paid that is refunded, fixed by the refund slab in force when the request was cancelled
+    @Column(name = "refund_percent")
+    private Integer refundPercent;
+
+    // True from cancellation until the refund stage has created the refund payment (or found nothing to refund)
+    @Column(name = "refund_pending")
+    private Boolean refundPending;
+
+    // Set while an employee holds the request through claimNext; once it passes the request can be claimed again
+    @Column(name = "lease_expires_at")
+    private LocalDateTime leaseExpiresAt;
+
+    // Bumped by every status transition; clients may send it back to make a transition conditional on it
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+
+    @Column(name = "change_version")
+    private Long changeVersion;
+
     // Getters
     public Long getId() { return id; }
     public User getCustomer() { return customer; }
@@ -90,9 +139,17 @@ public class TicketRequest {
     public LocalDateTime getBookingDate() { return bookingDate; }
     public String getTravelClass() { return travelClass; }
     public TicketStatus getStatus() { return status; }
+    public BookingStatus getBookingStatus() { return bookingStatus; }
+    public Integer getWaitlistSeats() { return waitlistSeats; }
+    public Integer getReservedSeats() { return reservedSeats; }
     public Integer getPassengerCount() { return passengerCount; }
     public LocalDateTime getCancelledOn() { return cancelledOn; }
     public String getCancellationReason() { return cancellationReason; }
+    public Integer getRefundPercent() { return refundPercent; }
+    public Boolean getRefundPending() { return refundPending; }
+    public LocalDateTime getLeaseExpiresAt() { return leaseExpiresAt; }
+    public Long getVersion() { return version; }
+    public Long getChangeVersion() { return changeVersion; }
 
     // Setters
     public void setId(Long id) { this.id = id; }
@@ -108,9 +165,17 @@ public class TicketRequest {
     public void setBookingDate(LocalDateTime bookingDate) { this.bookingDate = bookingDate; }
     public void setTravelClass(String travelClass) { this.travelClass = travelClass; }
     public void setStatus(TicketStatus status) { this.status = status; }
+    public void setBookingStatus(BookingStatus bookingStatus) { this.bookingStatus = bookingStatus; }
+    public void setWaitlistSeats(Integer waitlistSeats) { this.waitlistSeats = waitlistSeats; }
+    public void setReservedSeats(Integer reservedSeats) { this.reservedSeats = reservedSeats; }
     public void setPassengerCount(Integer passengerCount) { this.passengerCount = passengerCount; }
     public void setCancelledOn(LocalDateTime cancelledOn) { this.cancelledOn = cancelledOn; }
     public void setCancellationReason(String cancellationReason) { this.cancellationReason = cancellationReason; }
+    public void setRefundPercent(Integer refundPercent) { this.refundPercent = refundPercent; }
+    public void setRefundPending(Boolean refundPending) { this.refundPending = refundPending; }
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) { this.leaseExpiresAt = leaseExpiresAt; }
+    public void setVersion(Long version) { this.version = version; }
+    public void setChangeVersion(Long changeVersion) { this.changeVersion = changeVersion; }
 }
 
 
@@ -0,0 +1,58 @@
+package com.yatrasathi.ticket;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDate;
+
+/**
+ * What a customer sends to raise a ticket request. Only these fields come from the client; status, seats,
+ * refund state, version and the rest of {@link TicketRequest} are always set by the server.
+ */
+public class TicketRequestForm {
+    private Long trainId;
+
+    private String origin;
+
+    private String destination;
+
+    @NotNull
+    private LocalDate travelDate;
+
+    private String travelClass;
+
+    private Integer passengerCount;
+
+    @NotBlank
+    private String assignedPnr;
+
+    public TicketRequest toRequest() {
+        TicketRequest request = new TicketRequest();
+        request.setTrainId(trainId);
+        request.setOrigin(origin);
+        request.setDestination(destination);
+        request.setTravelDate(travelDate);
+        request.setTravelClass(travelClass);
+        request.setPassengerCount(passengerCount);
+        request.setAssignedPnr(assignedPnr);
+        return request;
+    }
+
+    // Getters
+    public Long getTrainId() { return trainId; }
+    public String getOrigin() { return origin; }
+    public String getDestination() { return destination; }
+    public LocalDate getTravelDate() { return travelDate; }
+    public String getTravelClass() { return travelClass; }
+    public Integer getPassengerCount() { return passengerCount; }
+    public String getAssignedPnr() { return assignedPnr; }
+
+    // Setters
+    public void setTrainId(Long trainId) { this.trainId = trainId; }
+    public void setOrigin(String origin) { this.origin = origin; }
+    public void setDestination(String destination) { this.destination = destination; }
+    public void setTravelDate(LocalDate travelDate) { this.travelDate = travelDate; }
+    public void setTravelClass(String travelClass) { this.travelClass = travelClass; }
+    public void setPassengerCount(Integer passengerCount) { this.passengerCount = passengerCount; }
+    public void setAssignedPnr(String assignedPnr) { this.assignedPnr = assignedPnr; }
+}
@@ -3,16 +3,145 @@ package com.yatrasathi.ticket;
 import com.yatrasathi.common.TicketEnums.TicketStatus;
 import com.yatrasathi.user.User;
 import com.yatrasathi.employee.Employee;
+import org.springframework.data.domain.Pageable;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+
+public interface TicketRequestRepository extends JpaRepository<TicketRequest, Long>, TicketSearchRepository {
+    String SUMMARY_SELECT = "select new com.yatrasathi.ticket.TicketSummary("
+            + "t.id, c.id, c.name, c.phone, e.id, e.name, t.trainId, t.origin, t.destination, t.travelDate,"
+            + " t.bookingDate, t.travelClass, t.status, t.bookingStatus, t.passengerCount, t.approvedTicketCount, t.assignedPnr, t.paymentAmount, t.changeVersion)"
+            + " from TicketRequest t join t.customer c left join t.employee e";
 
-public interface TicketRequestRepository extends JpaRepository<TicketRequest, Long> {
     List<TicketRequest> findByCustomer(User customer);
     List<TicketRequest> findByStatus(TicketStatus status);
     List<TicketRequest> findByTravelDate(LocalDate date);
     List<TicketRequest> findByEmployee(User employee);
+
+    // Holds the booking row until the transaction ends, so a cancellation cannot commit in between
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select t from TicketRequest t where t.id = :id")
+    Optional<TicketRequest> findByIdForUpdate(Long id);
+
+    // Keyset pagination over idx_bookings_status_booking_date; pass PageRequest.of(0, size) as the limit. The
+    // order names the whole index (status is fixed anyway) so planners that do not drop constant columns
+    // from it still read the index in order instead of sorting every row of the status
+    @Query(SUMMARY_SELECT + " where t.status = :status order by t.status, t.bookingDate, t.id")
+    List<TicketSummary> findQueueFirstPage(TicketStatus status, Pageable limit);
+
+    // bookingDate >= :afterDate repeats what the OR implies so the index range starts at the cursor
+    @Query(SUMMARY_SELECT + " where t.status = :status and t.bookingDate >= :afterDate"
+            + " and (t.bookingDate > :afterDate or (t.bookingDate = :afterDate and t.id > :afterId))"
+            + " order by t.status, t.bookingDate, t.id")
+    List<TicketSummary> findQueuePageAfter(TicketStatus status, LocalDateTime afterDate, Long afterId, Pageable limit);
+
+    // Continues from a row without a booking date: the remaining undated rows, then every dated one
+    @Query(SUMMARY_SELECT + " where t.status = :status"
+            + " and ((t.bookingDate is null and t.id > :afterId) or t.bookingDate is not null)"
+            + " order by t.status, t.bookingDate, t.id")
+    List<TicketSummary> findQueuePageAfterUndated(TicketStatus status, Long afterId, Pageable limit);
+
+    @Query(SUMMARY_SELECT + " where c.id = :customerId order by t.bookingDate desc, t.id desc")
+    List<TicketSummary> findSummariesByCustomerId(Long customerId);
+
+    @Query(SUMMARY_SELECT + " where e.id = :employeeId order by t.bookingDate, t.id")
+    List<TicketSummary> findSummariesByEmployeeId(Long employeeId);
+
+    @Query(SUMMARY_SELECT + " where t.travelDate = :travelDate order by t.bookingDate, t.id")
+    List<TicketSummary> findSummariesByTravelDate(LocalDate travelDate);
+
+    @Query(SUMMARY_SELECT + " where t.id in :ids order by t.bookingDate, t.id")
+    List<TicketSummary> findSummariesByIds(Collection<Long> ids);
+
+    // Delta sync over idx_bookings_change_version; :stable caps the read at versions whose writers have all finished
+    @Query(SUMMARY_SELECT + " where t.changeVersion <= :stable"
+            + " and (t.changeVersion > :since or (t.changeVersion = :since and t.id > :afterId))"
+            + " order by t.changeVersion, t.id")
+    List<TicketSummary> findChangedSince(long since, long afterId, long stable, Pageable limit);
+
+    @Query(SUMMARY_SELECT + " where c.id = :customerId and t.changeVersion <= :stable"
+            + " and (t.changeVersion > :since or (t.changeVersion = :since and t.id > :afterId))"
+            + " order by t.changeVersion, t.id")
+    List<TicketSummary> findChangedSinceForCustomer(Long customerId, long since, long afterId, long stable, Pageable limit);
+
+    // Which of the ids exist (or belong to the customer), for batch reads keyed by ticket id
+    @Query("select t.id from TicketRequest t where t.id in :ids")
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    @Query("select t.id from TicketRequest t where t.id in :ids and t.customer.id = :customerId")
+    List<Long> findIdsOwnedBy(Collection<Long> ids, Long customerId);
+
+    long countByStatus(TicketStatus status);
+
+    @Query("select t.status, count(t) from TicketRequest t group by t.status")
+    List<Object[]> countGroupedByStatus();
+
+    // Conditional transitions: each returns 1 only if the row was still in one of the source states (and at
+    // the expected version, when one is given), so a concurrent move by someone else makes it return 0
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update TicketRequest t set t.status = com.yatrasathi.common.TicketEnums.TicketStatus.APPROVED,"
+            + " t.approvedTicketCount = :count, t.reservedSeats = :reserved, t.bookingStatus = com.yatrasathi.ticket.BookingStatus.CONFIRMED,"
+            + " t.leaseExpiresAt = null, t.version = t.version + 1, t.changeVersion = :changeVersion"
+            + " where t.id = :id and t.status in :from and (:version is null or t.version = :version)")
+    int approveIf(Long id, Collection<TicketStatus> from, Long version, long changeVersion, int count, int reserved);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update TicketRequest t set t.status = com.yatrasathi.common.TicketEnums.TicketStatus.TICKET_CREATED,"
+            + " t.assignedPnr = :pnr, t.paymentAmount = :paymentAmount, t.version = t.version + 1, t.changeVersion = :changeVersion"
+            + " where t.id = :id and t.status in :from and (:version is null or t.version = :version)")
+    int createTicketIf(Long id, Collection<TicketStatus> from, Long version, long changeVersion, String pnr, BigDecimal paymentAmount);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update TicketRequest t set t.status = com.yatrasathi.common.TicketEnums.TicketStatus.CONFIRMED,"
+            + " t.version = t.version + 1, t.changeVersion = :changeVersion"
+            + " where t.id = :id and t.status in :from and (:version is null or t.version = :version)")
+    int confirmIf(Long id, Collection<TicketStatus> from, Long version, long changeVersion);
+
+    // Pinned to the version the caller read, so the seats it releases are exactly the ones this row held
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update TicketRequest t set t.status = com.yatrasathi.common.TicketEnums.TicketStatus.CANCELLED,"
+            + " t.bookingStatus = com.yatrasathi.ticket.BookingStatus.CANCELLED, t.cancelledOn = :cancelledOn,"
+            + " t.cancellationReason = :reason, t.refundPercent = :refundPercent, t.refundPending = true, t.reservedSeats = 0,"
+            + " t.leaseExpiresAt = null, t.version = t.version + 1, t.changeVersion = :changeVersion"
+            + " where t.id = :id and t.status in :from and t.version = :version")
+    int cancelIf(Long id, Collection<TicketStatus> from, long version, long changeVersion, LocalDateTime cancelledOn,
+                 String reason, int refundPercent);
+
+    // Waitlisting keeps the request PENDING; it is released from any employee lease since nobody can act on it
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update TicketRequest t set t.bookingStatus = com.yatrasathi.ticket.BookingStatus.WAITLIST, t.waitlistSeats = :seats,"
+            + " t.employee = null, t.leaseExpiresAt = null, t.version = t.version + 1, t.changeVersion = :changeVersion"
+            + " where t.id = :id and t.status in :from and (:version is null or t.version = :version)")
+    int waitlistIf(Long id, Collection<TicketStatus> from, Long version, long changeVersion, int seats);
+
+    // Promotes a batch of waitlisted requests whose seats the caller already reserved; rows that left the
+    // waitlist meanwhile do not match and are told apart by their change version
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update TicketRequest t set t.status = com.yatrasathi.common.TicketEnums.TicketStatus.APPROVED,"
+            + " t.approvedTicketCount = t.waitlistSeats, t.bookingStatus = com.yatrasathi.ticket.BookingStatus.CONFIRMED,"
+            + " t.reservedSeats = case when :seatsHeld = true then t.waitlistSeats else 0 end,"
+            + " t.version = t.version + 1, t.changeVersion = :changeVersion"
+            + " where t.id in :ids and t.status = com.yatrasathi.common.TicketEnums.TicketStatus.PENDING"
+            + " and t.bookingStatus = com.yatrasathi.ticket.BookingStatus.WAITLIST")
+    int promoteWaitlisted(Collection<Long> ids, long changeVersion, boolean seatsHeld);
+
+    @Query("select t.id, t.customer.id, t.version from TicketRequest t where t.id in :ids and t.changeVersion = :changeVersion")
+    List<Object[]> findPromoted(Collection<Long> ids, long changeVersion);
+
+    @Query("select t.id, t.trainId, t.travelDate, t.travelClass, t.bookingDate, t.waitlistSeats from TicketRequest t"
+            + " where t.status = com.yatrasathi.common.TicketEnums.TicketStatus.PENDING"
+            + " and t.bookingStatus = com.yatrasathi.ticket.BookingStatus.WAITLIST")
+    List<Object[]> findWaitlisted();
 }
 
 
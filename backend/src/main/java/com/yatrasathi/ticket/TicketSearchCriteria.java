@@ -0,0 +1,36 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+
+import java.time.LocalDate;
+
+/**
+ * Optional filters for {@link TicketSearchRepository#search}; null fields are not constrained.
+ */
+public class TicketSearchCriteria {
+    private String origin;
+    private String destination;
+    private TicketStatus status;
+    private LocalDate travelDateFrom;
+    private LocalDate travelDateTo;
+    private Long trainId;
+    private String travelClass;
+
+    // Getters
+    public String getOrigin() { return origin; }
+    public String getDestination() { return destination; }
+    public TicketStatus getStatus() { return status; }
+    public LocalDate getTravelDateFrom() { return travelDateFrom; }
+    public LocalDate getTravelDateTo() { return travelDateTo; }
+    public Long getTrainId() { return trainId; }
+    public String getTravelClass() { return travelClass; }
+
+    // Setters
+    public void setOrigin(String origin) { this.origin = origin; }
+    public void setDestination(String destination) { this.destination = destination; }
+    public void setStatus(TicketStatus status) { this.status = status; }
+    public void setTravelDateFrom(LocalDate travelDateFrom) { this.travelDateFrom = travelDateFrom; }
+    public void setTravelDateTo(LocalDate travelDateTo) { this.travelDateTo = travelDateTo; }
+    public void setTrainId(Long trainId) { this.trainId = trainId; }
+    public void setTravelClass(String travelClass) { this.travelClass = travelClass; }
+}
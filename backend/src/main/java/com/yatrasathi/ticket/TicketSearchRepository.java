@@ -0,0 +1,13 @@
+package com.yatrasathi.ticket;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface TicketSearchRepository {
+    /**
+     * Runs the criteria as one SQL statement, ordered by {@code (booking_date, booking_id)} and starting after
+     * the given keyset position when {@code afterId} is non-null; a null {@code afterDate} with it means the
+     * position is a row without a booking date.
+     */
+    List<TicketSummary> search(TicketSearchCriteria criteria, LocalDateTime afterDate, Long afterId, int limit);
+}
@@ -0,0 +1,86 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.user.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+class TicketSearchRepositoryImpl implements TicketSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<TicketSummary> search(TicketSearchCriteria criteria, LocalDateTime afterDate, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TicketSummary> query = cb.createQuery(TicketSummary.class);
+        Root<TicketRequest> t = query.from(TicketRequest.class);
+        Join<TicketRequest, User> c = t.join("customer");
+        Join<TicketRequest, User> e = t.join("employee", JoinType.LEFT);
+
+        // Plain equality keeps the bookings indexes usable; MySQL's default collation already ignores case
+        List<Predicate> where = new ArrayList<>();
+        if (criteria.getOrigin() != null) {
+            where.add(cb.equal(t.get("origin"), criteria.getOrigin()));
+        }
+        if (criteria.getDestination() != null) {
+            where.add(cb.equal(t.get("destination"), criteria.getDestination()));
+        }
+        if (criteria.getStatus() != null) {
+            where.add(cb.equal(t.get("status"), criteria.getStatus()));
+        }
+        if (criteria.getTravelDateFrom() != null) {
+            where.add(cb.greaterThanOrEqualTo(t.get("travelDate"), criteria.getTravelDateFrom()));
+        }
+        if (criteria.getTravelDateTo() != null) {
+            where.add(cb.lessThanOrEqualTo(t.get("travelDate"), criteria.getTravelDateTo()));
+        }
+        if (criteria.getTrainId() != null) {
+            where.add(cb.equal(t.get("trainId"), criteria.getTrainId()));
+        }
+        if (criteria.getTravelClass() != null) {
+            where.add(cb.equal(t.get("travelClass"), criteria.getTravelClass()));
+        }
+        if (afterDate == null && afterId != null) {
+            // After an undated row (those sort first): the remaining undated rows, then every dated one
+            where.add(cb.or(
+                    cb.and(cb.isNull(t.get("bookingDate")), cb.greaterThan(t.get("id"), afterId)),
+                    cb.isNotNull(t.get("bookingDate"))
+            ));
+        } else if (afterDate != null && afterId != null) {
+            // The plain lower bound is implied by the OR below, but it is what lets the index seek past earlier pages
+            where.add(cb.greaterThanOrEqualTo(t.get("bookingDate"), afterDate));
+            where.add(cb.or(
+                    cb.greaterThan(t.get("bookingDate"), afterDate),
+                    cb.and(cb.equal(t.get("bookingDate"), afterDate), cb.greaterThan(t.get("id"), afterId))
+            ));
+        }
+
+        query.select(cb.construct(TicketSummary.class,
+                        t.get("id"), c.get("id"), c.get("name"), c.get("phone"), e.get("id"), e.get("name"),
+                        t.get("trainId"), t.get("origin"), t.get("destination"), t.get("travelDate"),
+                        t.get("bookingDate"), t.get("travelClass"), t.get("status"), t.get("bookingStatus"), t.get("passengerCount"),
+                        t.get("approvedTicketCount"), t.get("assignedPnr"), t.get("paymentAmount"),
+                        t.get("changeVersion")))
+                .where(where.toArray(new Predicate[0]));
+        // With a status the queue index serves the order; naming its leading column lets every planner see that
+        if (criteria.getStatus() != null) {
+            query.orderBy(cb.asc(t.get("status")), cb.asc(t.get("bookingDate")), cb.asc(t.get("id")));
+        } else {
+            query.orderBy(cb.asc(t.get("bookingDate")), cb.asc(t.get("id")));
+        }
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+}
@@ -1,14 +1,33 @@
 package com.yatrasathi.ticket;
 
+import com.yatrasathi.common.AuditLog;
 import com.yatrasathi.common.AuditService;
+import com.yatrasathi.common.ChangeFeed;
+import com.yatrasathi.common.ChangeVersions;
+import com.yatrasathi.common.CursorPage;
 import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.dashboard.DashboardCounters;
+import com.yatrasathi.inventory.SeatAvailability;
+import com.yatrasathi.inventory.SeatInventory;
+import com.yatrasathi.inventory.SeatKey;
+import com.yatrasathi.notification.QueueEvent;
+import com.yatrasathi.notification.QueueEventStream;
 import com.yatrasathi.user.User;
 import com.yatrasathi.user.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.math.BigDecimal;
 
 @Service
@@ -16,15 +35,40 @@ public class TicketService {
     private final TicketRequestRepository ticketRepo;
     private final UserRepository userRepository;
     private final AuditService auditService;
+    private final TicketBulkRepository bulkRepo;
+    private final DashboardCounters counters;
+    private final QueueEventStream events;
+    private final ChangeVersions changeVersions;
+    private final SeatInventory seatInventory;
+    private final WaitlistService waitlistService;
 
-    public TicketService(TicketRequestRepository ticketRepo, UserRepository userRepository, AuditService auditService) {
+    @Value("${tickets.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${tickets.page.max-size:200}")
+    private int maxPageSize;
+
+    @Value("${tickets.bulk.max-items:500}")
+    private int maxBulkItems;
+
+    public TicketService(TicketRequestRepository ticketRepo, UserRepository userRepository, AuditService auditService,
+                         TicketBulkRepository bulkRepo, DashboardCounters counters, QueueEventStream events,
+                         ChangeVersions changeVersions, SeatInventory seatInventory,
+                         WaitlistService waitlistService) {
         this.ticketRepo = ticketRepo;
         this.userRepository = userRepository;
         this.auditService = auditService;
+        this.bulkRepo = bulkRepo;
+        this.counters = counters;
+        this.events = events;
+        this.changeVersions = changeVersions;
+        this.seatInventory = seatInventory;
+        this.waitlistService = waitlistService;
     }
 
     public TicketRequest createRequest(Long userId, TicketRequest request) {
         User customer = userRepository.findById(userId).orElseThrow();
+        request.setId(null);
         request.setCustomer(customer);
         request.setStatus(TicketStatus.PENDING);
         
@@ -34,6 +78,8 @@ public class TicketService {
         }
         
         TicketRequest saved = ticketRepo.save(request);
+        counters.ticketsCreated(1);
+        events.publish(QueueEvent.created(saved.getId(), customer.getId()));
         auditService.log(customer.getEmail(), "CREATE_TICKET_REQUEST", "RequestId=" + saved.getId() + ", PassengerCount=" + saved.getPassengerCount());
         return saved;
     }
@@ -42,64 +88,302 @@ public class TicketService {
         return ticketRepo.findById(id).orElseThrow();
     }
 
-    public List<TicketRequest> getMyRequests(Long userId) {
-        User customer = userRepository.findById(userId).orElseThrow();
-        return ticketRepo.findByCustomer(customer);
+    public List<TicketSummary> getMyRequests(Long userId) {
+        return ticketRepo.findSummariesByCustomerId(userId);
     }
 
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public List<TicketRequest> getPending() {
-        return ticketRepo.findByStatus(TicketStatus.PENDING);
+    public CursorPage<TicketSummary> getPending(String cursor, Integer size) {
+        return queuePage(TicketStatus.PENDING, cursor, size);
     }
 
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public List<TicketRequest> getApproved() {
-        return ticketRepo.findByStatus(TicketStatus.APPROVED);
+    public CursorPage<TicketSummary> getApproved(String cursor, Integer size) {
+        return queuePage(TicketStatus.APPROVED, cursor, size);
     }
 
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public List<TicketRequest> getTicketCreated() {
-        return ticketRepo.findByStatus(TicketStatus.TICKET_CREATED);
+    public CursorPage<TicketSummary> getTicketCreated(String cursor, Integer size) {
+        return queuePage(TicketStatus.TICKET_CREATED, cursor, size);
     }
 
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public List<TicketRequest> getConfirmed() {
-        return ticketRepo.findByStatus(TicketStatus.CONFIRMED);
+    public CursorPage<TicketSummary> getConfirmed(String cursor, Integer size) {
+        return queuePage(TicketStatus.CONFIRMED, cursor, size);
     }
 
+    @Transactional
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public TicketRequest approve(Long requestId, int count) {
-        TicketRequest tr = ticketRepo.findById(requestId).orElseThrow();
-        tr.setApprovedTicketCount(count);
-        tr.setStatus(TicketStatus.APPROVED);
-        TicketRequest saved = ticketRepo.save(tr);
-        auditService.log("system", "APPROVE_TICKET_REQUEST", "RequestId=" + saved.getId() + ", count=" + count);
-        return saved;
+    public TicketRequest approve(Long requestId, int count, Long expectedVersion, boolean waitlistIfFull) {
+        // SeatInventory treats a non-positive count as nothing to hold, which would approve without seats
+        if (count < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "count must be at least 1");
+        }
+        TicketRequest tr = ticketRepo.findById(requestId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Ticket request " + requestId + " not found"));
+        SeatKey trip = SeatKey.of(tr.getTrainId(), tr.getTravelDate(), tr.getTravelClass());
+        int held = seatInventory.reserve(trip, count);
+        if (held == SeatInventory.SOLD_OUT) {
+            if (!waitlistIfFull) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, notEnoughSeats(tr.getTrainId(), tr.getTravelDate(), tr.getTravelClass(), count));
+            }
+            return waitlist(requestId, count, expectedVersion);
+        }
+        // A failed transition rolls the reservation back with it
+        transition(requestId, TicketStatus.APPROVED, expectedVersion,
+                (from, change) -> ticketRepo.approveIf(requestId, from, expectedVersion, change, count, held));
+        waitlistService.remove(List.of(requestId));
+        auditService.log("system", "APPROVE_TICKET_REQUEST", "RequestId=" + requestId + ", count=" + count);
+        return transitioned(requestId);
     }
 
+    @Transactional
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public TicketRequest createTicket(Long requestId, String pnr, BigDecimal paymentAmount) {
-        TicketRequest tr = ticketRepo.findById(requestId).orElseThrow();
-        tr.setAssignedPnr(pnr);
-        tr.setPaymentAmount(paymentAmount);
-        tr.setStatus(TicketStatus.TICKET_CREATED);
-        TicketRequest saved = ticketRepo.save(tr);
-        auditService.log("system", "CREATE_TICKET", "RequestId=" + saved.getId() + ", PNR=" + pnr + ", Amount=" + paymentAmount);
-        return saved;
+    public TicketRequest createTicket(Long requestId, String pnr, BigDecimal paymentAmount, Long expectedVersion) {
+        transition(requestId, TicketStatus.TICKET_CREATED, expectedVersion,
+                (from, change) -> ticketRepo.createTicketIf(requestId, from, expectedVersion, change, pnr, paymentAmount));
+        auditService.log("system", "CREATE_TICKET", "RequestId=" + requestId + ", PNR=" + pnr + ", Amount=" + paymentAmount);
+        return transitioned(requestId);
     }
 
+    @Transactional
     @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
-    public TicketRequest confirm(Long requestId) {
-        TicketRequest tr = ticketRepo.findById(requestId).orElseThrow();
-        tr.setStatus(TicketStatus.CONFIRMED);
-        TicketRequest saved = ticketRepo.save(tr);
-        auditService.log("system", "CONFIRM_TICKET_REQUEST", "RequestId=" + saved.getId());
-        return saved;
+    public TicketRequest confirm(Long requestId, Long expectedVersion) {
+        transition(requestId, TicketStatus.CONFIRMED, expectedVersion,
+                (from, change) -> ticketRepo.confirmIf(requestId, from, expectedVersion, change));
+        auditService.log("system", "CONFIRM_TICKET_REQUEST", "RequestId=" + requestId);
+        return transitioned(requestId);
+    }
+
+    /**
+     * Applies one transition to many requests in a single transaction: the conditional updates go out as
+     * one JDBC batch, followed by one read of the resulting states and one batch of audit rows. Items that
+     * fail validation or no longer match their source state are reported per id; the rest still commit.
+     */
+    @Transactional
+    @PreAuthorize("hasRole('EMPLOYEE') or hasRole('ADMIN')")
+    public BulkTransitionResult bulkTransition(TicketStatus target, List<BulkTransitionItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No ticket requests given");
+        }
+        if (items.size() > maxBulkItems) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + maxBulkItems + " ticket requests per call");
+        }
+        String[] errors = new String[items.size()];
+        Set<Long> seenIds = new HashSet<>();
+        Set<String> seenPnrs = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            errors[i] = validateBulkItem(target, items.get(i), seenIds, seenPnrs);
+        }
+        if (target == TicketStatus.TICKET_CREATED) {
+            Set<String> taken = bulkRepo.existingPnrs(seenPnrs);
+            for (int i = 0; i < items.size(); i++) {
+                if (errors[i] == null && taken.contains(items.get(i).getPnr())) {
+                    errors[i] = "PNR " + items.get(i).getPnr() + " is already assigned";
+                }
+            }
+        }
+
+        // Seats are taken before the batch so a sold-out trip fails only its own items; items whose update then
+        // misses give theirs back below
+        Map<Long, TicketBulkRepository.Trip> trips = target == TicketStatus.APPROVED ? bulkRepo.trips(seenIds) : Map.of();
+        int[] held = new int[items.size()];
+        if (target == TicketStatus.APPROVED) {
+            for (int i = 0; i < items.size(); i++) {
+                TicketBulkRepository.Trip trip = trips.get(items.get(i).getId());
+                // Rows that cannot transition are left for the batch to report
+                if (errors[i] != null || trip == null || !TicketTransitions.sourcesOf(target).contains(trip.status())) continue;
+                held[i] = seatInventory.reserve(trip.trainId(), trip.travelDate(), trip.travelClass(), items.get(i).getCount());
+                if (held[i] == SeatInventory.SOLD_OUT) {
+                    held[i] = 0;
+                    errors[i] = notEnoughSeats(trip.trainId(), trip.travelDate(), trip.travelClass(), items.get(i).getCount());
+                }
+            }
+        }
+
+        List<Integer> applied = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (errors[i] == null) applied.add(i);
+        }
+        long changeVersion = changeVersions.next();
+        bulkRepo.transition(target, TicketTransitions.sourcesOf(target), applied.stream().map(items::get).toList(),
+                applied.stream().mapToInt(i -> held[i]).toArray(), changeVersion);
+        // Batched update counts may be SUCCESS_NO_INFO, so success is read back: the row reached the target
+        // under this batch's change version, which is also the only write that bumped its version here
+        Map<Long, TicketBulkRepository.State> states = bulkRepo.states(seenIds);
+        boolean[] success = new boolean[items.size()];
+        for (int i : applied) {
+            TicketBulkRepository.State state = states.get(items.get(i).getId());
+            success[i] = state != null && state.movedBy(target, changeVersion);
+        }
+        if (target == TicketStatus.APPROVED) {
+            List<Long> approvedIds = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                if (success[i]) approvedIds.add(items.get(i).getId());
+            }
+            waitlistService.remove(approvedIds);
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (held[i] > 0 && !success[i]) {
+                TicketBulkRepository.Trip trip = trips.get(items.get(i).getId());
+                seatInventory.release(trip.trainId(), trip.travelDate(), trip.travelClass(), held[i]);
+            }
+        }
+
+        List<BulkTransitionResult.Item> results = new ArrayList<>(items.size());
+        List<AuditLog> audit = new ArrayList<>();
+        int succeeded = 0;
+        for (int i = 0; i < items.size(); i++) {
+            BulkTransitionItem item = items.get(i);
+            TicketBulkRepository.State state = item.getId() == null ? null : states.get(item.getId());
+            String error = errors[i];
+            if (success[i]) {
+                succeeded++;
+                audit.add(bulkAuditEntry(target, item));
+                events.publish(QueueEvent.transitioned(item.getId(), state.customerId(), state.status(), state.version()));
+            } else if (error == null) {
+                error = state == null
+                        ? "Ticket request " + item.getId() + " not found"
+                        : TicketTransitionException.describe(item.getId(), state.status(), target, state.version(), item.getVersion());
+            }
+            results.add(new BulkTransitionResult.Item(item.getId(), success[i],
+                    state != null ? state.status() : null, state != null ? state.version() : null, error));
+        }
+        auditService.logAll(audit);
+        counters.ticketsMoved(TicketTransitions.sourcesOf(target), target, succeeded);
+        return new BulkTransitionResult(target, items.size(), succeeded, items.size() - succeeded, results);
     }
 
-    public List<TicketRequest> filter(LocalDate date) {
-        return ticketRepo.findByTravelDate(date);
+    public List<TicketSummary> filter(LocalDate date) {
+        return ticketRepo.findSummariesByTravelDate(date);
+    }
+
+    public CursorPage<TicketSummary> search(TicketSearchCriteria criteria, String cursor, Integer size) {
+        int pageSize = pageSize(size);
+        QueueCursor after = cursor == null || cursor.isBlank() ? null : QueueCursor.decode(cursor);
+        List<TicketSummary> rows = ticketRepo.search(criteria,
+                after != null ? after.bookingDate() : null,
+                after != null ? after.id() : null,
+                pageSize + 1);
+        return toPage(rows, pageSize);
     }
-}
 
+    /**
+     * Requests changed after the client's last sync position, oldest change first. {@code customerId} limits
+     * the feed to one customer's requests; null returns every request (staff).
+     */
+    public ChangeFeed<TicketSummary> changesSince(Long customerId, Long since, Long afterId, Integer size) {
+        if ((since != null && since < 0) || (afterId != null && since == null)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "since must be a position returned by an earlier call");
+        }
+        // No since: a first sync, which includes rows from before change tracking (version 0).
+        // No afterId: every row at version since was already seen.
+        long from = since == null ? -1 : since;
+        long after = afterId == null ? Long.MAX_VALUE : afterId;
+        // Read the watermark first: everything at or below it is committed, so nothing can appear behind the cursor later
+        long stable = changeVersions.stable();
+        int pageSize = pageSize(size);
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<TicketSummary> rows = customerId == null
+                ? ticketRepo.findChangedSince(from, after, stable, limit)
+                : ticketRepo.findChangedSinceForCustomer(customerId, from, after, stable, limit);
+        if (rows.size() <= pageSize) {
+            return new ChangeFeed<>(rows, Math.max(from, stable), null, false);
+        }
+        List<TicketSummary> page = rows.subList(0, pageSize);
+        TicketSummary last = page.get(pageSize - 1);
+        return new ChangeFeed<>(page, last.changeVersion(), last.id(), true);
+    }
+
+    private TicketRequest waitlist(Long requestId, int count, Long expectedVersion) {
+        Set<TicketStatus> sources = TicketTransitions.sourcesOf(TicketStatus.APPROVED);
+        if (ticketRepo.waitlistIf(requestId, sources, expectedVersion, changeVersions.next(), count) == 0) {
+            TicketRequest current = getTicketById(requestId);
+            throw new TicketTransitionException(requestId, current.getStatus(), TicketStatus.APPROVED, current.getVersion(), expectedVersion);
+        }
+        TicketRequest tr = getTicketById(requestId);
+        waitlistService.enqueue(tr);
+        auditService.log("system", "WAITLIST_TICKET_REQUEST", "RequestId=" + requestId + ", seats=" + count);
+        events.publish(QueueEvent.waitlisted(tr.getId(), tr.getCustomer().getId(), tr.getVersion()));
+        return tr;
+    }
+
+    private String notEnoughSeats(Long trainId, LocalDate travelDate, String travelClass, int seats) {
+        SeatAvailability left = seatInventory.availability(trainId, travelDate, travelClass);
+        return "Only " + (left == null ? 0 : left.available()) + " seats left on train " + trainId + " (" + travelClass + ") on "
+                + travelDate + ", " + seats + " requested";
+    }
+
+    private TicketRequest transitioned(Long requestId) {
+        TicketRequest tr = getTicketById(requestId);
+        events.publish(QueueEvent.transitioned(tr.getId(), tr.getCustomer().getId(), tr.getStatus(), tr.getVersion()));
+        return tr;
+    }
+
+    private static String validateBulkItem(TicketStatus target, BulkTransitionItem item, Set<Long> seenIds, Set<String> seenPnrs) {
+        if (item.getId() == null) return "Missing id";
+        if (!seenIds.add(item.getId())) return "Ticket request " + item.getId() + " appears more than once";
+        if (target == TicketStatus.APPROVED && item.getCount() == null) return "Missing count";
+        if (target == TicketStatus.APPROVED && item.getCount() < 1) return "count must be at least 1";
+        if (target == TicketStatus.TICKET_CREATED) {
+            if (item.getPnr() == null || item.getPnr().isBlank()) return "Missing pnr";
+            if (item.getPaymentAmount() == null) return "Missing paymentAmount";
+            if (!seenPnrs.add(item.getPnr())) return "PNR " + item.getPnr() + " appears more than once";
+        }
+        return null;
+    }
+
+    private static AuditLog bulkAuditEntry(TicketStatus target, BulkTransitionItem item) {
+        return switch (target) {
+            case APPROVED -> AuditService.entry("system", "APPROVE_TICKET_REQUEST", "RequestId=" + item.getId() + ", count=" + item.getCount() + ", bulk=true");
+            case TICKET_CREATED -> AuditService.entry("system", "CREATE_TICKET", "RequestId=" + item.getId() + ", PNR=" + item.getPnr() + ", Amount=" + item.getPaymentAmount() + ", bulk=true");
+            default -> AuditService.entry("system", "CONFIRM_TICKET_REQUEST", "RequestId=" + item.getId() + ", bulk=true");
+        };
+    }
+
+    // Runs one conditional UPDATE restricted to the states that may lead to target; the row is only read
+    // back when nothing matched, to tell the caller why
+    private void transition(Long requestId, TicketStatus target, Long expectedVersion, ConditionalUpdate update) {
+        Set<TicketStatus> sources = TicketTransitions.sourcesOf(target);
+        if (update.apply(sources, changeVersions.next()) == 1) {
+            counters.ticketsMoved(sources, target, 1);
+            return;
+        }
+        TicketRequest current = ticketRepo.findById(requestId)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Ticket request " + requestId + " not found"));
+        throw new TicketTransitionException(requestId, current.getStatus(), target, current.getVersion(), expectedVersion);
+    }
+
+    private CursorPage<TicketSummary> queuePage(TicketStatus status, String cursor, Integer size) {
+        int pageSize = pageSize(size);
+        // Fetch one extra row to learn whether another page exists without a count query
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        List<TicketSummary> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = ticketRepo.findQueueFirstPage(status, limit);
+        } else {
+            QueueCursor after = QueueCursor.decode(cursor);
+            rows = after.undated()
+                    ? ticketRepo.findQueuePageAfterUndated(status, after.id(), limit)
+                    : ticketRepo.findQueuePageAfter(status, after.bookingDate(), after.id(), limit);
+        }
+        return toPage(rows, pageSize);
+    }
 
+    private int pageSize(Integer size) {
+        return size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+    }
+
+    private CursorPage<TicketSummary> toPage(List<TicketSummary> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        List<TicketSummary> page = rows.subList(0, pageSize);
+        return new CursorPage<>(page, QueueCursor.of(page.get(pageSize - 1)).encode());
+    }
+
+    @FunctionalInterface
+    private interface ConditionalUpdate {
+        int apply(Set<TicketStatus> from, long changeVersion);
+    }
+}
@@ -0,0 +1,34 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Flat read model for ticket listings. Populated by a single constructor-expression query that joins the
+ * customer and employee columns it needs, instead of serialising whole {@link TicketRequest} graphs.
+ */
+public record TicketSummary(
+        Long id,
+        Long customerId,
+        String customerName,
+        String customerPhone,
+        Long employeeId,
+        String employeeName,
+        Long trainId,
+        String origin,
+        String destination,
+        LocalDate travelDate,
+        LocalDateTime bookingDate,
+        String travelClass,
+        TicketStatus status,
+        BookingStatus bookingStatus,
+        Integer passengerCount,
+        Integer approvedTicketCount,
+        String assignedPnr,
+        BigDecimal paymentAmount,
+        Long changeVersion
+) {
+}
@@ -0,0 +1,38 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+
+/**
+ * Thrown when a conditional transition matched no row: the request has already moved on (or was never in
+ * a state that leads to {@code target}), or its version no longer matches the one the caller sent.
+ */
+public class TicketTransitionException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final Long ticketId;
+    private final TicketStatus currentStatus;
+    private final TicketStatus targetStatus;
+    private final Long currentVersion;
+
+    public TicketTransitionException(Long ticketId, TicketStatus currentStatus, TicketStatus targetStatus,
+                                     Long currentVersion, Long expectedVersion) {
+        super(describe(ticketId, currentStatus, targetStatus, currentVersion, expectedVersion));
+        this.ticketId = ticketId;
+        this.currentStatus = currentStatus;
+        this.targetStatus = targetStatus;
+        this.currentVersion = currentVersion;
+    }
+
+    static String describe(Long ticketId, TicketStatus currentStatus, TicketStatus targetStatus,
+                           Long currentVersion, Long expectedVersion) {
+        return expectedVersion != null && !expectedVersion.equals(currentVersion)
+                ? "Ticket request " + ticketId + " was modified concurrently (version " + currentVersion + ", expected " + expectedVersion + ")"
+                : "Ticket request " + ticketId + " is " + currentStatus + " and cannot move to " + targetStatus;
+    }
+
+    // Getters
+    public Long getTicketId() { return ticketId; }
+    public TicketStatus getCurrentStatus() { return currentStatus; }
+    public TicketStatus getTargetStatus() { return targetStatus; }
+    public Long getCurrentVersion() { return currentVersion; }
+}
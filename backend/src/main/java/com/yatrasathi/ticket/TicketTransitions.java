@@ -0,0 +1,48 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ticket lifecycle as a table of allowed moves. Every status change goes through a conditional
+ * update whose WHERE clause only matches rows in one of {@link #sourcesOf(TicketStatus) the source
+ * states}, so a request can never skip a step or be moved twice by two employees racing each other.
+ */
+public final class TicketTransitions {
+
+    private static final Map<TicketStatus, Set<TicketStatus>> ALLOWED = new EnumMap<>(TicketStatus.class);
+    private static final Map<TicketStatus, Set<TicketStatus>> SOURCES = new EnumMap<>(TicketStatus.class);
+
+    static {
+        allow(TicketStatus.PENDING, TicketStatus.APPROVED);
+        allow(TicketStatus.APPROVED, TicketStatus.TICKET_CREATED);
+        allow(TicketStatus.TICKET_CREATED, TicketStatus.CONFIRMED);
+        // Any live request can be cancelled; CANCELLED is final
+        allow(TicketStatus.PENDING, TicketStatus.CANCELLED);
+        allow(TicketStatus.APPROVED, TicketStatus.CANCELLED);
+        allow(TicketStatus.TICKET_CREATED, TicketStatus.CANCELLED);
+        allow(TicketStatus.CONFIRMED, TicketStatus.CANCELLED);
+    }
+
+    private TicketTransitions() {
+    }
+
+    public static boolean isAllowed(TicketStatus from, TicketStatus to) {
+        return ALLOWED.getOrDefault(from, Set.of()).contains(to);
+    }
+
+    /** States a request may be in for a move to {@code to} to succeed; empty if nothing leads there. */
+    public static Set<TicketStatus> sourcesOf(TicketStatus to) {
+        return Collections.unmodifiableSet(SOURCES.getOrDefault(to, EnumSet.noneOf(TicketStatus.class)));
+    }
+
+    private static void allow(TicketStatus from, TicketStatus to) {
+        ALLOWED.computeIfAbsent(from, k -> EnumSet.noneOf(TicketStatus.class)).add(to);
+        SOURCES.computeIfAbsent(to, k -> EnumSet.noneOf(TicketStatus.class)).add(from);
+    }
+}
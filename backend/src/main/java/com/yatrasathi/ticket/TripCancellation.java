@@ -0,0 +1,7 @@
+package com.yatrasathi.ticket;
+
+import java.time.LocalDate;
+
+/** Outcome of cancelling every live request on one train and travel date. */
+public record TripCancellation(Long trainId, LocalDate travelDate, int cancelled, int seatsReleased, int refundPercent) {
+}
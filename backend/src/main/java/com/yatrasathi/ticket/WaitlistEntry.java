@@ -0,0 +1,20 @@
+package com.yatrasathi.ticket;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/**
+ * One waitlisted request. Entries are served oldest booking first, with the id breaking ties, so the order
+ * is the order customers asked in regardless of when the request was waitlisted.
+ */
+public record WaitlistEntry(Long ticketId, LocalDateTime bookingDate, int seats) implements Comparable<WaitlistEntry> {
+
+    private static final Comparator<WaitlistEntry> ORDER = Comparator
+            .comparing(WaitlistEntry::bookingDate, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(WaitlistEntry::ticketId);
+
+    @Override
+    public int compareTo(WaitlistEntry other) {
+        return ORDER.compare(this, other);
+    }
+}
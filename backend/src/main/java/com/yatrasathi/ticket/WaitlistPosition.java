@@ -0,0 +1,7 @@
+package com.yatrasathi.ticket;
+
+import java.time.LocalDate;
+
+public record WaitlistPosition(Long ticketId, Long trainId, LocalDate travelDate, String travelClass, int position,
+                               int seats, int waitlistLength) {
+}
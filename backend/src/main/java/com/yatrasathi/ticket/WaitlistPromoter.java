@@ -0,0 +1,96 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.AuditLog;
+import com.yatrasathi.common.AuditService;
+import com.yatrasathi.common.ChangeVersions;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.dashboard.DashboardCounters;
+import com.yatrasathi.inventory.SeatInventory;
+import com.yatrasathi.inventory.SeatKey;
+import com.yatrasathi.notification.QueueEvent;
+import com.yatrasathi.notification.QueueEventStream;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Promotes one batch from the head of a trip's waitlist in a single transaction: seats for the whole batch,
+ * one UPDATE for the requests, one read-back, one batch of audit rows.
+ */
+@Component
+class WaitlistPromoter {
+
+    private final TicketRequestRepository ticketRepo;
+    private final SeatInventory seatInventory;
+    private final ChangeVersions changeVersions;
+    private final AuditService auditService;
+    private final DashboardCounters counters;
+    private final QueueEventStream events;
+
+    WaitlistPromoter(TicketRequestRepository ticketRepo, SeatInventory seatInventory, ChangeVersions changeVersions,
+                     AuditService auditService, DashboardCounters counters, QueueEventStream events) {
+        this.ticketRepo = ticketRepo;
+        this.seatInventory = seatInventory;
+        this.changeVersions = changeVersions;
+        this.auditService = auditService;
+        this.counters = counters;
+        this.events = events;
+    }
+
+    @Transactional
+    public Batch promote(SeatKey trip, List<WaitlistEntry> candidates) {
+        if (candidates.isEmpty()) {
+            return new Batch(List.of(), List.of(), false);
+        }
+        // One reservation for the whole batch; the caller sized it to the seats that were free
+        int total = candidates.stream().mapToInt(WaitlistEntry::seats).sum();
+        int taken = seatInventory.reserve(trip, total);
+        // Someone else took seats since the caller looked; the next release or sweep tries again
+        if (taken == SeatInventory.SOLD_OUT) {
+            return new Batch(List.of(), List.of(), true);
+        }
+        // An untracked trip holds nothing for its bookings, which they record so cancelling gives nothing back
+        boolean held = taken > 0;
+        List<Long> ids = candidates.stream().map(WaitlistEntry::ticketId).toList();
+        long changeVersion = changeVersions.next();
+        ticketRepo.promoteWaitlisted(ids, changeVersion, held);
+        Map<Long, Object[]> promotedRows = new HashMap<>();
+        for (Object[] row : ticketRepo.findPromoted(ids, changeVersion)) {
+            promotedRows.put((Long) row[0], row);
+        }
+
+        List<Long> promoted = new ArrayList<>(promotedRows.size());
+        List<Long> stale = new ArrayList<>();
+        List<AuditLog> audit = new ArrayList<>(promotedRows.size());
+        int staleSeats = 0;
+        for (WaitlistEntry entry : candidates) {
+            Object[] row = promotedRows.get(entry.ticketId());
+            if (row == null) {
+                // Left the waitlist (approved by hand, cancelled) after it was queued
+                stale.add(entry.ticketId());
+                staleSeats += entry.seats();
+                continue;
+            }
+            promoted.add(entry.ticketId());
+            audit.add(AuditService.entry("system", "PROMOTE_WAITLIST",
+                    "RequestId=" + entry.ticketId() + ", seats=" + entry.seats() + ", train=" + trip.trainId()
+                            + ", date=" + trip.travelDate() + ", class=" + trip.travelClass()));
+            events.publish(QueueEvent.promoted(entry.ticketId(), (Long) row[1], (Long) row[2]));
+        }
+        if (held) {
+            seatInventory.release(trip, staleSeats);
+        }
+        auditService.logAll(audit);
+        counters.ticketsMoved(Set.of(TicketStatus.PENDING), TicketStatus.APPROVED, promoted.size());
+        return new Batch(promoted, stale, false);
+    }
+
+    /** {@code blocked} means the seats for the batch were gone by the time it ran, so nothing was promoted. */
+    record Batch(List<Long> promoted, List<Long> stale, boolean blocked) {
+    }
+}
@@ -0,0 +1,257 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.common.AfterCommit;
+import com.yatrasathi.common.StatsContributor;
+import com.yatrasathi.inventory.SeatAvailability;
+import com.yatrasathi.inventory.SeatInventory;
+import com.yatrasathi.inventory.SeatKey;
+import com.yatrasathi.inventory.SeatReleaseListener;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ordered waitlists per trip (train, travel date, class), kept in memory as skip lists so the head is
+ * always at hand however long the list grows. Whenever {@link SeatInventory} reports freed seats on a
+ * trip, the trip is handed to a single promoter thread, which promotes from the head in batches of up to
+ * {@code tickets.waitlist.batch-size}, each batch in one transaction.
+ *
+ * <p>Promotion is strictly first come, first served: if the head needs more seats than are free, nobody
+ * behind it is promoted either. The lists are rebuilt from the bookings table on startup.
+ */
+@Service
+public class WaitlistService implements SeatReleaseListener, StatsContributor {
+
+    private static final Logger log = LoggerFactory.getLogger(WaitlistService.class);
+
+    private final TicketRequestRepository ticketRepo;
+    private final SeatInventory seatInventory;
+    private final WaitlistPromoter promoter;
+    private final int batchSize;
+
+    private final ConcurrentHashMap<SeatKey, ConcurrentSkipListSet<WaitlistEntry>> queues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Queued> byTicket = new ConcurrentHashMap<>();
+    // Trips with a promotion pass queued but not yet started; freeing seats again meanwhile adds nothing
+    private final Set<SeatKey> scheduled = ConcurrentHashMap.newKeySet();
+    private final ExecutorService promoterThread;
+
+    private final LongAdder promoted = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder passNanos = new LongAdder();
+    private final AtomicLong maxPassNanos = new AtomicLong();
+
+    public WaitlistService(TicketRequestRepository ticketRepo, SeatInventory seatInventory, WaitlistPromoter promoter,
+                           @Value("${tickets.waitlist.batch-size:100}") int batchSize) {
+        this.ticketRepo = ticketRepo;
+        this.seatInventory = seatInventory;
+        this.promoter = promoter;
+        this.batchSize = batchSize;
+        this.promoterThread = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "waitlist-promoter");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PostConstruct
+    void load() {
+        seatInventory.addReleaseListener(this);
+        List<Object[]> rows = ticketRepo.findWaitlisted();
+        for (Object[] row : rows) {
+            SeatKey trip = SeatKey.of((Long) row[1], (LocalDate) row[2], (String) row[3]);
+            Integer seats = (Integer) row[5];
+            if (trip != null && seats != null) {
+                add(trip, new WaitlistEntry((Long) row[0], (LocalDateTime) row[4], seats));
+            }
+        }
+        log.info("Waitlists recovered: {} requests on {} trips", byTicket.size(), queues.size());
+        // Seats may have been freed while the lists were not being watched
+        queues.keySet().forEach(this::seatsFreed);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        promoterThread.shutdown();
+        promoterThread.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /** Adds the request once the surrounding transaction commits. */
+    public void enqueue(TicketRequest request) {
+        SeatKey trip = SeatKey.of(request.getTrainId(), request.getTravelDate(), request.getTravelClass());
+        if (trip == null) {
+            return;
+        }
+        WaitlistEntry entry = new WaitlistEntry(request.getId(), request.getBookingDate(), request.getWaitlistSeats());
+        AfterCommit.run(() -> {
+            add(trip, entry);
+            // Seats freed between the failed reservation and this commit would otherwise go unnoticed
+            seatsFreed(trip);
+        });
+    }
+
+    /** Drops requests that left the waitlist some other way, once the surrounding transaction commits. */
+    public void remove(Collection<Long> ticketIds) {
+        if (ticketIds.isEmpty() || byTicket.isEmpty()) {
+            return;
+        }
+        List<Long> ids = List.copyOf(ticketIds);
+        AfterCommit.run(() -> ids.forEach(this::drop));
+    }
+
+    @Override
+    public void seatsFreed(SeatKey trip) {
+        ConcurrentSkipListSet<WaitlistEntry> queue = queues.get(trip);
+        if (queue == null || queue.isEmpty()) {
+            return;
+        }
+        long freedAt = System.nanoTime();
+        if (scheduled.add(trip)) {
+            promoterThread.execute(() -> {
+                scheduled.remove(trip);
+                promote(trip, freedAt);
+            });
+        }
+    }
+
+    public List<WaitlistEntry> entries(Long trainId, LocalDate travelDate, String travelClass, int limit) {
+        SeatKey trip = SeatKey.of(trainId, travelDate, travelClass);
+        ConcurrentSkipListSet<WaitlistEntry> queue = trip == null ? null : queues.get(trip);
+        if (queue == null) {
+            return List.of();
+        }
+        return queue.stream().limit(Math.max(0, limit)).toList();
+    }
+
+    /** Null when the request is not waitlisted. Counting the entries ahead walks the list, so this is O(position). */
+    public WaitlistPosition position(Long ticketId) {
+        Queued queued = byTicket.get(ticketId);
+        ConcurrentSkipListSet<WaitlistEntry> queue = queued == null ? null : queues.get(queued.trip());
+        if (queue == null) {
+            return null;
+        }
+        SeatKey trip = queued.trip();
+        return new WaitlistPosition(ticketId, trip.trainId(), trip.travelDate(), trip.travelClass(),
+                queue.headSet(queued.entry()).size() + 1, queued.entry().seats(), queue.size());
+    }
+
+    // Safety net for anything that freed seats without going through SeatInventory.release
+    @Scheduled(fixedDelayString = "${tickets.waitlist.sweep-interval-ms:60000}")
+    public void sweep() {
+        queues.keySet().forEach(this::seatsFreed);
+    }
+
+    @Override
+    public String statsName() {
+        return "waitlist";
+    }
+
+    @Override
+    public Map<String, Object> stats() {
+        long passCount = passes.sum();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("waitlisted", byTicket.size());
+        data.put("trips", queues.size());
+        data.put("promoted", promoted.sum());
+        data.put("stale", stale.sum());
+        data.put("batches", batches.sum());
+        data.put("failures", failures.sum());
+        data.put("avgPromotionMs", passCount == 0 ? 0.0 : passNanos.sum() / 1e6 / passCount);
+        data.put("maxPromotionMs", maxPassNanos.get() / 1e6);
+        return data;
+    }
+
+    // Runs on the promoter thread only, so passes over the same trip never overlap
+    private void promote(SeatKey trip, long freedAt) {
+        ConcurrentSkipListSet<WaitlistEntry> queue = queues.get(trip);
+        boolean progressed = false;
+        while (queue != null && !queue.isEmpty()) {
+            SeatAvailability left = seatInventory.availability(trip);
+            if (left == null) {
+                return;
+            }
+            int free = left.available();
+            List<WaitlistEntry> batch = new ArrayList<>(Math.min(batchSize, queue.size()));
+            for (WaitlistEntry entry : queue) {
+                if (batch.size() == batchSize || entry.seats() > free) {
+                    break;
+                }
+                batch.add(entry);
+                free -= entry.seats();
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            WaitlistPromoter.Batch result;
+            try {
+                result = promoter.promote(trip, batch);
+            } catch (RuntimeException e) {
+                failures.increment();
+                log.error("Waitlist promotion failed for {}; will retry on the next release or sweep", trip, e);
+                return;
+            }
+            batches.increment();
+            result.promoted().forEach(this::drop);
+            result.stale().forEach(this::drop);
+            promoted.add(result.promoted().size());
+            stale.add(result.stale().size());
+            progressed |= !result.promoted().isEmpty();
+            if (result.blocked() || (result.promoted().isEmpty() && result.stale().isEmpty())) {
+                break;
+            }
+        }
+        if (progressed) {
+            long took = System.nanoTime() - freedAt;
+            passes.increment();
+            passNanos.add(took);
+            maxPassNanos.accumulateAndGet(took, Math::max);
+        }
+    }
+
+    private void add(SeatKey trip, WaitlistEntry entry) {
+        // Waitlisting again (e.g. with a different seat count) replaces the old entry but keeps its place
+        drop(entry.ticketId());
+        queues.compute(trip, (k, queue) -> {
+            ConcurrentSkipListSet<WaitlistEntry> q = queue != null ? queue : new ConcurrentSkipListSet<>();
+            q.add(entry);
+            return q;
+        });
+        byTicket.put(entry.ticketId(), new Queued(trip, entry));
+    }
+
+    private void drop(Long ticketId) {
+        Queued queued = byTicket.remove(ticketId);
+        if (queued == null) {
+            return;
+        }
+        queues.computeIfPresent(queued.trip(), (k, queue) -> {
+            queue.remove(queued.entry());
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    private record Queued(SeatKey trip, WaitlistEntry entry) {
+    }
+}
@@ -1,5 +1,7 @@
 package com.yatrasathi.user;
 
+import com.yatrasathi.common.ChangeTracked;
+import com.yatrasathi.common.ChangeVersionListener;
 import com.yatrasathi.common.Role;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
@@ -16,7 +18,8 @@ import java.time.LocalDateTime;
         @UniqueConstraint(columnNames = {"phone"}),
         @UniqueConstraint(columnNames = {"aadhaar"})
 })
-public class User {
+@EntityListeners(ChangeVersionListener.class)
+public class User implements ChangeTracked {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "user_id")
@@ -55,6 +58,10 @@ public class User {
     @Column(name = "active")
     private boolean active = true;
 
+    // Ticket listings show user names and phones, so user writes move the list ETags too
+    @Column(name = "change_version")
+    private Long changeVersion;
+
     // Getters
     public Long getId() { return id; }
     public String getName() { return name; }
@@ -66,6 +73,7 @@ public class User {
     public LocalDateTime getCreatedAt() { return createdAt; }
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public boolean isActive() { return active; }
+    public Long getChangeVersion() { return changeVersion; }
 
     // Setters
     public void setId(Long id) { this.id = id; }
@@ -78,6 +86,7 @@ public class User {
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
     public void setActive(boolean active) { this.active = active; }
+    public void setChangeVersion(Long changeVersion) { this.changeVersion = changeVersion; }
 }
 
 
@@ -0,0 +1,156 @@
+package com.yatrasathi;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The timing loops behind the {@code *BenchmarkTest} classes, which stand in for JMH (not on the build).
+ * Every measurement is preceded by a warm-up that runs the same code, and results go to the log. Benchmark
+ * tests are gated with {@code @EnabledIfSystemProperty(named = "benchmarks", matches = "true")} and run with
+ * {@code -Dbenchmarks=true}.
+ */
+public final class Benchmark {
+
+    private static final Logger log = LoggerFactory.getLogger(Benchmark.class);
+
+    private final String name;
+    private int threads = 1;
+    private Duration warmUp = Duration.ofSeconds(1);
+    private Duration measure = Duration.ofSeconds(2);
+    private String unit = "ops";
+    // Every result is summed in here, so the JIT cannot drop the calls that produced them
+    private final LongAdder consumed = new LongAdder();
+
+    private Benchmark(String name) {
+        this.name = name;
+    }
+
+    public static Benchmark named(String name) {
+        return new Benchmark(name);
+    }
+
+    public Benchmark threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    public Benchmark warmUp(Duration warmUp) {
+        this.warmUp = warmUp;
+        return this;
+    }
+
+    public Benchmark measure(Duration measure) {
+        this.measure = measure;
+        return this;
+    }
+
+    /** What one call of the operation is, for the log line ("acquires", "searches"). */
+    public Benchmark unit(String unit) {
+        this.unit = unit;
+        return this;
+    }
+
+    /**
+     * Calls {@code op} back to back on every thread, first for the warm-up and then for the measured run, and
+     * returns the calls per second of the measured run across all threads.
+     */
+    public double throughput(Op op) throws Exception {
+        loop(op, warmUp.toNanos());
+        long calls = loop(op, measure.toNanos());
+        double perSecond = calls * 1e9 / measure.toNanos();
+        log.info("{}: {} {}/s ({} thread{})", name, String.format("%,.0f", perSecond), unit, threads, threads == 1 ? "" : "s");
+        return perSecond;
+    }
+
+    /**
+     * Times {@code samples} single calls of {@code op} on the calling thread after {@code warmUpCalls} untimed
+     * ones; {@code before} runs ahead of every call and is not timed. Returns the sorted call times in nanos.
+     */
+    public long[] latency(int warmUpCalls, int samples, Step before, Op op) throws Exception {
+        long sink = 0;
+        for (long i = 0; i < warmUpCalls; i++) {
+            before.run();
+            sink += op.call(0, i);
+        }
+        long[] nanos = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            before.run();
+            long started = System.nanoTime();
+            sink += op.call(0, i);
+            nanos[i] = System.nanoTime() - started;
+        }
+        consumed.add(sink);
+        Arrays.sort(nanos);
+        log.info("{}: p50 {}, p99 {} over {} calls", name, time(nanos[samples / 2]), time(nanos[samples * 99 / 100]), samples);
+        return nanos;
+    }
+
+    private long loop(Op op, long nanos) throws Exception {
+        if (threads == 1) {
+            return run(op, 0, System.nanoTime() + nanos);
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> futures = new ArrayList<>(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return run(op, thread, System.nanoTime() + nanos);
+                }));
+            }
+            start.countDown();
+            long calls = 0;
+            for (Future<Long> future : futures) {
+                calls += future.get(nanos / 1_000_000 + TimeUnit.MINUTES.toMillis(1), TimeUnit.MILLISECONDS);
+            }
+            return calls;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private long run(Op op, int thread, long deadline) throws Exception {
+        long calls = 0;
+        long sink = 0;
+        while (System.nanoTime() - deadline < 0) {
+            sink += op.call(thread, calls);
+            calls++;
+        }
+        consumed.add(sink);
+        return calls;
+    }
+
+    private static String time(long nanos) {
+        return nanos < 10_000_000 ? String.format("%,.1f us", nanos / 1e3) : String.format("%,d ms", nanos / 1_000_000);
+    }
+
+    /**
+     * One call of the measured operation; {@code call} counts this thread's calls from 0. Return something
+     * derived from the result (a size, a count) rather than a boxed value, so nothing is allocated per call.
+     */
+    @FunctionalInterface
+    public interface Op {
+        long call(int thread, long call) throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface Step {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,136 @@
+package com.yatrasathi;
+
+import com.yatrasathi.common.Role;
+import com.yatrasathi.ticket.TicketRequest;
+import com.yatrasathi.ticket.TicketService;
+import com.yatrasathi.user.User;
+import com.yatrasathi.user.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base for tests that need the full application against the in-memory H2 of the {@code test} profile. The
+ * context is shared by every subclass, so each test works on its own train ({@link #nextTrainId()}) and its
+ * own users rather than relying on a clean database.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public abstract class IntegrationTest {
+
+    private static final AtomicLong sequence = new AtomicLong(System.nanoTime() % 1_000_000);
+
+    @Autowired
+    protected UserRepository userRepository;
+
+    @Autowired
+    protected TicketService ticketService;
+
+    @AfterEach
+    void clearSecurityContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    /** Runs the calling thread as an employee, which the service-level role checks require. */
+    protected static void asStaff() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "staff@test", null, List.of(new SimpleGrantedAuthority("ROLE_EMPLOYEE"), new SimpleGrantedAuthority("ROLE_ADMIN"))));
+    }
+
+    protected static Long nextTrainId() {
+        return 100_000 + sequence.incrementAndGet();
+    }
+
+    protected static LocalDate travelDate() {
+        return LocalDate.now().plusDays(30);
+    }
+
+    protected User customer() {
+        long n = sequence.incrementAndGet();
+        User user = new User();
+        user.setName("Customer " + n);
+        user.setEmail("customer" + n + "@test");
+        user.setPhone(String.format("9%09d", n % 1_000_000_000L));
+        user.setAadhaar(String.format("%012d", n));
+        user.setPasswordHash("unused");
+        user.setRole(Role.CUSTOMER);
+        return userRepository.save(user);
+    }
+
+    protected TicketRequest booking(User customer, Long trainId, String travelClass, int passengers) {
+        TicketRequest request = new TicketRequest();
+        request.setTrainId(trainId);
+        request.setOrigin("NDLS");
+        request.setDestination("BCT");
+        request.setTravelDate(travelDate());
+        request.setTravelClass(travelClass);
+        request.setPassengerCount(passengers);
+        request.setAssignedPnr("T" + sequence.incrementAndGet());
+        return ticketService.createRequest(customer.getId(), request);
+    }
+
+    /**
+     * Starts {@code threads} copies of {@code task} at once and waits for all of them. Each outcome is the
+     * task's result or the exception it threw; every task runs as staff.
+     */
+    protected static <T> List<Object> race(int threads, Callable<T> task) throws InterruptedException {
+        return race(threads, i -> task.call());
+    }
+
+    protected static <T> List<Object> race(int threads, IndexedTask<T> task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<T>> futures = new ArrayList<>(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                int index = t;
+                futures.add(pool.submit(() -> {
+                    asStaff();
+                    try {
+                        start.await();
+                        return task.call(index);
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }));
+            }
+            start.countDown();
+            pool.shutdown();
+            if (!pool.awaitTermination(2, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Concurrent tasks did not finish");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        List<Object> outcomes = new ArrayList<>(threads);
+        for (Future<T> future : futures) {
+            try {
+                outcomes.add(future.get());
+            } catch (ExecutionException e) {
+                outcomes.add(e.getCause());
+            }
+        }
+        return outcomes;
+    }
+
+    @FunctionalInterface
+    protected interface IndexedTask<T> {
+        T call(int index) throws Exception;
+    }
+}
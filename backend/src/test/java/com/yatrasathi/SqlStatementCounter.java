@@ -0,0 +1,28 @@
+package com.yatrasathi;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares, per thread, so a test can assert how many round trips a
+ * call makes without scheduled jobs running on other threads getting in the way. Registered for the
+ * {@code test} profile through {@code hibernate.session_factory.statement_inspector}.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final ThreadLocal<int[]> count = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        count.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        count.get()[0] = 0;
+    }
+
+    /** Statements prepared on this thread since the last {@link #reset()}. */
+    public static int count() {
+        return count.get()[0];
+    }
+}
@@ -0,0 +1,28 @@
+package com.yatrasathi.admin;
+
+import com.yatrasathi.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+class AdminMetricsTest extends IntegrationTest {
+
+    @Autowired
+    private AdminController adminController;
+
+    @Test
+    void everyContributorHasItsOwnSection() {
+        asStaff();
+        Map<String, Object> metrics = adminController.metrics().getBody();
+
+        assertEquals(List.of("berths", "dashboardCounters", "loginExecutor", "passengerImports", "passengerIndex", "paymentBalances",
+                "paymentReconciliation", "queueEvents", "rateLimits", "refunds", "seatInventory", "ticketClaims", "ticketIntake",
+                "tokenRevocations", "userPrincipalCache", "waitlist"), List.copyOf(metrics.keySet()));
+        metrics.values().forEach(section -> assertInstanceOf(Map.class, section));
+    }
+}
@@ -0,0 +1,99 @@
+package com.yatrasathi.dashboard;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.TicketEnums.PaymentMode;
+import com.yatrasathi.common.TicketEnums.PaymentStatus;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.payment.Payment;
+import com.yatrasathi.payment.PaymentService;
+import com.yatrasathi.ticket.BulkTransitionItem;
+import com.yatrasathi.ticket.TicketCancellationService;
+import com.yatrasathi.ticket.TicketTransitionException;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DashboardCountersTest extends IntegrationTest {
+
+    @Autowired
+    private DashboardCounters counters;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private TicketCancellationService cancellationService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void countersFollowServiceWritesAndMatchTheTables() {
+        // Users are saved straight through the repository here, so they exist before the baseline
+        User customer = customer();
+        Long trainId = nextTrainId();
+        asStaff();
+        counters.reconcile();
+        Map<TicketStatus, Long> before = ticketCounters();
+
+        Long approved = booking(customer, trainId, "SL", 1).getId();
+        Long bulkOne = booking(customer, trainId, "SL", 1).getId();
+        Long bulkTwo = booking(customer, trainId, "SL", 1).getId();
+        Long cancelled = booking(customer, trainId, "SL", 1).getId();
+        ticketService.approve(approved, 1, null, false);
+        ticketService.bulkTransition(TicketStatus.APPROVED, List.of(approve(bulkOne), approve(bulkTwo)));
+        ticketService.createTicket(approved, "DC" + approved, BigDecimal.TEN, null);
+        ticketService.confirm(approved, null);
+        cancellationService.cancel(cancelled, null, true, "staff@test", "test", null);
+        // Rolled back: must not move anything
+        assertThrows(TicketTransitionException.class, () -> ticketService.approve(bulkOne, 1, null, false));
+
+        Payment payment = new Payment();
+        payment.setUser(customer);
+        payment.setAmount(new BigDecimal("125.50"));
+        payment.setMode(PaymentMode.UPI);
+        Long paymentId = paymentService.makePayment(approved, customer.getId(), payment).getId();
+        paymentService.markCompleted(paymentId);
+
+        Map<TicketStatus, Long> after = ticketCounters();
+        assertEquals(before.get(TicketStatus.PENDING), after.get(TicketStatus.PENDING));
+        assertEquals(before.get(TicketStatus.APPROVED) + 2, after.get(TicketStatus.APPROVED));
+        assertEquals(before.get(TicketStatus.TICKET_CREATED), after.get(TicketStatus.TICKET_CREATED));
+        assertEquals(before.get(TicketStatus.CONFIRMED) + 1, after.get(TicketStatus.CONFIRMED));
+        assertEquals(before.get(TicketStatus.CANCELLED) + 1, after.get(TicketStatus.CANCELLED));
+        for (TicketStatus status : TicketStatus.values()) {
+            assertEquals(jdbc.queryForObject("select count(*) from bookings where status = ?", Long.class, status.name()),
+                    after.get(status), status.name());
+        }
+        assertEquals(jdbc.queryForObject("select coalesce(sum(amount), 0) from payments", BigDecimal.class), counters.paymentTotal());
+        assertEquals(jdbc.queryForObject("select count(*) from payments where status = ?", Long.class, PaymentStatus.COMPLETED.name()),
+                ((Map<?, ?>) counters.stats().get("payments")).get(PaymentStatus.COMPLETED.name()));
+
+        counters.reconcile();
+        assertEquals(0L, counters.stats().get("lastDrift"));
+    }
+
+    private Map<TicketStatus, Long> ticketCounters() {
+        Map<TicketStatus, Long> counts = new EnumMap<>(TicketStatus.class);
+        for (TicketStatus status : TicketStatus.values()) {
+            counts.put(status, counters.tickets(status));
+        }
+        return counts;
+    }
+
+    private static BulkTransitionItem approve(Long id) {
+        BulkTransitionItem item = new BulkTransitionItem();
+        item.setId(id);
+        item.setCount(1);
+        return item;
+    }
+}
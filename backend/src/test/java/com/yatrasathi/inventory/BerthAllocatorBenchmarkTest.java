@@ -0,0 +1,70 @@
+package com.yatrasathi.inventory;
+
+import com.yatrasathi.Benchmark;
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.TicketEnums.BerthPreference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Berth allotments per second with the allocator on its own (no passenger rows): groups of one to six with
+ * mixed preferences fill fresh trips of twelve coaches until they refuse.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class BerthAllocatorBenchmarkTest extends IntegrationTest {
+
+    private static final BerthPreference[] PREFERENCES = {
+            BerthPreference.NONE, BerthPreference.NONE, BerthPreference.LOWER, BerthPreference.UPPER,
+            BerthPreference.MIDDLE, BerthPreference.SIDE_LOWER, null};
+
+    @Autowired
+    private BerthAllocator berthAllocator;
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Test
+    void sleeperGroups() throws Exception {
+        run("SL", 12 * 72);
+    }
+
+    @Test
+    void twoTierGroups() throws Exception {
+        run("2A", 12 * 48);
+    }
+
+    private void run(String travelClass, int capacity) throws Exception {
+        Random random = new Random(42);
+        List<List<BerthPreference>> groups = new ArrayList<>();
+        for (int g = 0; g < 1024; g++) {
+            List<BerthPreference> group = new ArrayList<>();
+            for (int p = 1 + random.nextInt(6); p > 0; p--) {
+                group.add(PREFERENCES[random.nextInt(PREFERENCES.length)]);
+            }
+            groups.add(group);
+        }
+        // A refused group means the trip is full; the next call starts on a fresh one
+        SeatKey[] trip = {newTrip(travelClass, capacity)};
+        Benchmark.named("BerthAllocator, " + travelClass).unit("allocations").measure(Duration.ofSeconds(3))
+                .throughput((thread, call) -> {
+                    List<BerthAssignment> allotted = berthAllocator.allocate(trip[0], groups.get((int) (call & (groups.size() - 1))));
+                    if (allotted == null) {
+                        trip[0] = newTrip(travelClass, capacity);
+                        return 0;
+                    }
+                    return allotted.size();
+                });
+    }
+
+    private SeatKey newTrip(String travelClass, int capacity) {
+        Long trainId = nextTrainId();
+        seatInventory.setCapacity(trainId, travelDate(), travelClass, capacity);
+        return SeatKey.of(trainId, travelDate(), travelClass);
+    }
+}
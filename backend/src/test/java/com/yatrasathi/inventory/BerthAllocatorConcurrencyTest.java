@@ -0,0 +1,137 @@
+package com.yatrasathi.inventory;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.TicketEnums.BerthPreference;
+import com.yatrasathi.passenger.Passenger;
+import com.yatrasathi.passenger.PassengerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BerthAllocatorConcurrencyTest extends IntegrationTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private BerthAllocator berthAllocator;
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Autowired
+    private PassengerService passengerService;
+
+    @Autowired
+    private TransactionTemplate transactions;
+
+    @Test
+    void concurrentBookingsOnOneTripGetDistinctBerths() throws Exception {
+        // Three 1A coaches of 24 berths, filled exactly by 24 bookings of three
+        Long trainId = nextTrainId();
+        seatInventory.setCapacity(trainId, travelDate(), "1A", 72);
+        List<Long> bookings = new ArrayList<>();
+        asStaff();
+        for (int b = 0; b < 24; b++) {
+            Long id = booking(customer(), trainId, "1A", 3).getId();
+            ticketService.approve(id, 3, null, false);
+            passengerService.addPassengers(id, List.of(passenger("A" + b, BerthPreference.LOWER),
+                    passenger("B" + b, BerthPreference.UPPER), passenger("C" + b, null)));
+            bookings.add(id);
+        }
+
+        List<Object> outcomes = race(THREADS, i -> {
+            List<String> labels = new ArrayList<>();
+            for (int b = i; b < bookings.size(); b += THREADS) {
+                passengerService.allocateBerths(bookings.get(b)).forEach(p -> labels.add(p.getBerthAllotted()));
+            }
+            return labels;
+        });
+
+        List<String> labels = new ArrayList<>();
+        for (Object outcome : outcomes) {
+            labels.addAll(labels(outcome));
+        }
+        assertEquals(72, labels.size());
+        assertEquals(72, new HashSet<>(labels).size());
+        labels.forEach(label -> assertNotNull(BerthAssignment.parse(label), label));
+    }
+
+    @Test
+    void racingGroupsNeverShareABerthAndOverflowIsRefused() throws Exception {
+        // One 24-berth coach, asked for 8 groups of 4: six fit, two must be turned away whole
+        SeatKey trip = trip("1A", 24);
+
+        List<Object> outcomes = race(THREADS, () -> berthAllocator.allocate(trip, Collections.nCopies(4, BerthPreference.LOWER)));
+
+        Set<String> labels = new HashSet<>();
+        int refused = 0;
+        for (Object outcome : outcomes) {
+            if (outcome == null) {
+                refused++;
+                continue;
+            }
+            for (BerthAssignment berth : assignments(outcome)) {
+                assertTrue(labels.add(berth.label()), "berth allotted twice: " + berth.label());
+            }
+        }
+        assertEquals(2, refused);
+        assertEquals(24, labels.size());
+    }
+
+    @Test
+    void rolledBackAllotmentsAreFreedAgain() {
+        SeatKey trip = trip("2A", 48);
+        List<BerthPreference> everyone = Collections.nCopies(48, BerthPreference.NONE);
+
+        transactions.executeWithoutResult(status -> {
+            assertNotNull(berthAllocator.allocate(trip, everyone));
+            status.setRollbackOnly();
+        });
+
+        List<BerthAssignment> again = berthAllocator.allocate(trip, everyone);
+        assertNotNull(again);
+        assertEquals(48, again.stream().map(BerthAssignment::label).distinct().count());
+        assertNull(berthAllocator.allocate(trip, List.of(BerthPreference.NONE)));
+    }
+
+    private SeatKey trip(String travelClass, int capacity) {
+        Long trainId = nextTrainId();
+        seatInventory.setCapacity(trainId, travelDate(), travelClass, capacity);
+        return SeatKey.of(trainId, travelDate(), travelClass);
+    }
+
+    private static Passenger passenger(String name, BerthPreference preference) {
+        Passenger passenger = new Passenger();
+        passenger.setName(name);
+        passenger.setAge(30);
+        passenger.setBerthPreference(preference);
+        return passenger;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> labels(Object outcome) {
+        if (outcome instanceof Throwable t) {
+            throw new AssertionError(t);
+        }
+        return (List<String>) outcome;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<BerthAssignment> assignments(Object outcome) {
+        if (outcome instanceof Throwable t) {
+            throw new AssertionError(t);
+        }
+        return (List<BerthAssignment>) outcome;
+    }
+}
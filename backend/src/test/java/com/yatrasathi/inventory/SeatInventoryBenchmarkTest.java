@@ -0,0 +1,78 @@
+package com.yatrasathi.inventory;
+
+import com.yatrasathi.Benchmark;
+import com.yatrasathi.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+/**
+ * Allocations per second on one hot train: every thread books single seats on the same trip, each one a CAS
+ * plus the write-through UPDATE, and then keeps asking once it is sold out, which never reaches the
+ * database. The last case holds each reservation's transaction open for another millisecond, as the rest
+ * of an approval would, on one trip and on a trip per thread. Against H2.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class SeatInventoryBenchmarkTest extends IntegrationTest {
+
+    private static final int THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Autowired
+    private TransactionTemplate transactions;
+
+    @Test
+    void hotTrainAllocations() throws Exception {
+        SeatKey trip = trip(Integer.MAX_VALUE / 2);
+        benchmark("SeatInventory, hot train").unit("allocations")
+                .throughput((thread, call) -> seatInventory.reserve(trip, 1));
+    }
+
+    @Test
+    void soldOutRejections() throws Exception {
+        SeatKey trip = trip(1);
+        seatInventory.reserve(trip, 1);
+        benchmark("SeatInventory, sold-out trip").unit("rejections")
+                .throughput((thread, call) -> seatInventory.reserve(trip, 1));
+    }
+
+    @Test
+    void rowLockHeldUntilCommit() throws Exception {
+        SeatKey hot = trip(Integer.MAX_VALUE / 2);
+        SeatKey[] own = new SeatKey[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            own[t] = trip(Integer.MAX_VALUE / 2);
+        }
+        benchmark("SeatInventory, 1 ms transactions, one trip").unit("allocations")
+                .throughput((thread, call) -> reserveAndHold(hot));
+        benchmark("SeatInventory, 1 ms transactions, a trip per thread").unit("allocations")
+                .throughput((thread, call) -> reserveAndHold(own[thread]));
+    }
+
+    private long reserveAndHold(SeatKey trip) {
+        return transactions.execute(status -> {
+            int held = seatInventory.reserve(trip, 1);
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return held;
+        });
+    }
+
+    private static Benchmark benchmark(String name) {
+        return Benchmark.named(name).threads(THREADS).measure(Duration.ofSeconds(3));
+    }
+
+    private SeatKey trip(int capacity) {
+        Long trainId = nextTrainId();
+        seatInventory.setCapacity(trainId, travelDate(), "3A", capacity);
+        return SeatKey.of(trainId, travelDate(), "3A");
+    }
+}
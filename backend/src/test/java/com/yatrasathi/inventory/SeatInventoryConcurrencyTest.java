@@ -0,0 +1,108 @@
+package com.yatrasathi.inventory;
+
+import com.yatrasathi.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SeatInventoryConcurrencyTest extends IntegrationTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Autowired
+    private SeatQuotaRepository quotaRepository;
+
+    @Autowired
+    private TransactionTemplate transactions;
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        SeatKey trip = trip("3A", 100);
+
+        List<Object> taken = race(THREADS, () -> {
+            int mine = 0;
+            while (seatInventory.reserve(trip, 1) == 1) {
+                mine++;
+            }
+            return mine;
+        });
+
+        assertEquals(100, taken.stream().mapToInt(o -> (Integer) o).sum());
+        assertCounts(trip, 100);
+    }
+
+    @Test
+    void mixedGroupSizesFillExactlyToCapacity() throws Exception {
+        SeatKey trip = trip("SL", 97);
+
+        // Groups of 1-4 seats; once a group no longer fits, that thread drops to single seats
+        List<Object> taken = race(THREADS, i -> {
+            int group = 1 + i % 4;
+            int mine = 0;
+            while (true) {
+                int held = seatInventory.reserve(trip, group);
+                if (held == SeatInventory.SOLD_OUT) {
+                    if (group == 1) {
+                        return mine;
+                    }
+                    group = 1;
+                    continue;
+                }
+                mine += held;
+            }
+        });
+
+        assertEquals(97, taken.stream().mapToInt(o -> (Integer) o).sum());
+        assertCounts(trip, 97);
+    }
+
+    @Test
+    void churnOfReserveAndReleaseLeavesNothingBehind() throws Exception {
+        SeatKey trip = trip("2A", 8);
+
+        race(THREADS, () -> {
+            for (int i = 0; i < 200; i++) {
+                if (seatInventory.reserve(trip, 2) == 2) {
+                    seatInventory.release(trip, 2);
+                }
+            }
+            return null;
+        });
+
+        assertCounts(trip, 0);
+    }
+
+    @Test
+    void rolledBackReservationsAreGivenBack() throws Exception {
+        SeatKey trip = trip("1A", 10);
+
+        race(THREADS, () -> transactions.execute(status -> {
+            int held = seatInventory.reserve(trip, 1);
+            status.setRollbackOnly();
+            return held;
+        }));
+
+        assertCounts(trip, 0);
+    }
+
+    private SeatKey trip(String travelClass, int capacity) {
+        Long trainId = nextTrainId();
+        seatInventory.setCapacity(trainId, travelDate(), travelClass, capacity);
+        return SeatKey.of(trainId, travelDate(), travelClass);
+    }
+
+    // Memory and the write-through table must agree
+    private void assertCounts(SeatKey trip, int reserved) {
+        assertEquals(reserved, seatInventory.availability(trip).reserved());
+        SeatQuota row = quotaRepository.findByTrainIdAndTravelDateAndTravelClass(trip.trainId(), trip.travelDate(), trip.travelClass())
+                .orElseThrow();
+        assertEquals(reserved, row.getReserved());
+    }
+}
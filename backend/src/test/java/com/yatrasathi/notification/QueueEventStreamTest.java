@@ -0,0 +1,191 @@
+package com.yatrasathi.notification;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueueEventStreamTest extends IntegrationTest {
+
+    @Autowired
+    private QueueEventStream events;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void customersOnlySeeTheirOwnRequestsAndStaffSeeEverything() throws Exception {
+        User owner = customer();
+        User other = customer();
+        RecordingEmitter staff = new RecordingEmitter();
+        RecordingEmitter ownerStream = new RecordingEmitter();
+        RecordingEmitter otherStream = new RecordingEmitter();
+        events.subscribe(staff, null, true);
+        events.subscribe(ownerStream, owner.getId(), false);
+        events.subscribe(otherStream, other.getId(), false);
+        try {
+            String ticket = "\"ticketId\":" + booking(owner, nextTrainId(), "SL", 1).getId() + ",";
+
+            assertTrue(staff.await(ticket));
+            assertTrue(ownerStream.await(ticket));
+            assertTrue(otherStream.await("connected"));
+            assertFalse(otherStream.received(ticket));
+        } finally {
+            // Disconnect the way a client that went away does: the next write fails
+            List.of(staff, ownerStream, otherStream).forEach(RecordingEmitter::hangUp);
+            events.heartbeat();
+        }
+    }
+
+    @Test
+    void aWriteBlockedPastTheSendTimeoutIsDisconnectedWithoutStallingOthers() throws Exception {
+        QueueEventStream stream = new QueueEventStream(objectMapper, 1, 60_000, 100, 64, 200, 8);
+        try {
+            RecordingEmitter stuck = new RecordingEmitter();
+            RecordingEmitter healthy = new RecordingEmitter();
+            stuck.block();
+            // The stuck client's first write takes the only sender thread
+            stream.subscribe(stuck, 1L, true);
+            assertTrue(stuck.sending.await(5, TimeUnit.SECONDS));
+            stream.subscribe(healthy, 2L, true);
+            Thread.sleep(300);
+
+            stream.disconnectStalledSends();
+            stream.publish(QueueEvent.created(10L, 2L));
+
+            assertTrue(healthy.await("\"ticketId\":10,"));
+            assertEquals(1L, stream.stats().get("stalledDisconnects"));
+            assertEquals(1, stream.stats().get("subscribers"));
+            assertEquals(1, stream.stats().get("spareSenders"));
+
+            // Once the blocked write returns, the spare thread goes away and the stalled stream is closed
+            stuck.release();
+            assertTrue(eventually(() -> stuck.completed && Integer.valueOf(0).equals(stream.stats().get("spareSenders"))));
+            assertFalse(stuck.received("ticketId"));
+        } finally {
+            stream.shutdown();
+        }
+    }
+
+    @Test
+    void aSubscriberThatFallsTooFarBehindIsDisconnectedWithoutBlockingPublishers() throws Exception {
+        QueueEventStream stream = new QueueEventStream(objectMapper, 1, 60_000, 100, 4, 60_000, 8);
+        try {
+            RecordingEmitter slow = new RecordingEmitter();
+            slow.block();
+            stream.subscribe(slow, 1L, true);
+            assertTrue(slow.sending.await(5, TimeUnit.SECONDS));
+
+            // Closing the stream must not wait for its blocked write
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                for (long i = 1; i <= 5; i++) {
+                    stream.publish(QueueEvent.created(i, 1L));
+                }
+            });
+            assertEquals(1L, stream.stats().get("slowDisconnects"));
+            assertEquals(0, stream.stats().get("subscribers"));
+
+            slow.release();
+            assertTrue(eventually(() -> slow.completed));
+            assertFalse(slow.received("ticketId"));
+        } finally {
+            stream.shutdown();
+        }
+    }
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+
+    /** Keeps what would have gone to the client; can hold a write blocked the way a client that stopped reading does. */
+    private static final class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        private final StringBuilder seen = new StringBuilder();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private volatile CountDownLatch gate;
+        private volatile boolean gone;
+        private volatile boolean completed;
+
+        void block() {
+            gate = new CountDownLatch(1);
+        }
+
+        void release() {
+            gate.countDown();
+        }
+
+        void hangUp() {
+            gone = true;
+        }
+
+        // Synchronized like the method it overrides, so complete() waits for a blocked write as it would for real
+        @Override
+        public synchronized void send(Set<DataWithMediaType> items) throws IOException {
+            sending.countDown();
+            CountDownLatch blocked = gate;
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (gone) {
+                throw new IOException("Broken pipe");
+            }
+            StringBuilder frame = new StringBuilder();
+            items.forEach(item -> frame.append(item.getData()));
+            frames.add(frame.toString());
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+            super.complete();
+        }
+
+        boolean await(String text) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!received(text)) {
+                String frame = frames.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (frame == null) {
+                    return false;
+                }
+                seen.append(frame);
+            }
+            return true;
+        }
+
+        boolean received(String text) {
+            String frame;
+            while ((frame = frames.poll()) != null) {
+                seen.append(frame);
+            }
+            return seen.indexOf(text) >= 0;
+        }
+    }
+}
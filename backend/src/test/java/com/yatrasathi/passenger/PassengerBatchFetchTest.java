@@ -0,0 +1,80 @@
+package com.yatrasathi.passenger;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PassengerBatchFetchTest extends IntegrationTest {
+
+    @Autowired
+    private PassengerController controller;
+
+    @Autowired
+    private PassengerService passengerService;
+
+    @Test
+    void customersOnlyGetTheirOwnBookingsPassengers() {
+        User owner = customer();
+        User other = customer();
+        Long trainId = nextTrainId();
+        Long mine = booking(owner, trainId, "SL", 2).getId();
+        Long empty = booking(owner, trainId, "SL", 1).getId();
+        Long theirs = booking(other, trainId, "SL", 1).getId();
+        passengerService.addPassengers(mine, new ArrayList<>(List.of(passenger("Asha", 34), passenger("Ravi", 36))));
+        passengerService.addPassengers(theirs, new ArrayList<>(List.of(passenger("Meera", 29))));
+        List<Long> ids = Arrays.asList(theirs, mine, null, Long.MAX_VALUE, empty, mine);
+
+        Map<Long, List<PassengerSummary>> asOwner = fetch(ids, owner.getId(), "ROLE_CUSTOMER");
+        assertEquals(List.of(theirs, mine, Long.MAX_VALUE, empty), List.copyOf(asOwner.keySet()));
+        assertEquals(List.of("Asha", "Ravi"), asOwner.get(mine).stream().map(PassengerSummary::name).sorted().toList());
+        assertTrue(asOwner.get(mine).stream().allMatch(p -> mine.equals(p.ticketRequestId())));
+        // Someone else's booking looks no different from one that does not exist
+        assertTrue(asOwner.get(theirs).isEmpty());
+        assertTrue(asOwner.get(Long.MAX_VALUE).isEmpty());
+        assertTrue(asOwner.get(empty).isEmpty());
+
+        Map<Long, List<PassengerSummary>> asStaff = fetch(ids, null, "ROLE_EMPLOYEE");
+        assertEquals(List.of("Meera"), asStaff.get(theirs).stream().map(PassengerSummary::name).toList());
+        assertEquals(2, asStaff.get(mine).size());
+    }
+
+    @Test
+    void tooManyIdsIsABadRequest() {
+        User owner = customer();
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 201; id++) {
+            ids.add(id);
+        }
+
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> fetch(ids, owner.getId(), "ROLE_CUSTOMER"));
+        assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        assertEquals(200, fetch(ids.subList(0, 200), owner.getId(), "ROLE_CUSTOMER").size());
+    }
+
+    private Map<Long, List<PassengerSummary>> fetch(List<Long> ids, Long userId, String role) {
+        Authentication authentication = new UsernamePasswordAuthenticationToken("user@test", null, List.of(new SimpleGrantedAuthority(role)));
+        return controller.getPassengersByTicketIds(ids, userId, authentication).getBody();
+    }
+
+    private static Passenger passenger(String name, int age) {
+        Passenger passenger = new Passenger();
+        passenger.setName(name);
+        passenger.setAge(age);
+        return passenger;
+    }
+}
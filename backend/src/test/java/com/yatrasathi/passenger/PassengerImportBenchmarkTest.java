@@ -0,0 +1,73 @@
+package com.yatrasathi.passenger;
+
+import com.yatrasathi.Benchmark;
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Time to upload a 10,000 passenger group through {@link PassengerImportService}: streamed parse, validation,
+ * duplicate check and batched inserts, against H2. Two warm-up uploads, then five timed ones, each onto a
+ * fresh booking.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class PassengerImportBenchmarkTest extends IntegrationTest {
+
+    private static final int PASSENGERS = 10_000;
+    private static final String[] BERTHS = {"LOWER", "MIDDLE", "UPPER", "SIDE_LOWER", "SIDE_UPPER", "NONE"};
+
+    @Autowired
+    private PassengerImportService passengerImportService;
+
+    private long aadhaar = System.nanoTime() % 1_000_000_000L * 1000;
+    private User customer;
+    private Long bookingId;
+    private byte[] body;
+
+    @Test
+    void importTenThousandPassengers() throws Exception {
+        Benchmark.named(String.format("Passenger import of %,d", PASSENGERS)).latency(2, 5, this::prepareUpload, (thread, call) -> {
+            PassengerImport result = passengerImportService.importPassengers(bookingId, customer.getId(), customer.getEmail(),
+                    new ByteArrayInputStream(body));
+            assertEquals(PASSENGERS, result.imported());
+            return result.imported();
+        });
+    }
+
+    // Each upload goes onto a fresh booking of a fresh customer
+    private void prepareUpload() {
+        SecurityContextHolder.clearContext();
+        customer = customer();
+        bookingId = booking(customer, nextTrainId(), "SL", PASSENGERS).getId();
+        body = passengers();
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                customer.getEmail(), null, List.of(new SimpleGrantedAuthority("ROLE_CUSTOMER"))));
+    }
+
+    // Distinct aadhaar numbers across uploads, so no upload trips the duplicate check of another
+    private byte[] passengers() {
+        StringBuilder json = new StringBuilder(PASSENGERS * 110).append('[');
+        for (int i = 0; i < PASSENGERS; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":\"Passenger ").append(i)
+                    .append("\",\"age\":").append(18 + i % 60)
+                    .append(",\"gender\":\"").append(i % 2 == 0 ? "F" : "M")
+                    .append("\",\"aadhaar\":\"").append(String.format("%012d", ++aadhaar % 1_000_000_000_000L))
+                    .append("\",\"berthPreference\":\"").append(BERTHS[i % BERTHS.length]).append("\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,136 @@
+package com.yatrasathi.passenger;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.ChangeVersions;
+import com.yatrasathi.ticket.TicketCancellationService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PassengerIndexTest extends IntegrationTest {
+
+    @Autowired
+    private PassengerService passengerService;
+
+    @Autowired
+    private TicketCancellationService cancellationService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbc;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private ChangeVersions changeVersions;
+
+    @Value("${security.jwt.secret}")
+    private String secret;
+
+    @Test
+    void anAadhaarAlreadyBookedForTheDateIsRejectedUntilThatBookingIsCancelled() {
+        Long trainId = nextTrainId();
+        String aadhaar = aadhaar();
+        Long first = booking(customer(), trainId, "SL", 1).getId();
+        Long second = booking(customer(), nextTrainId(), "SL", 1).getId();
+        passengerService.addPassengers(first, passengers(passenger("Asha", 34, aadhaar)));
+
+        // Another customer, another train, same day, spaced differently: still the same person
+        String spaced = aadhaar.substring(0, 4) + " " + aadhaar.substring(4, 8) + " " + aadhaar.substring(8);
+        ResponseStatusException e = assertThrows(ResponseStatusException.class,
+                () -> passengerService.addPassengers(second, passengers(passenger("Kiran", 40, null), passenger("A. Sha", 34, spaced))));
+        assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+        assertTrue(e.getReason().contains("booking " + first), e.getReason());
+        // Rejected as a whole: the other passenger was not inserted either
+        assertEquals(0L, passengerCount(second));
+
+        cancellationService.cancel(first, null, true, "staff@test", "test", null);
+        passengerService.addPassengers(second, passengers(passenger("Asha", 34, aadhaar)));
+        assertEquals(1L, passengerCount(second));
+    }
+
+    @Test
+    void aSnapshotReloadsWithWhatChangedSinceItWasWritten(@TempDir Path dir) {
+        Path path = dir.resolve("passenger-index.bin");
+        Long trainId = nextTrainId();
+        String kept = aadhaar();
+        String cancelled = aadhaar();
+        String later = aadhaar();
+        Long keptBooking = booking(customer(), trainId, "SL", 1).getId();
+        Long cancelledBooking = booking(customer(), trainId, "SL", 1).getId();
+        passengerService.addPassengers(keptBooking, passengers(passenger("Asha", 34, kept)));
+        passengerService.addPassengers(cancelledBooking, passengers(passenger("Ravi", 36, cancelled)));
+
+        PassengerIndex written = index(path, secret);
+        written.load();
+        written.snapshot();
+        assertTrue(Files.isRegularFile(path));
+        assertEquals(1L, written.stats().get("snapshotsWritten"));
+
+        // Changes the snapshot cannot hold: a passenger inserted and a booking cancelled after it was written
+        Long laterBooking = booking(customer(), trainId, "SL", 1).getId();
+        passengerService.addPassengers(laterBooking, passengers(passenger("Meera", 29, later)));
+        cancellationService.cancel(cancelledBooking, null, true, "staff@test", "test", null);
+
+        PassengerIndex reloaded = index(path, secret);
+        reloaded.load();
+        assertEquals("snapshot", reloaded.stats().get("loadedFrom"));
+        assertRejected(reloaded, kept, trainId);
+        assertRejected(reloaded, later, trainId);
+        assertEquals(List.of(), claim(reloaded, cancelled, trainId));
+
+        // A snapshot keyed with another secret cannot be matched against, so it is not used
+        PassengerIndex rekeyed = index(path, secret + "-rotated");
+        rekeyed.load();
+        assertEquals("rebuild", rekeyed.stats().get("loadedFrom"));
+        assertRejected(rekeyed, kept, trainId);
+    }
+
+    private PassengerIndex index(Path path, String hashSecret) {
+        return new PassengerIndex(namedJdbc, changeVersions, hashSecret, path.toString(), true, false);
+    }
+
+    private static void assertRejected(PassengerIndex index, String aadhaar, Long trainId) {
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> claim(index, aadhaar, trainId));
+        assertEquals(HttpStatus.CONFLICT, e.getStatusCode());
+    }
+
+    private static List<DuplicatePassenger> claim(PassengerIndex index, String aadhaar, Long trainId) {
+        return index.claim(Long.MAX_VALUE, Long.MAX_VALUE, trainId, travelDate(), passengers(passenger("Someone", 50, aadhaar)), 0);
+    }
+
+    private long passengerCount(Long bookingId) {
+        return jdbc.queryForObject("select count(*) from passengers where booking_id = ?", Long.class, bookingId);
+    }
+
+    // Unique per call, so matches can only come from this test's own passengers
+    private static String aadhaar() {
+        return String.format("7%011d", nextTrainId());
+    }
+
+    private static List<Passenger> passengers(Passenger... passengers) {
+        return new ArrayList<>(List.of(passengers));
+    }
+
+    private static Passenger passenger(String name, int age, String aadhaar) {
+        Passenger passenger = new Passenger();
+        passenger.setName(name);
+        passenger.setAge(age);
+        passenger.setAadhaar(aadhaar);
+        return passenger;
+    }
+}
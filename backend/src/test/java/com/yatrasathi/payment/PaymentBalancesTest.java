@@ -0,0 +1,90 @@
+package com.yatrasathi.payment;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.TicketEnums.PaymentMode;
+import com.yatrasathi.common.TicketEnums.PaymentStatus;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PaymentBalancesTest extends IntegrationTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentBalances balances;
+
+    @Autowired
+    private TransactionTemplate transactions;
+
+    @Test
+    void completingAPaymentMovesTheCachedBalance() {
+        User customer = customer();
+        asStaff();
+        Long id = booking(customer, nextTrainId(), "SL", 1).getId();
+        assertEquals(0, BigDecimal.ZERO.compareTo(paymentService.totalPaid(id)));
+
+        // Cached now: reading again does not sum
+        long queries = sumQueries();
+        paymentService.totalPaid(id);
+        assertEquals(queries, sumQueries());
+
+        // Pending payments are not paid yet
+        Long first = pay(id, customer, "250.00");
+        Long second = pay(id, customer, "100.00");
+        assertEquals(0, BigDecimal.ZERO.compareTo(paymentService.totalPaid(id)));
+
+        paymentService.markCompleted(first);
+        assertEquals(new BigDecimal("250.00"), paymentService.totalPaid(id));
+        paymentService.updatePaymentStatus(second, PaymentStatus.COMPLETED);
+        assertEquals(new BigDecimal("350.00"), paymentService.totalPaid(id));
+        paymentService.updatePaymentStatus(second, PaymentStatus.FAILED);
+        assertEquals(new BigDecimal("250.00"), paymentService.totalPaid(id));
+
+        // A refund is a negative payment, and counts once it completes
+        Long refund = pay(id, customer, "-62.50");
+        paymentService.markCompleted(refund);
+        assertEquals(new BigDecimal("187.50"), paymentService.totalPaid(id));
+        queries = sumQueries();
+        assertEquals(new BigDecimal("187.50"), paymentService.totalPaid(id));
+        assertEquals(queries, sumQueries());
+    }
+
+    @Test
+    void aRolledBackCompletionLeavesTheBalanceAlone() {
+        User customer = customer();
+        asStaff();
+        Long id = booking(customer, nextTrainId(), "SL", 1).getId();
+        Long payment = pay(id, customer, "40.00");
+        paymentService.markCompleted(payment);
+        Long pending = pay(id, customer, "60.00");
+        assertEquals(new BigDecimal("40.00"), paymentService.totalPaid(id));
+
+        transactions.executeWithoutResult(status -> {
+            paymentService.markCompleted(pending);
+            status.setRollbackOnly();
+        });
+
+        assertEquals(new BigDecimal("40.00"), paymentService.totalPaid(id));
+        paymentService.markCompleted(pending);
+        assertEquals(new BigDecimal("100.00"), paymentService.totalPaid(id));
+    }
+
+    private Long pay(Long ticketRequestId, User customer, String amount) {
+        Payment payment = new Payment();
+        payment.setUser(customer);
+        payment.setAmount(new BigDecimal(amount));
+        payment.setMode(PaymentMode.UPI);
+        return paymentService.makePayment(ticketRequestId, customer.getId(), payment).getId();
+    }
+
+    private long sumQueries() {
+        return (Long) balances.stats().get("sumQueries");
+    }
+}
@@ -0,0 +1,124 @@
+package com.yatrasathi.payment;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.TicketEnums.PaymentMode;
+import com.yatrasathi.common.TicketEnums.PaymentStatus;
+import com.yatrasathi.ticket.TicketCancellationService;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RefundTest extends IntegrationTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private RefundService refundService;
+
+    @Autowired
+    private TicketCancellationService cancellationService;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Test
+    void slabsPayTheHighestPercentReached() {
+        RefundSlabs slabs = new RefundSlabs("48:75,12:50,4:25");
+        LocalDateTime departure = LocalDateTime.of(2026, 1, 10, 6, 0);
+
+        assertEquals(75, slabs.percent(departure, departure.minusDays(30)));
+        assertEquals(75, slabs.percent(departure, departure.minusHours(48)));
+        assertEquals(50, slabs.percent(departure, departure.minusHours(47)));
+        assertEquals(50, slabs.percent(departure, departure.minusHours(12)));
+        assertEquals(25, slabs.percent(departure, departure.minusHours(11)));
+        assertEquals(25, slabs.percent(departure, departure.minusHours(4)));
+        assertEquals(0, slabs.percent(departure, departure.minusHours(3)));
+        assertEquals(0, slabs.percent(departure, departure.plusMinutes(1)));
+    }
+
+    @Test
+    void cancellingRefundsTheSlabShareOfWhatWasPaid() throws InterruptedException {
+        User customer = customer();
+        Long trainId = nextTrainId();
+        asStaff();
+        Long paid = booking(customer, trainId, "SL", 1).getId();
+        Long unpaid = booking(customer, trainId, "SL", 1).getId();
+        pay(paid, customer, "200.00");
+        // A payment that never completed is not refunded
+        paymentService.makePayment(paid, customer.getId(), payment(customer, "999.00"));
+
+        // The train is unknown, so departure is the start of the travel date, 30 days out: the 75% slab
+        cancellationService.cancel(paid, null, true, "staff@test", "test", null);
+        cancellationService.cancel(unpaid, null, true, "staff@test", "test", null);
+        assertTrue(settled(paid) && settled(unpaid));
+
+        List<Map<String, Object>> refunds = refunds(paid);
+        assertEquals(1, refunds.size());
+        assertEquals(new BigDecimal("-150.00"), refunds.get(0).get("amount"));
+        assertEquals(PaymentStatus.PENDING.name(), refunds.get(0).get("status"));
+        assertEquals(PaymentMode.UPI.name(), refunds.get(0).get("mode"));
+        assertEquals(customer.getId(), ((Number) refunds.get(0).get("user_id")).longValue());
+        assertEquals(0, refunds(unpaid).size());
+    }
+
+    @Test
+    void aRequestFlaggedAgainIsNeverRefundedTwice() throws InterruptedException {
+        User customer = customer();
+        asStaff();
+        Long id = booking(customer, nextTrainId(), "SL", 1).getId();
+        pay(id, customer, "80.00");
+        cancellationService.cancel(id, null, true, "staff@test", "test", null);
+        assertTrue(settled(id));
+        assertEquals(1, refunds(id).size());
+
+        // What a drain that wrote its refunds but was retried would find: the flag still set, the refund already there
+        jdbc.update("update bookings set refund_pending = true, refund_percent = 100 where booking_id = ?", id);
+        refundService.trigger();
+        assertTrue(settled(id));
+
+        List<Map<String, Object>> refunds = refunds(id);
+        assertEquals(1, refunds.size());
+        assertEquals(new BigDecimal("-60.00"), refunds.get(0).get("amount"));
+    }
+
+    private void pay(Long ticketRequestId, User customer, String amount) {
+        Long paymentId = paymentService.makePayment(ticketRequestId, customer.getId(), payment(customer, amount)).getId();
+        paymentService.markCompleted(paymentId);
+    }
+
+    private static Payment payment(User customer, String amount) {
+        Payment payment = new Payment();
+        payment.setUser(customer);
+        payment.setAmount(new BigDecimal(amount));
+        payment.setMode(PaymentMode.UPI);
+        return payment;
+    }
+
+    private List<Map<String, Object>> refunds(Long ticketRequestId) {
+        return jdbc.queryForList("select amount, status, mode, user_id from payments where ticket_request_id = ? and reference = ?",
+                ticketRequestId, RefundWriter.REFERENCE_PREFIX + ticketRequestId);
+    }
+
+    // The refund stage runs on its own thread once the cancellation commits
+    private boolean settled(Long ticketRequestId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (Boolean.TRUE.equals(jdbc.queryForObject("select refund_pending from bookings where booking_id = ?", Boolean.class, ticketRequestId))) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+}
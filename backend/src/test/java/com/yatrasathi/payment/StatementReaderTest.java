@@ -0,0 +1,96 @@
+package com.yatrasathi.payment;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StatementReaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void splitsQuotedFieldsWithCommasAndEscapedQuotes() throws IOException {
+        Path file = write("\uFEFFreference,amount,note\r\n"
+                + "UTR1,100.00,\"plain, with comma\"\r\n"
+                + "UTR2,200.50,\"say \"\"hi\"\"\"\r\n");
+        try (StatementReader reader = new StatementReader(file, 0)) {
+            assertTrue(reader.next());
+            assertEquals(List.of("reference", "amount", "note"), new ArrayList<>(reader.fields()));
+            assertTrue(reader.next());
+            assertEquals(List.of("UTR1", "100.00", "plain, with comma"), new ArrayList<>(reader.fields()));
+            assertTrue(reader.next());
+            assertEquals(List.of("UTR2", "200.50", "say \"hi\""), new ArrayList<>(reader.fields()));
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void keepsLineBreaksInsideQuotedFieldsInOneRecord() throws IOException {
+        Path file = write("reference,amount,note\n"
+                + "UTR1,100.00,\"first line\nsecond line\"\n"
+                + "UTR2,200.00,after\n");
+        try (StatementReader reader = new StatementReader(file, 0)) {
+            assertTrue(reader.next());
+            assertTrue(reader.next());
+            assertEquals(2, reader.lineNumber());
+            assertEquals(List.of("UTR1", "100.00", "first line\nsecond line"), new ArrayList<>(reader.fields()));
+            assertTrue(reader.next());
+            // Numbered by the physical line the record starts on
+            assertEquals(4, reader.lineNumber());
+            assertEquals(List.of("UTR2", "200.00", "after"), new ArrayList<>(reader.fields()));
+            assertFalse(reader.next());
+        }
+    }
+
+    @Test
+    void followsAQuotedRecordAcrossMappedWindows() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        int rows = 0;
+        // Past one 64 KiB window, with a multi-line record straddling every boundary somewhere
+        while (csv.length() < 3 * StatementReader.MAX_LINE_BYTES) {
+            csv.append("UTR").append(rows).append(",1.00,\"a\nb\"\n");
+            rows++;
+        }
+        try (StatementReader reader = new StatementReader(write(csv.toString()), StatementReader.MAX_LINE_BYTES)) {
+            int read = 0;
+            while (reader.next()) {
+                assertEquals(List.of("UTR" + read, "1.00", "a\nb"), new ArrayList<>(reader.fields()));
+                assertEquals(2L * read + 1, reader.lineNumber());
+                read++;
+            }
+            assertEquals(rows, read);
+        }
+    }
+
+    @Test
+    void skipsRecordsPastTheLengthLimit() throws IOException {
+        String huge = "x".repeat(StatementReader.MAX_LINE_BYTES + 1);
+        Path file = write("UTR1,1.00\n\"" + huge + "\n" + huge + "\"\nUTR2,2.00\n");
+        try (StatementReader reader = new StatementReader(file, 0)) {
+            assertTrue(reader.next());
+            assertFalse(reader.tooLong());
+            assertTrue(reader.next());
+            assertTrue(reader.tooLong());
+            assertTrue(reader.next());
+            assertEquals(List.of("UTR2", "2.00"), new ArrayList<>(reader.fields()));
+            assertEquals(4, reader.lineNumber());
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        Path file = dir.resolve("statement.csv");
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+}
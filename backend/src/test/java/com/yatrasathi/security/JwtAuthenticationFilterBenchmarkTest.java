@@ -0,0 +1,64 @@
+package com.yatrasathi.security;
+
+import com.yatrasathi.Benchmark;
+import com.yatrasathi.IntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Per-request latency of {@link JwtAuthenticationFilter} for the three ways it resolves a principal: from
+ * the token's signed claims, from {@link UserPrincipalCache}, and (cache cleared before every request) from
+ * the users table, against H2.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class JwtAuthenticationFilterBenchmarkTest extends IntegrationTest {
+
+    private static final String EMPLOYEE = "employee1@yatrasathi.com";
+    private static final int REQUESTS = 20_000;
+
+    @Autowired
+    private JwtAuthenticationFilter filter;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private UserPrincipalCache userPrincipalCache;
+
+    @Test
+    void principalResolution() throws Exception {
+        String claims = jwtService.generateToken(EMPLOYEE, Map.of("userId", 100L, "role", "EMPLOYEE"));
+        // Tokens issued before the claims were added carry only the subject
+        String subjectOnly = jwtService.generateToken(EMPLOYEE, Map.of());
+
+        measure("signed claims", claims, false);
+        measure("principal cache", subjectOnly, false);
+        measure("users table", subjectOnly, true);
+    }
+
+    private void measure(String label, String token, boolean coldCache) throws Exception {
+        Benchmark.named("JwtAuthenticationFilter, " + label).latency(REQUESTS, REQUESTS,
+                () -> {
+                    if (coldCache) {
+                        userPrincipalCache.removeUserFromCache(EMPLOYEE);
+                    }
+                },
+                (thread, call) -> {
+                    MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tickets/my");
+                    request.addHeader("Authorization", "Bearer " + token);
+                    filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+                    assertNotNull(SecurityContextHolder.getContext().getAuthentication());
+                    SecurityContextHolder.clearContext();
+                    return 1;
+                });
+    }
+}
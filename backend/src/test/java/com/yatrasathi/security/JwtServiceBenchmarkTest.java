@@ -0,0 +1,55 @@
+package com.yatrasathi.security;
+
+import com.yatrasathi.Benchmark;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cost of checking one bearer token: {@link JwtService#verify} (one parse with the prebuilt parser) against
+ * the earlier filter path, which built a key and parser for each of its three parses (subject, then subject
+ * and expiry again).
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class JwtServiceBenchmarkTest {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-0123456789";
+
+    @Test
+    void verifyAgainstPerCallParsing() throws Exception {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "secret", SECRET);
+        ReflectionTestUtils.setField(jwtService, "expirationMinutes", 60L);
+        jwtService.init();
+        String token = jwtService.generateToken("bench@test", Map.of("userId", 42L, "role", "CUSTOMER"));
+        assertEquals("bench@test", jwtService.verify(token).getSubject());
+
+        double verify = Benchmark.named("JWT verify").unit("tokens")
+                .throughput((thread, call) -> jwtService.verify(token).getSubject().length());
+        double perCall = Benchmark.named("JWT per-call parsers x3").unit("tokens")
+                .throughput((thread, call) -> {
+                    String subject = parse(token).getSubject();
+                    boolean valid = subject.equals(parse(token).getSubject()) && !parse(token).getExpiration().before(new Date());
+                    return valid ? subject.length() : 0;
+                });
+        assertTrue(verify > perCall, "verify should beat three per-call parses");
+    }
+
+    private static Claims parse(String token) {
+        return Jwts.parserBuilder()
+                .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+    }
+}
@@ -0,0 +1,35 @@
+package com.yatrasathi.security;
+
+import com.yatrasathi.Benchmark;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+/**
+ * Throughput of {@link RateLimiter#tryAcquire} with every thread on a few hot keys and with a spread of
+ * keys.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class RateLimiterBenchmarkTest {
+
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    @Test
+    void hotKeys() throws Exception {
+        run("hot keys", 4);
+    }
+
+    @Test
+    void spreadKeys() throws Exception {
+        run("spread keys", 50_000);
+    }
+
+    private static void run(String label, int keyCount) throws Exception {
+        RateLimiter limiter = new RateLimiter("bench", 600, 100, 100_000);
+        String[] keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "10.0." + (i >> 8) + "." + (i & 255);
+        }
+        Benchmark.named("RateLimiter, " + label).threads(THREADS).unit("acquires")
+                .throughput((thread, call) -> limiter.tryAcquire(keys[(int) ((thread + call) % keys.length)], System.nanoTime()));
+    }
+}
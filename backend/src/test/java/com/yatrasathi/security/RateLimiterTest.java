@@ -0,0 +1,121 @@
+package com.yatrasathi.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    @Test
+    void admitsBurstThenRejectsUntilATokenRefills() {
+        RateLimiter limiter = new RateLimiter("login", 60, 3, 10);
+        long now = 1_000_000_000L;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("k", now));
+        }
+        long wait = limiter.tryAcquire("k", now);
+        assertTrue(wait > 0 && wait <= TimeUnit.SECONDS.toNanos(1), "wait " + wait);
+        assertEquals(0, limiter.tryAcquire("k", now + wait));
+    }
+
+    @Test
+    void keyCountNeverExceedsTheCap() {
+        RateLimiter limiter = new RateLimiter("login", 1, 1, 100);
+        long now = 0;
+        for (int i = 0; i < 1000; i++) {
+            limiter.tryAcquire("ip-" + i, now);
+        }
+        assertEquals(100, limiter.stats().get("keys"));
+        assertEquals(900L, limiter.stats().get("overflow"));
+    }
+
+    @Test
+    void throttledBucketsSurviveAFloodOfNewKeys() {
+        RateLimiter limiter = new RateLimiter("login", 1, 1, 10);
+        long now = 0;
+        assertEquals(0, limiter.tryAcquire("victim", now));
+        assertTrue(limiter.tryAcquire("victim", now) > 0);
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("flood-" + i, now);
+        }
+        // Nothing was idle, so the victim's bucket was not evicted to make room
+        assertTrue(limiter.tryAcquire("victim", now) > 0);
+    }
+
+    @Test
+    void idleBucketsAreEvictedToMakeRoom() {
+        RateLimiter limiter = new RateLimiter("login", 60, 1, 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, limiter.tryAcquire("old-" + i, 0));
+        }
+        assertEquals(0, limiter.tryAcquire("new", MINUTE));
+        assertEquals(1, limiter.stats().get("keys"));
+    }
+
+    @Test
+    void concurrentCallersShareOneBucketWithoutOverAdmitting() throws Exception {
+        int burst = 500;
+        RateLimiter limiter = new RateLimiter("booking", 1, burst, 1000);
+        int threads = 8;
+        int attemptsPerThread = 1000;
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < attemptsPerThread; i++) {
+                        if (limiter.tryAcquire("hot", 0) == 0) {
+                            admitted.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(burst, admitted.get());
+        assertEquals((long) burst, limiter.stats().get("allowed"));
+    }
+
+    @Test
+    void concurrentNewKeysRespectTheCap() throws Exception {
+        int maxKeys = 200;
+        RateLimiter limiter = new RateLimiter("signup", 1, 1, maxKeys);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                int offset = t * 10_000;
+                pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1000; i++) {
+                        limiter.tryAcquire("ip-" + (offset + i), 0);
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(maxKeys, limiter.stats().get("keys"));
+    }
+}
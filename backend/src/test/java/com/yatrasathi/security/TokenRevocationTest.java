@@ -0,0 +1,69 @@
+package com.yatrasathi.security;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.admin.AdminController;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TokenRevocationTest extends IntegrationTest {
+
+    @Autowired
+    private JwtAuthenticationFilter filter;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private AdminController adminController;
+
+    @Test
+    void reactivationDoesNotRestoreTokensIssuedBeforeTheDeactivation() throws Exception {
+        User user = customer();
+        String token = tokenFor(user);
+        assertNotNull(authenticate(token));
+
+        asStaff();
+        adminController.activate(user.getId(), false);
+        adminController.activate(user.getId(), true);
+        SecurityContextHolder.clearContext();
+
+        assertNull(authenticate(token));
+    }
+
+    @Test
+    void aTokenIssuedAfterReactivationIsAccepted() throws Exception {
+        User user = customer();
+        asStaff();
+        adminController.activate(user.getId(), false);
+        adminController.activate(user.getId(), true);
+        SecurityContextHolder.clearContext();
+
+        // Cut-offs and iat have second precision, so a new login lands in a later second
+        Thread.sleep(1_100);
+        assertNotNull(authenticate(tokenFor(user)));
+    }
+
+    private String tokenFor(User user) {
+        return jwtService.generateToken(user.getEmail(), Map.of("userId", user.getId(), "role", user.getRole().name()));
+    }
+
+    private Authentication authenticate(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tickets/my");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+}
@@ -0,0 +1,35 @@
+package com.yatrasathi.ticket;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QueueCursorTest {
+
+    @Test
+    void roundTripsADatedPosition() {
+        QueueCursor cursor = new QueueCursor(LocalDateTime.of(2026, 3, 1, 9, 30, 15, 123_000_000), 42L);
+        QueueCursor decoded = QueueCursor.decode(cursor.encode());
+        assertEquals(cursor, decoded);
+        assertFalse(decoded.undated());
+    }
+
+    @Test
+    void roundTripsAnUndatedPosition() {
+        QueueCursor decoded = QueueCursor.decode(new QueueCursor(null, 7L).encode());
+        assertEquals(new QueueCursor(null, 7L), decoded);
+        assertTrue(decoded.undated());
+    }
+
+    @Test
+    void rejectsGarbageAsBadRequest() {
+        assertThrows(ResponseStatusException.class, () -> QueueCursor.decode("not-a-cursor"));
+        assertThrows(ResponseStatusException.class, () -> QueueCursor.decode(""));
+    }
+}
@@ -0,0 +1,49 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.inventory.SeatInventory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TicketApprovalTest extends IntegrationTest {
+
+    @Autowired
+    private TicketRequestRepository ticketRepo;
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Test
+    void approvingFewerThanOneSeatIsRejected() {
+        Long trainId = nextTrainId();
+        asStaff();
+        seatInventory.setCapacity(trainId, travelDate(), "3A", 10);
+        Long id = booking(customer(), trainId, "3A", 2).getId();
+
+        for (int count : new int[] {0, -3}) {
+            ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> ticketService.approve(id, count, null, false));
+            assertEquals(HttpStatus.BAD_REQUEST, e.getStatusCode());
+        }
+
+        BulkTransitionItem item = new BulkTransitionItem();
+        item.setId(id);
+        item.setCount(0);
+        BulkTransitionResult.Item result = ticketService.bulkTransition(TicketStatus.APPROVED, List.of(item)).results().get(0);
+        assertFalse(result.success());
+        assertEquals("count must be at least 1", result.error());
+
+        TicketRequest untouched = ticketRepo.findById(id).orElseThrow();
+        assertEquals(TicketStatus.PENDING, untouched.getStatus());
+        assertEquals(0L, untouched.getVersion());
+        assertEquals(0, seatInventory.availability(trainId, travelDate(), "3A").reserved());
+    }
+}
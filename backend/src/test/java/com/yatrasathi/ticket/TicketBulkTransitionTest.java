@@ -0,0 +1,111 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.inventory.SeatInventory;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TicketBulkTransitionTest extends IntegrationTest {
+
+    @Autowired
+    private TicketRequestRepository ticketRepo;
+
+    @Autowired
+    private SeatInventory seatInventory;
+
+    @Test
+    void failedItemsAreReportedWhileTheRestCommit() {
+        User customer = customer();
+        Long trainId = nextTrainId();
+        asStaff();
+        seatInventory.setCapacity(trainId, travelDate(), "3A", 3);
+        Long fits = booking(customer, trainId, "3A", 2).getId();
+        Long soldOut = booking(customer, trainId, "3A", 2).getId();
+        Long stale = booking(customer, trainId, "SL", 1).getId();
+        Long alreadyApproved = booking(customer, trainId, "SL", 1).getId();
+        Long noCount = booking(customer, trainId, "SL", 1).getId();
+        ticketService.approve(alreadyApproved, 1, null, false);
+
+        BulkTransitionResult result = ticketService.bulkTransition(TicketStatus.APPROVED, List.of(
+                approve(fits, 2, null), approve(soldOut, 2, null), approve(stale, 1, 7L), approve(alreadyApproved, 1, null),
+                approve(noCount, null, null), approve(fits, 2, null), approve(Long.MAX_VALUE, 1, null)));
+
+        assertEquals(7, result.requested());
+        assertEquals(1, result.succeeded());
+        assertEquals(6, result.failed());
+        List<BulkTransitionResult.Item> items = result.results();
+        assertTrue(items.get(0).success());
+        assertEquals(TicketStatus.APPROVED, items.get(0).status());
+        assertEquals(1L, items.get(0).version());
+        assertError(items.get(1), "Only 1 seats left");
+        assertError(items.get(2), "version");
+        assertError(items.get(3), "APPROVED");
+        assertError(items.get(4), "Missing count");
+        assertError(items.get(5), "appears more than once");
+        assertError(items.get(6), "not found");
+
+        assertEquals(TicketStatus.APPROVED, ticketRepo.findById(fits).orElseThrow().getStatus());
+        assertEquals(2, ticketRepo.findById(fits).orElseThrow().getReservedSeats());
+        for (Long id : List.of(soldOut, stale, noCount)) {
+            TicketRequest untouched = ticketRepo.findById(id).orElseThrow();
+            assertEquals(TicketStatus.PENDING, untouched.getStatus());
+            assertEquals(0L, untouched.getVersion());
+        }
+        assertEquals(2, seatInventory.availability(trainId, travelDate(), "3A").reserved());
+    }
+
+    @Test
+    void aBatchTheDatabaseRejectsRollsBackEveryItem() {
+        User customer = customer();
+        Long trainId = nextTrainId();
+        asStaff();
+        Long first = booking(customer, trainId, "SL", 1).getId();
+        Long second = booking(customer, trainId, "SL", 1).getId();
+        ticketService.approve(first, 1, null, false);
+        ticketService.approve(second, 1, null, false);
+        String firstPnr = ticketRepo.findById(first).orElseThrow().getAssignedPnr();
+
+        // Passes validation, but is too long for the pnr column, so the batch fails after the first row is written
+        assertThrows(DataIntegrityViolationException.class, () -> ticketService.bulkTransition(TicketStatus.TICKET_CREATED, List.of(
+                createTicket(first, "BULK" + first), createTicket(second, "P".repeat(300)))));
+
+        for (Long id : List.of(first, second)) {
+            TicketRequest untouched = ticketRepo.findById(id).orElseThrow();
+            assertEquals(TicketStatus.APPROVED, untouched.getStatus());
+            assertEquals(1L, untouched.getVersion());
+        }
+        assertEquals(firstPnr, ticketRepo.findById(first).orElseThrow().getAssignedPnr());
+    }
+
+    private static void assertError(BulkTransitionResult.Item item, String expected) {
+        assertFalse(item.success());
+        assertTrue(item.error().contains(expected), item.error());
+    }
+
+    private static BulkTransitionItem approve(Long id, Integer count, Long version) {
+        BulkTransitionItem item = new BulkTransitionItem();
+        item.setId(id);
+        item.setCount(count);
+        item.setVersion(version);
+        return item;
+    }
+
+    private static BulkTransitionItem createTicket(Long id, String pnr) {
+        BulkTransitionItem item = new BulkTransitionItem();
+        item.setId(id);
+        item.setPnr(pnr);
+        item.setPaymentAmount(BigDecimal.TEN);
+        return item;
+    }
+}
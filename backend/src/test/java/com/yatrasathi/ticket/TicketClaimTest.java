@@ -0,0 +1,127 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.IntegrationTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TicketClaimTest extends IntegrationTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private TicketClaimService claimService;
+
+    @Autowired
+    private TicketClaimRepository claimRepo;
+
+    @Autowired
+    private TransactionTemplate transactions;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    // The queue is shared by the whole context; lease out whatever earlier tests left so claims see only ours
+    @BeforeEach
+    void drainQueue() {
+        Long drainer = customer().getId();
+        while (!claimService.claimNext(drainer, 50).isEmpty()) {
+        }
+    }
+
+    @Test
+    void racingClaimersNeverShareARequest() throws Exception {
+        assertExclusive();
+    }
+
+    @Test
+    void racingSkipLockedClaimersNeverShareARequest() throws Exception {
+        // H2 understands FOR UPDATE SKIP LOCKED too, so the MySQL path can run here
+        TicketClaimRepository target = AopTestUtils.getTargetObject(claimRepo);
+        ReflectionTestUtils.setField(target, "skipLocked", true);
+        try {
+            assertExclusive();
+        } finally {
+            ReflectionTestUtils.setField(target, "skipLocked", false);
+        }
+    }
+
+    @Test
+    void claimContinuesPastAnUndatedRequestTakenByAnotherClaimer() throws Exception {
+        Long trainId = nextTrainId();
+        Long first = booking(customer(), trainId, "SL", 1).getId();
+        Long second = booking(customer(), trainId, "SL", 1).getId();
+        Long third = booking(customer(), trainId, "SL", 1).getId();
+        jdbc.update("update bookings set booking_date = null where booking_id in (?, ?)", first, second);
+        Long holder = customer().getId();
+        Long claimer = customer().getId();
+
+        // The holder leases the first request and keeps its transaction open while the claimer reads it as free,
+        // so the claimer loses that row, and has to carry on after an undated one
+        CountDownLatch claimedFirst = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<List<Long>> held = CompletableFuture.supplyAsync(() -> transactions.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = claimRepo.claim(holder, 1, now, now.plusMinutes(10));
+            claimedFirst.countDown();
+            try {
+                finish.await(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return ids;
+        }));
+        assertTrue(claimedFirst.await(30, TimeUnit.SECONDS));
+        CompletableFuture<List<TicketSummary>> claimed = CompletableFuture.supplyAsync(() -> claimService.claimNext(claimer, 2));
+        Thread.sleep(300);
+        finish.countDown();
+
+        assertEquals(List.of(first), held.get(30, TimeUnit.SECONDS));
+        assertEquals(Set.of(second, third), claimed.get(30, TimeUnit.SECONDS).stream().map(TicketSummary::id).collect(Collectors.toSet()));
+    }
+
+    private void assertExclusive() throws Exception {
+        Long trainId = nextTrainId();
+        Set<Long> created = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            created.add(booking(customer(), trainId, "SL", 1).getId());
+        }
+        List<Long> agents = new ArrayList<>();
+        for (int i = 0; i <= THREADS; i++) {
+            agents.add(customer().getId());
+        }
+
+        List<Object> outcomes = race(THREADS, i -> claimService.claimNext(agents.get(i), 5));
+
+        Set<Long> claimed = new HashSet<>();
+        for (int i = 0; i < THREADS; i++) {
+            List<?> summaries = assertInstanceOf(List.class, outcomes.get(i));
+            for (Object summary : summaries) {
+                Long id = ((TicketSummary) summary).id();
+                assertTrue(claimed.add(id), "request " + id + " handed out twice");
+                assertEquals(agents.get(i), jdbc.queryForObject("select employee_id from bookings where booking_id = ?", Long.class, id));
+            }
+        }
+        // Claimers that lost every candidate come back short; whatever is left goes to the next claim
+        claimService.claimNext(agents.get(THREADS), 20).forEach(t -> assertTrue(claimed.add(t.id())));
+        assertEquals(created, claimed);
+    }
+}
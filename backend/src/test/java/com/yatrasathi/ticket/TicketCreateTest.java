@@ -0,0 +1,115 @@
+package com.yatrasathi.ticket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TicketCreateTest extends IntegrationTest {
+
+    @Autowired
+    private TicketController controller;
+
+    @Autowired
+    private TicketIntakeService intakeService;
+
+    @Autowired
+    private TicketRequestRepository ticketRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void createIgnoresServerOwnedFields() throws Exception {
+        User customer = customer();
+        TicketRequest existing = booking(customer(), nextTrainId(), "SL", 1);
+
+        asCustomer(customer);
+        TicketRequest saved = controller.create(forgedForm(existing.getId()), customer.getId()).getBody();
+
+        assertServerDefaults(existing, saved.getId());
+    }
+
+    @Test
+    void closedIntakeIgnoresServerOwnedFields() throws Exception {
+        User customer = customer();
+        TicketRequest existing = booking(customer(), nextTrainId(), "SL", 1);
+
+        Authentication authentication = asCustomer(customer);
+        IntakeReceipt receipt = controller.intake(forgedForm(existing.getId()), customer.getId(), authentication)
+                .get(10, TimeUnit.SECONDS).getBody();
+
+        assertEquals(IntakeReceipt.Status.WRITTEN, receipt.status());
+        assertServerDefaults(existing, receipt.bookingId());
+    }
+
+    @Test
+    void openIntakeIgnoresServerOwnedFields() throws Exception {
+        User customer = customer();
+        TicketRequest existing = booking(customer(), nextTrainId(), "SL", 1);
+
+        Authentication authentication = asCustomer(customer);
+        intakeService.setOpen(true);
+        IntakeReceipt receipt;
+        try {
+            receipt = controller.intake(forgedForm(existing.getId()), customer.getId(), authentication)
+                    .get(10, TimeUnit.SECONDS).getBody();
+        } finally {
+            intakeService.setOpen(false);
+        }
+
+        assertEquals(IntakeReceipt.Status.WRITTEN, receipt.status());
+        assertServerDefaults(existing, receipt.bookingId());
+    }
+
+    // Bound the way the controller binds a request body, with every server-owned field of TicketRequest forged
+    private TicketRequestForm forgedForm(Long existingId) throws Exception {
+        String json = """
+                {"id": %d, "trainId": %d, "origin": "NDLS", "destination": "BCT", "travelDate": "%s",
+                 "travelClass": "3A", "passengerCount": 2, "assignedPnr": "F%d",
+                 "status": "CONFIRMED", "bookingStatus": "CONFIRMED", "approvedTicketCount": 4,
+                 "paymentAmount": 1000, "reservedSeats": 5, "waitlistSeats": 3, "refundPercent": 100,
+                 "refundPending": true, "version": 9, "changeVersion": 99}
+                """.formatted(existingId, nextTrainId(), travelDate(), System.nanoTime());
+        return objectMapper.readValue(json, TicketRequestForm.class);
+    }
+
+    private void assertServerDefaults(TicketRequest existing, Long bookingId) {
+        assertNotEquals(existing.getId(), bookingId);
+        assertEquals(TicketStatus.PENDING, ticketRepo.findById(existing.getId()).orElseThrow().getStatus());
+
+        TicketRequest saved = ticketRepo.findById(bookingId).orElseThrow();
+        assertEquals(TicketStatus.PENDING, saved.getStatus());
+        assertEquals("3A", saved.getTravelClass());
+        assertEquals(2, saved.getPassengerCount());
+        assertNull(saved.getBookingStatus());
+        assertEquals(0, saved.getApprovedTicketCount());
+        assertEquals(0, BigDecimal.ZERO.compareTo(saved.getPaymentAmount()));
+        assertNull(saved.getReservedSeats());
+        assertNull(saved.getWaitlistSeats());
+        assertNull(saved.getRefundPercent());
+        assertNull(saved.getRefundPending());
+        assertEquals(0L, saved.getVersion());
+    }
+
+    private static Authentication asCustomer(User customer) {
+        Authentication authentication = new UsernamePasswordAuthenticationToken(customer.getEmail(), null,
+                List.of(new SimpleGrantedAuthority("ROLE_CUSTOMER")));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        return authentication;
+    }
+}
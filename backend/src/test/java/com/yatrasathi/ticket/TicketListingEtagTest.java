@@ -0,0 +1,61 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TicketListingEtagTest extends IntegrationTest {
+
+    @Autowired
+    private TicketController controller;
+
+    @Test
+    void aMatchingEtagGets304UntilARequestOrAListedUserChanges() {
+        User customer = customer();
+        Long id = booking(customer, nextTrainId(), "SL", 1).getId();
+        asStaff();
+
+        ResponseEntity<List<TicketSummary>> first = pending(null);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        String etag = first.getHeaders().getETag();
+        assertNotNull(etag);
+
+        ResponseEntity<List<TicketSummary>> revalidated = pending(etag);
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+        assertNull(revalidated.getBody());
+
+        // The listing shows the customer's name, so renaming them must not be answered with a 304
+        customer.setName("Renamed " + customer.getId());
+        userRepository.save(customer);
+        ResponseEntity<List<TicketSummary>> renamed = pending(etag);
+        assertEquals(HttpStatus.OK, renamed.getStatusCode());
+        String renamedEtag = renamed.getHeaders().getETag();
+        assertNotEquals(etag, renamedEtag);
+        assertEquals(HttpStatus.NOT_MODIFIED, pending(renamedEtag).getStatusCode());
+
+        ticketService.approve(id, 1, null, false);
+        assertEquals(HttpStatus.OK, pending(renamedEtag).getStatusCode());
+    }
+
+    private ResponseEntity<List<TicketSummary>> pending(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/tickets/pending");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return controller.pending(null, null, new ServletWebRequest(request, new MockHttpServletResponse()));
+    }
+}
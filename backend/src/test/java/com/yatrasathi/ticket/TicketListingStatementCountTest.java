@@ -0,0 +1,79 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.SqlStatementCounter;
+import com.yatrasathi.common.CursorPage;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every ticket listing is one SQL statement, however many different customers its rows belong to.
+ */
+class TicketListingStatementCountTest extends IntegrationTest {
+
+    private static final int BOOKINGS = 6;
+
+    private Long trainId;
+    private User customer;
+
+    @BeforeEach
+    void bookings() {
+        trainId = nextTrainId();
+        customer = customer();
+        booking(customer, trainId, "3A", 1);
+        booking(customer, trainId, "3A", 2);
+        // The rest each belong to a customer of their own
+        for (int i = 2; i < BOOKINGS; i++) {
+            booking(customer(), trainId, "SL", 1);
+        }
+        asStaff();
+    }
+
+    @Test
+    void pendingQueuePage() {
+        CursorPage<TicketSummary> page = inOneStatement(() -> ticketService.getPending(null, 100));
+        assertTrue(page.getItems().size() >= BOOKINGS);
+    }
+
+    @Test
+    void customersOwnRequests() {
+        List<TicketSummary> mine = inOneStatement(() -> ticketService.getMyRequests(customer.getId()));
+        assertEquals(2, mine.size());
+        mine.forEach(summary -> assertEquals(customer.getName(), summary.customerName()));
+    }
+
+    @Test
+    void requestsByTravelDate() {
+        List<TicketSummary> rows = inOneStatement(() -> ticketService.filter(travelDate()));
+        assertEquals(BOOKINGS, rows.stream().filter(r -> trainId.equals(r.trainId())).count());
+    }
+
+    @Test
+    void searchPage() {
+        TicketSearchCriteria criteria = new TicketSearchCriteria();
+        criteria.setTrainId(trainId);
+        criteria.setStatus(TicketStatus.PENDING);
+        CursorPage<TicketSummary> page = inOneStatement(() -> ticketService.search(criteria, null, 100));
+        assertEquals(BOOKINGS, page.getItems().size());
+    }
+
+    @Test
+    void changeFeedPage() {
+        inOneStatement(() -> ticketService.changesSince(null, null, null, 100));
+    }
+
+    private static <T> T inOneStatement(Supplier<T> listing) {
+        SqlStatementCounter.reset();
+        T result = listing.get();
+        assertEquals(1, SqlStatementCounter.count(), "SQL statements issued");
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.Benchmark;
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import com.yatrasathi.user.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Search throughput over a million bookings written straight to the table (ids far above the pooled
+ * generator's range, removed afterwards): a route and date window, a status queue paged five deep by cursor,
+ * and one train's class on one date. Against H2; {@code -Dbenchmarks.search.rows} seeds a different count.
+ */
+@EnabledIfSystemProperty(named = "benchmarks", matches = "true")
+class TicketSearchBenchmarkTest extends IntegrationTest {
+
+    private static final int ROWS = Integer.getInteger("benchmarks.search.rows", 1_000_000);
+    private static final int SEED_BATCH = 10_000;
+    private static final long FIRST_ID = 900_000_000L;
+    private static final String[] STATIONS = {"NDLS", "BCT", "MAS", "HWH", "SBC", "PUNE", "ADI", "LKO"};
+    private static final String[] CLASSES = {"SL", "3A", "2A", "1A"};
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private long firstTrain;
+
+    @BeforeEach
+    void seed() {
+        User customer = customer();
+        firstTrain = nextTrainId();
+        for (int t = 1; t < 40; t++) {
+            nextTrainId();
+        }
+        Random random = new Random(7);
+        TicketStatus[] statuses = TicketStatus.values();
+        LocalDateTime now = LocalDateTime.now();
+        List<Object[]> rows = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < ROWS; i++) {
+            long id = FIRST_ID + i;
+            String origin = STATIONS[random.nextInt(STATIONS.length)];
+            String destination = STATIONS[(indexOf(origin) + 1 + random.nextInt(STATIONS.length - 1)) % STATIONS.length];
+            rows.add(new Object[] {id, customer.getId(), firstTrain + random.nextInt(40), origin, destination,
+                    Date.valueOf(travelDate().plusDays(random.nextInt(60) - 30)), Timestamp.valueOf(now.minusSeconds(ROWS - i)),
+                    CLASSES[random.nextInt(CLASSES.length)], statuses[random.nextInt(statuses.length)].name(), "BENCH" + id});
+            if (rows.size() == SEED_BATCH || i == ROWS - 1) {
+                jdbc.batchUpdate("insert into bookings (booking_id, customer_id, train_id, origin, destination, travel_date, booking_date,"
+                        + " class, status, pnr, approved_ticket_count, payment_amount, total_tickets, version, change_version)"
+                        + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, 0, 1, 0, 0)", rows);
+                rows.clear();
+            }
+        }
+        asStaff();
+    }
+
+    @AfterEach
+    void removeSeed() {
+        // In seed-sized chunks: one statement over a million rows outgrows H2's undo log
+        for (long from = FIRST_ID; from < FIRST_ID + ROWS; from += SEED_BATCH) {
+            jdbc.update("delete from bookings where booking_id >= ? and booking_id < ?", from, from + SEED_BATCH);
+        }
+    }
+
+    @Test
+    void searches() throws Exception {
+        TicketSearchCriteria route = new TicketSearchCriteria();
+        route.setOrigin("NDLS");
+        route.setDestination("BCT");
+        route.setTravelDateFrom(travelDate().minusDays(7));
+        route.setTravelDateTo(travelDate().plusDays(7));
+
+        TicketSearchCriteria queue = new TicketSearchCriteria();
+        queue.setStatus(TicketStatus.APPROVED);
+
+        TicketSearchCriteria train = new TicketSearchCriteria();
+        train.setTrainId(firstTrain + 3);
+        train.setTravelDateFrom(travelDate());
+        train.setTravelDateTo(travelDate());
+        train.setTravelClass("3A");
+
+        measure("route + dates", (thread, call) -> ticketService.search(route, null, 50).getItems().size());
+        measure("status, 5 pages", (thread, call) -> {
+            String cursor = null;
+            for (int page = 0; page < 5; page++) {
+                cursor = ticketService.search(queue, cursor, 50).getNextCursor();
+            }
+            return cursor == null ? 0 : cursor.length();
+        });
+        measure("train + date + class", (thread, call) -> ticketService.search(train, null, 50).getItems().size());
+    }
+
+    private static void measure(String name, Benchmark.Op search) throws Exception {
+        Benchmark.named(String.format("Ticket search over %,d rows, %s", ROWS, name)).unit("calls").throughput(search);
+    }
+
+    private static int indexOf(String station) {
+        for (int i = 0; i < STATIONS.length; i++) {
+            if (STATIONS[i].equals(station)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,91 @@
+package com.yatrasathi.ticket;
+
+import com.yatrasathi.IntegrationTest;
+import com.yatrasathi.common.TicketEnums.TicketStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TicketTransitionContentionTest extends IntegrationTest {
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private TicketRequestRepository ticketRepo;
+
+    @Test
+    void concurrentApprovalsOfOneRequestApplyExactlyOnce() throws Exception {
+        Long id = booking(customer(), nextTrainId(), "3A", 2).getId();
+
+        List<Object> outcomes = race(THREADS, () -> ticketService.approve(id, 2, null, false));
+
+        assertEquals(1, count(outcomes, TicketRequest.class));
+        assertEquals(THREADS - 1, count(outcomes, TicketTransitionException.class));
+        TicketRequest approved = ticketRepo.findById(id).orElseThrow();
+        assertEquals(TicketStatus.APPROVED, approved.getStatus());
+        assertEquals(1L, approved.getVersion());
+    }
+
+    @Test
+    void racingDifferentStepsNeverSkipAState() throws Exception {
+        Long id = booking(customer(), nextTrainId(), "SL", 1).getId();
+        asStaff();
+        ticketService.approve(id, 1, null, false);
+
+        // Even threads issue the ticket, odd ones confirm it. Exactly one issue wins; a confirm may only win
+        // after it, as the next version, and at most once
+        List<Object> outcomes = race(THREADS, i -> i % 2 == 0
+                ? ticketService.createTicket(id, "RACE" + id + "-" + i, BigDecimal.TEN, null)
+                : ticketService.confirm(id, null));
+
+        TicketRequest created = null;
+        TicketRequest confirmed = null;
+        for (int i = 0; i < outcomes.size(); i++) {
+            Object outcome = outcomes.get(i);
+            if (!(outcome instanceof TicketRequest request)) {
+                assertInstanceOf(TicketTransitionException.class, outcome);
+            } else if (i % 2 == 0) {
+                assertNull(created, "ticket issued twice");
+                created = request;
+            } else {
+                assertNull(confirmed, "confirmed twice");
+                confirmed = request;
+            }
+        }
+        assertNotNull(created);
+        TicketRequest current = ticketRepo.findById(id).orElseThrow();
+        if (confirmed == null) {
+            assertEquals(TicketStatus.TICKET_CREATED, current.getStatus());
+        } else {
+            assertEquals(created.getVersion() + 1, confirmed.getVersion());
+            assertEquals(TicketStatus.CONFIRMED, current.getStatus());
+        }
+    }
+
+    @Test
+    void staleVersionIsRefusedEvenWhenTheStateWouldAllowIt() {
+        Long id = booking(customer(), nextTrainId(), "2A", 1).getId();
+        asStaff();
+        TicketRequest approved = ticketService.approve(id, 1, 0L, false);
+
+        TicketTransitionException stale = assertThrows(TicketTransitionException.class,
+                () -> ticketService.createTicket(id, "STALE" + id, BigDecimal.ONE, 0L));
+        assertEquals(approved.getVersion(), stale.getCurrentVersion());
+        assertEquals(TicketStatus.APPROVED, stale.getCurrentStatus());
+
+        TicketRequest created = ticketService.createTicket(id, "FRESH" + id, BigDecimal.ONE, approved.getVersion());
+        assertEquals(TicketStatus.TICKET_CREATED, created.getStatus());
+    }
+
+    private static int count(List<Object> outcomes, Class<?> type) {
+        return (int) outcomes.stream().filter(type::isInstance).count();
+    }
+}
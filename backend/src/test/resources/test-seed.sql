@@ -0,0 +1,2 @@
+INSERT INTO users (user_id, name, email, phone, aadhaar, password_hash, user_type, active) VALUES (100, 'Employee One', 'employee1@yatrasathi.com', '8888888888', '888888888888', '$2a$10$DWdn3eFaxpYM1e6BEic/Nu7s6u1DGpT5UAg8JI9EJqiaF/HvyA.na', 'EMPLOYEE', true);
+INSERT INTO employee_details (employee_id, designation, status) VALUES (100, 'Ticket Agent', 'ACTIVE');